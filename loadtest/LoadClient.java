@@ -0,0 +1,99 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load: every connection sends its next request once the previous one has been answered, each
+ * from its own virtual thread. Prints throughput, p50/p99 latency and errors like wrk's summary.
+ * <p>
+ * Runs as a single source file on JDK 21+:
+ * {@code java loadtest/LoadClient.java <base url> <get path | create-user> <connections> <seconds>}
+ */
+public class LoadClient {
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args[0];
+        String target = args[1];
+        int connections = Integer.parseInt(args[2]);
+        long durationNanos = Duration.ofSeconds(Long.parseLong(args[3])).toNanos();
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        long deadline = System.nanoTime() + durationNanos;
+
+        Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            int connection = i;
+            threads[i] = Thread.ofVirtual().start(() -> {
+                long[] own = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(
+                                request(baseUrl, target), HttpResponse.BodyHandlers.discarding()
+                        );
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    if (count == own.length) {
+                        own = Arrays.copyOf(own, count * 2);
+                    }
+                    own[count++] = System.nanoTime() - start;
+                }
+                latencies[connection] = own;
+                counts[connection] = count;
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int position = 0;
+        for (int i = 0; i < connections; i++) {
+            System.arraycopy(latencies[i], 0, all, position, counts[i]);
+            position += counts[i];
+        }
+        Arrays.sort(all);
+        System.out.printf("  Requests/sec: %.1f%n", total / (durationNanos / 1e9));
+        System.out.printf("  50%%: %.2fms, 99%%: %.2fms%n", percentile(all, 0.50), percentile(all, 0.99));
+        System.out.printf("  Errors: %d%n", errors.get());
+    }
+
+    private static HttpRequest request(String baseUrl, String target) {
+        if (!"create-user".equals(target)) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + target)).GET().build();
+        }
+        // a unique login per request; every request is journaled and waits for the group commit
+        String login = "load" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        String body = "{\"email\":\"" + login + "@example.com\",\"login\":\"" + login
+                + "\",\"birthday\":\"1990-01-01\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))] / 1e6;
+    }
+}
@@ -0,0 +1,41 @@
+#!/bin/bash
+# Compares Tomcat's platform thread pool with virtual threads under the same load.
+# Needs JDK 21+ on the PATH; the load comes from loadtest/LoadClient.java.
+#
+#   mvn -Ploom -DskipTests package
+#   [PORT=18080] loadtest/compare-executors.sh [connections] [seconds]
+set -euo pipefail
+
+CONNECTIONS=${1:-2000}
+DURATION=${2:-30}
+PORT=${PORT:-18080}
+JAR=$(ls target/filmorate-*.jar | head -1)
+BASE=http://localhost:$PORT
+
+run() {
+  local mode=$1
+  shift
+  local journal
+  journal=$(mktemp -d)
+  java -jar "$JAR" --server.port=$PORT --filmorate.journal.enabled=true --filmorate.journal.dir="$journal" "$@" \
+    > "target/loadtest-$mode.log" 2>&1 &
+  local pid=$!
+  until curl -sf "$BASE/actuator/health" > /dev/null; do sleep 1; done
+
+  for i in $(seq 1 100); do
+    curl -sf -XPOST "$BASE/films" -H 'Content-Type: application/json' \
+      -d "{\"name\":\"Film $i\",\"description\":\"Load test\",\"releaseDate\":\"2000-01-01\",\"duration\":90}" > /dev/null
+  done
+
+  echo "== $mode: journaled writes (POST /users), $CONNECTIONS connections"
+  java loadtest/LoadClient.java "$BASE" create-user "$CONNECTIONS" "$DURATION"
+  echo "== $mode: reads (GET /films/popular), $CONNECTIONS connections"
+  java loadtest/LoadClient.java "$BASE" "/films/popular?count=10" "$CONNECTIONS" "$DURATION"
+
+  kill "$pid"
+  wait "$pid" || true
+  rm -rf "$journal"
+}
+
+run platform
+run virtual --filmorate.virtual-threads.enabled=true
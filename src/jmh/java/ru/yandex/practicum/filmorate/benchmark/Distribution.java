@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.Random;
+
+/**
+ * How likes and friendships are spread over entity IDs {@code 1..n}.
+ */
+public enum Distribution {
+    UNIFORM {
+        @Override
+        public long next(Random random, long n) {
+            return 1 + (long) (random.nextDouble() * n);
+        }
+    },
+    /**
+     * Power law with exponent 1.1 (inverse CDF of the continuous approximation): ID 1 is the most popular.
+     */
+    ZIPF {
+        private static final double EXPONENT = 1.1;
+
+        @Override
+        public long next(Random random, long n) {
+            double rank = Math.pow(
+                    (Math.pow(n + 1, 1 - EXPONENT) - 1) * random.nextDouble() + 1,
+                    1 / (1 - EXPONENT)
+            );
+            return Math.max(1, Math.min(n, (long) rank));
+        }
+    };
+
+    public abstract long next(Random random, long n);
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.yandex.practicum.filmorate.event.DomainEvent;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.DomainEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing likes from four request threads while a listener spends {@code listenerWork} tokens per event.
+ * A cheap listener shows the cost of publishing; an expensive one shows how the partitions share the load and
+ * when the publishers start waiting for full buffers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EventBusBenchmark {
+    @Param({"1", "4"})
+    public int partitions;
+
+    @Param({"1024", "8192"})
+    public int bufferSize;
+
+    @Param({"0", "100"})
+    public int listenerWork;
+
+    private DomainEventBus bus;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DomainEventListener listener = events -> Blackhole.consumeCPU((long) listenerWork * events.size());
+        bus = new DomainEventBus(
+                new StaticListableBeanFactory(Map.of("listener", listener)).getBeanProvider(DomainEventListener.class),
+                partitions, bufferSize, 256
+        );
+        bus.afterSingletonsInstantiated();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        bus.destroy();
+        System.out.printf("%npublished %d, publisher waits %d%n", bus.getPublished(), bus.getPublisherWaits());
+    }
+
+    @Benchmark
+    public void publishLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        bus.publish(DomainEvent.likeAdded(1 + random.nextInt(100_000), 1 + random.nextInt(100_000)));
+    }
+
+    @Benchmark
+    public void publishFriendships() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = 1 + random.nextInt(100_000);
+        bus.publishAll(List.of(
+                DomainEvent.friendAdded(userId, userId + 1), DomainEvent.friendRemoved(userId, userId + 1)
+        ));
+    }
+}
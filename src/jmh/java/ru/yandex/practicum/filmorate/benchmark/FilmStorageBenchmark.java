@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot paths of {@code FilmStorage}. Restrict the matrix on the command line, e.g.
+ * {@code -p storage=inMemory -p films=1000,100000}; the 10M catalogue needs a large heap ({@code -jvmArgs -Xmx16g}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmStorageBenchmark {
+    private static final int WRITER_USERS = 64;
+
+    @Param({Storages.IN_MEMORY, Storages.IN_MEMORY_APPROXIMATE, Storages.JDBC})
+    public String storage;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int films;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public Distribution likes;
+
+    @Param("5")
+    public int likesPerFilm;
+
+    @Param("10000")
+    public int users;
+
+    private Storages storages;
+    private final AtomicLong writerUsers = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = Storages.create(storage);
+        storages.seedUsers(users + WRITER_USERS);
+        storages.seedFilms(films);
+        storages.seedLikes(films, users, likesPerFilm, likes, new Random(42));
+        writerUsers.set(users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storages.close();
+    }
+
+    /**
+     * Each writer thread likes and unlikes as its own user, which never appears in the seeded likes,
+     * so the catalogue stays the same size and no like is ever a duplicate.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        long userId;
+
+        @Setup(Level.Trial)
+        public void setUp(FilmStorageBenchmark benchmark) {
+            userId = benchmark.writerUsers.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Collection<Film> topFilms() {
+        return storages.films.getTopFilms(10);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Collection<Film> topFilmsContended() {
+        return storages.films.getTopFilms(10);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Film getFilmById() {
+        return storages.films.getFilmById(likes.next(ThreadLocalRandom.current(), films));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Collection<Film> recommendedFilms() {
+        return storages.films.getRecommendedFilms(1 + ThreadLocalRandom.current().nextInt(users), 10);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Film likeAndUnlike(Writer writer) {
+        return likeAndUnlikeRandomFilm(writer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Film likeAndUnlikeContended(Writer writer) {
+        return likeAndUnlikeRandomFilm(writer);
+    }
+
+    private Film likeAndUnlikeRandomFilm(Writer writer) {
+        long filmId = likes.next(ThreadLocalRandom.current(), films);
+        storages.films.addLike(filmId, writer.userId);
+        return storages.films.deleteLike(filmId, writer.userId);
+    }
+}
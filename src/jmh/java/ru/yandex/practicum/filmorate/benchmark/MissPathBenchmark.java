@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.DomainEventListener;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.film.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Requests for films and users that don't exist, the traffic of bots probing random IDs, next to a hit.
+ * The calls run {@code stackDepth} frames deep, as a request below the servlet and Spring MVC frames does;
+ * {@code missWithStackTrace} adds to the film miss an exception that captures its stack trace, as
+ * {@code NotFoundException} did before it became stackless.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MissPathBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int USERS = 10_000;
+
+    @Param({Storages.IN_MEMORY, Storages.JDBC})
+    public String storage;
+
+    @Param({"0", "100"})
+    public int stackDepth;
+
+    private Storages storages;
+    private FilmService filmService;
+    private DomainEventBus eventBus;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = Storages.create(storage);
+        storages.seedFilms(FILMS);
+        storages.seedUsers(USERS);
+        eventBus = new DomainEventBus(
+                new StaticListableBeanFactory().getBeanProvider(DomainEventListener.class), 1, 1024, 256
+        );
+        eventBus.afterSingletonsInstantiated();
+        filmService = new FilmService(storages.films, new UserService(storages.users, eventBus),
+                new PopularFilmsCache(new ObjectMapper(), 64), eventBus);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        eventBus.destroy();
+        storages.close();
+    }
+
+    @Benchmark
+    public Object hit() {
+        return atDepth(stackDepth, () -> storages.films.getFilmById(1 + ThreadLocalRandom.current().nextInt(FILMS)));
+    }
+
+    @Benchmark
+    public Object missFilm() {
+        return atDepth(stackDepth, () -> storages.films.getFilmById(missingId(FILMS)));
+    }
+
+    @Benchmark
+    public Object missUser() {
+        return atDepth(stackDepth, () -> storages.users.getUserById(missingId(USERS)));
+    }
+
+    /**
+     * A like by an unknown user, rejected by the service before the storage is touched.
+     */
+    @Benchmark
+    public Object missLikeByUnknownUser() {
+        return atDepth(stackDepth, () -> filmService.addLike(1, missingId(USERS)));
+    }
+
+    @Benchmark
+    public Object missWithStackTrace() {
+        return atDepth(stackDepth, () -> {
+            try {
+                return storages.films.getFilmById(missingId(FILMS));
+            } catch (NotFoundException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        });
+    }
+
+    private static long missingId(int count) {
+        return count + 1 + ThreadLocalRandom.current().nextInt(count);
+    }
+
+    private static Object atDepth(int depth, Supplier<Object> call) {
+        if (depth > 0) {
+            return atDepth(depth - 1, call);
+        }
+        try {
+            return call.get();
+        } catch (NotFoundException | IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.PopularityRanking;
+import ru.yandex.practicum.filmorate.storage.sketch.HyperLogLog;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Accuracy against memory of the approximate popularity mode, measured against the exact in-memory storage on
+ * the same like stream: ZIPF likes, then about a tenth of them taken back. Prints markdown tables:
+ * <pre>
+ * mvn -Pjmh test-compile exec:java -Dexec.mainClass=ru.yandex.practicum.filmorate.benchmark.PopularityAccuracyReport \
+ *     -Dexec.args="100000 50000 10"
+ * </pre>
+ * Arguments: films, users, likes per film.
+ */
+public class PopularityAccuracyReport {
+    private static final double[] MAX_ERRORS = {0.01, 0.001, 0.0001};
+    private static final int[] PRECISIONS = {10, 12, 14, 16};
+    private static final int[] TOP = {10, 100};
+    private static final int PER_FILM_SAMPLE = 1000;
+    private static final double UNLIKE_SHARE = 0.1;
+
+    public static void main(String[] args) {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int likesPerFilm = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        PopularityRanking exact = PopularityRanking.exact();
+        Map<Double, PopularityRanking> approximate = new LinkedHashMap<>();
+        for (double maxError : MAX_ERRORS) {
+            approximate.put(maxError, PopularityRanking.approximate(maxError));
+        }
+        List<PopularityRanking> all = new ArrayList<>(approximate.values());
+        all.add(0, exact);
+
+        Storages storages = Storages.inMemory(new Tee(all));
+        Random random = new Random(42);
+        storages.seedFilms(films);
+        storages.seedLikes(films, users, likesPerFilm, Distribution.ZIPF, random);
+
+        Map<Long, long[]> likedBefore = new HashMap<>();
+        for (Film film : storages.films.getAllFilms()) {
+            likedBefore.put(film.getId(), film.getLikes().stream().mapToLong(Long::longValue).toArray());
+        }
+        long unlikes = 0;
+        for (Map.Entry<Long, long[]> film : likedBefore.entrySet()) {
+            for (long userId : film.getValue()) {
+                if (random.nextDouble() < UNLIKE_SHARE) {
+                    storages.films.deleteLike(film.getKey(), userId);
+                    unlikes++;
+                }
+            }
+        }
+        long likes = storages.films.getLikeCount();
+        System.out.printf("%d films, %d users, %d likes after %d unlikes (ZIPF)%n%n", films, users, likes, unlikes);
+
+        printTopK(exact, approximate, likes);
+        printDistinctLikers(likedBefore);
+    }
+
+    private static void printTopK(PopularityRanking exact, Map<Double, PopularityRanking> approximate, long likes) {
+        int maxTop = Arrays.stream(TOP).max().orElseThrow();
+        List<Long> truth = exact.top(maxTop);
+
+        System.out.println("## Popular films: Space-Saving against the exact index");
+        System.out.println();
+        System.out.println("| mode | error bound (likes) | heap | recall@10 | recall@100 | same order@10 |");
+        System.out.println("|---|---|---|---|---|---|");
+        System.out.printf("| exact | 0 | %s | 1.000 | 1.000 | yes |%n", bytes(exact.estimateHeapBytes()));
+        for (Map.Entry<Double, PopularityRanking> entry : approximate.entrySet()) {
+            List<Long> top = entry.getValue().top(maxTop);
+            System.out.printf("| max-error=%s | %d | %s | %.3f | %.3f | %s |%n",
+                    BigDecimal.valueOf(entry.getKey()).toPlainString(), (long) (entry.getKey() * likes), bytes(entry.getValue().estimateHeapBytes()),
+                    recall(truth, top, TOP[0]), recall(truth, top, TOP[1]),
+                    prefix(truth, TOP[0]).equals(prefix(top, TOP[0])) ? "yes" : "no");
+        }
+        System.out.println();
+    }
+
+    private static void printDistinctLikers(Map<Long, long[]> likedBefore) {
+        Set<Long> likers = new HashSet<>();
+        likedBefore.values().forEach(users -> Arrays.stream(users).forEach(likers::add));
+        List<long[]> sample = likedBefore.values().stream()
+                .sorted(Comparator.comparingInt((long[] users) -> users.length).reversed())
+                .limit(PER_FILM_SAMPLE)
+                .collect(Collectors.toList());
+        double exactBytesPerFilm = sample.stream().mapToLong(users -> (long) users.length * Long.BYTES).average()
+                .orElse(0);
+
+        System.out.println("## Distinct likers: HyperLogLog against exact sets");
+        System.out.println();
+        System.out.printf("Global: %d distinct likers, about %s as an exact set of IDs. Per film: the %d most liked "
+                        + "films, %s per film as sorted ID arrays.%n%n",
+                likers.size(), bytes(likers.size() * 48L), sample.size(), bytes((long) exactBytesPerFilm));
+        System.out.println("| precision | sketch size | global error | per-film mean error | per-film max error |");
+        System.out.println("|---|---|---|---|---|");
+        for (int precision : PRECISIONS) {
+            HyperLogLog global = new HyperLogLog(precision);
+            likers.forEach(global::add);
+
+            double sum = 0;
+            double max = 0;
+            for (long[] users : sample) {
+                HyperLogLog perFilm = new HyperLogLog(precision);
+                Arrays.stream(users).forEach(perFilm::add);
+                double error = relativeError(perFilm.estimate(), users.length);
+                sum += error;
+                max = Math.max(max, error);
+            }
+            System.out.printf("| %d | %s | %.2f%% | %.2f%% | %.2f%% |%n", precision, bytes(global.sizeInBytes()),
+                    100 * relativeError(global.estimate(), likers.size()), 100 * sum / sample.size(), 100 * max);
+        }
+    }
+
+    private static double recall(List<Long> truth, List<Long> top, int k) {
+        Set<Long> expected = new HashSet<>(prefix(truth, k));
+        return expected.isEmpty() ? 1 : (double) prefix(top, k).stream().filter(expected::contains).count()
+                / expected.size();
+    }
+
+    private static List<Long> prefix(List<Long> list, int k) {
+        return list.subList(0, Math.min(k, list.size()));
+    }
+
+    private static double relativeError(long estimate, long actual) {
+        return actual == 0 ? 0 : Math.abs(estimate - actual) / (double) actual;
+    }
+
+    private static String bytes(long bytes) {
+        return bytes < 1 << 20 ? String.format("%.1f KB", bytes / 1024.0) : String.format("%.1f MB", bytes / 1048576.0);
+    }
+
+    /**
+     * Feeds every like count change to several rankings; the first one answers the storage.
+     */
+    private static final class Tee implements PopularityRanking {
+        private final List<PopularityRanking> rankings;
+
+        private Tee(List<PopularityRanking> rankings) {
+            this.rankings = rankings;
+        }
+
+        @Override
+        public void add(long filmId, int likes) {
+            rankings.forEach(ranking -> ranking.add(filmId, likes));
+        }
+
+        @Override
+        public void remove(long filmId, int likes) {
+            rankings.forEach(ranking -> ranking.remove(filmId, likes));
+        }
+
+        @Override
+        public void change(long filmId, int oldLikes, int newLikes) {
+            rankings.forEach(ranking -> ranking.change(filmId, oldLikes, newLikes));
+        }
+
+        @Override
+        public List<Long> top(int count) {
+            return rankings.get(0).top(count);
+        }
+
+        @Override
+        public long estimateHeapBytes() {
+            return rankings.get(0).estimateHeapBytes();
+        }
+    }
+}
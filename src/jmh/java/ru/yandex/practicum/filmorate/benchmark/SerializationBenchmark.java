@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.graph.LongSetView;
+import ru.yandex.practicum.filmorate.storage.graph.SortedLongSet;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a popular films list in the wire formats the API negotiates. The payload size of
+ * each format is printed once per trial, e.g. {@code -p likesPerFilm=1000} shows how the formats encode large
+ * ID arrays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"10", "100"})
+    public int films;
+
+    @Param({"0", "100", "10000"})
+    public int likesPerFilm;
+
+    private ObjectMapper mapper;
+    private List<Film> payload;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper(factory(format))
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Random random = new Random(42);
+        payload = new ArrayList<>(films);
+        for (long id = 1; id <= films; id++) {
+            payload.add(film(id, random));
+        }
+        encoded = mapper.writeValueAsBytes(payload);
+        System.out.printf("%n%s: %d films with %d likes each take %d bytes%n",
+                format, films, likesPerFilm, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public Film[] deserialize() throws IOException {
+        return mapper.readValue(encoded, Film[].class);
+    }
+
+    private Film film(long id, Random random) {
+        long[] likes = new long[likesPerFilm];
+        long userId = 0;
+        for (int i = 0; i < likes.length; i++) {
+            userId += 1 + random.nextInt(1000);
+            likes[i] = userId;
+        }
+        return Film.builder()
+                .id(id)
+                .name("Film " + id)
+                .description("Description of film " + id)
+                .releaseDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25_000)))
+                .duration(60 + random.nextInt(120))
+                .likes(new LongSetView(SortedLongSet.ofSorted(likes)))
+                .build();
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "json":
+                return new JsonFactory();
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+}
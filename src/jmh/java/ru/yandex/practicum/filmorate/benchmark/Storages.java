@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularityRanking;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds and seeds storages outside of Spring, one fresh pair per benchmark trial.
+ */
+final class Storages {
+    static final String IN_MEMORY = "inMemory";
+    static final String IN_MEMORY_APPROXIMATE = "inMemoryApproximate";
+    static final String JDBC = "jdbc";
+
+    final FilmStorage films;
+    final UserStorage users;
+    private final JdbcTemplate jdbcTemplate;
+
+    private Storages(FilmStorage films, UserStorage users, JdbcTemplate jdbcTemplate) {
+        this.films = films;
+        this.users = users;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    static Storages create(String kind) {
+        switch (kind) {
+            case IN_MEMORY:
+                return inMemory(PopularityRanking.exact());
+            case IN_MEMORY_APPROXIMATE:
+                return inMemory(PopularityRanking.approximate(0.0001));
+            case JDBC:
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(h2());
+                return new Storages(
+                        new FilmDbStorage(jdbcTemplate, 50), new UserDbStorage(jdbcTemplate), jdbcTemplate
+                );
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + kind);
+        }
+    }
+
+    static Storages inMemory(PopularityRanking popularity) {
+        return new Storages(
+                new InMemoryFilmStorage(MutationJournal.NONE, new FilmRecommender(5000, 50), popularity),
+                new InMemoryUserStorage(MutationJournal.NONE, new FriendRecommender(5000, 1_000_000)),
+                null
+        );
+    }
+
+    void seedFilms(int count) {
+        for (int i = 0; i < count; i++) {
+            films.create(Film.builder()
+                    .name("Film " + i)
+                    .description("Benchmark film " + i)
+                    .releaseDate(LocalDate.of(1900 + i % 120, 1 + i % 12, 1 + i % 28))
+                    .duration(60 + i % 120)
+                    .build());
+        }
+    }
+
+    void seedUsers(int count) {
+        for (int i = 0; i < count; i++) {
+            users.create(User.builder()
+                    .email("user" + i + "@example.com")
+                    .login("user" + i)
+                    .name("User " + i)
+                    .birthday(LocalDate.of(1950 + i % 50, 1 + i % 12, 1 + i % 28))
+                    .build());
+        }
+    }
+
+    /**
+     * Adds about {@code filmCount * likesPerFilm} likes from users {@code 1..userCount}; films are drawn
+     * from the distribution, so ZIPF produces a few blockbusters and a long tail.
+     */
+    void seedLikes(int filmCount, int userCount, int likesPerFilm, Distribution distribution, Random random) {
+        long total = (long) filmCount * likesPerFilm;
+        for (long i = 0; i < total; i++) {
+            try {
+                films.addLike(distribution.next(random, filmCount), 1 + random.nextInt(userCount));
+            } catch (NotFoundException e) {
+                // the same user drew the same film twice
+            }
+        }
+    }
+
+    void seedFriends(int userCount, int friendsPerUser, Distribution distribution, Random random) {
+        long total = (long) userCount * friendsPerUser / 2;
+        for (long i = 0; i < total; i++) {
+            long userId = 1 + random.nextInt(userCount);
+            long friendId = distribution.next(random, userCount);
+            if (userId == friendId) {
+                continue;
+            }
+            try {
+                users.addToFriend(userId, friendId);
+            } catch (NotFoundException e) {
+                // already friends
+            }
+        }
+    }
+
+    void close() {
+        if (jdbcTemplate != null) {
+            jdbcTemplate.execute("SHUTDOWN");
+            ((HikariDataSource) jdbcTemplate.getDataSource()).close();
+        }
+    }
+
+    /**
+     * A pooled data source configured like the {@code db} profile of the application, so the benchmark pays
+     * for a borrowed connection rather than a new one per statement.
+     */
+    private static HikariDataSource h2() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("password");
+        dataSource.setMaximumPoolSize(16);
+        dataSource.setMinimumIdle(4);
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema.sql")).execute(dataSource);
+        return dataSource;
+    }
+}
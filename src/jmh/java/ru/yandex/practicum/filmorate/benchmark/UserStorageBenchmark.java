@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot paths of {@code UserStorage}: friend lists, mutual friends, recommendations and friendship writes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserStorageBenchmark {
+    private static final int WRITER_USERS = 64;
+
+    @Param({Storages.IN_MEMORY, Storages.JDBC})
+    public String storage;
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public Distribution friends;
+
+    @Param("20")
+    public int friendsPerUser;
+
+    private Storages storages;
+    private final AtomicLong writerUsers = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = Storages.create(storage);
+        storages.seedUsers(users + WRITER_USERS);
+        storages.seedFriends(users, friendsPerUser, friends, new Random(42));
+        writerUsers.set(users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storages.close();
+    }
+
+    /**
+     * Writer threads befriend seeded users as their own reserved user, so two threads never touch the same pair.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        long userId;
+
+        @Setup(Level.Trial)
+        public void setUp(UserStorageBenchmark benchmark) {
+            userId = benchmark.writerUsers.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Collection<User> allUserFriends() {
+        return storages.users.getAllUserFriends(randomUser());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Collection<User> mutualFriends() {
+        return storages.users.getMutualFriends(randomUser(), randomUser());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Collection<User> mutualFriendsContended() {
+        return storages.users.getMutualFriends(randomUser(), randomUser());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<FriendRecommendation> friendRecommendations() {
+        return storages.users.getFriendRecommendations(randomUser(), 10);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public User befriendAndUnfriend(Writer writer) {
+        return befriendAndUnfriendRandomUser(writer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public User befriendAndUnfriendContended(Writer writer) {
+        return befriendAndUnfriendRandomUser(writer);
+    }
+
+    private User befriendAndUnfriendRandomUser(Writer writer) {
+        long friendId = randomUser();
+        storages.users.addToFriend(writer.userId, friendId);
+        return storages.users.deleteFromFriends(writer.userId, friendId);
+    }
+
+    private long randomUser() {
+        return friends.next(ThreadLocalRandom.current(), users);
+    }
+}
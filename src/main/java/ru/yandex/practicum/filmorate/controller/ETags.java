@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.exception.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.web.BinaryFormatsConfiguration;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Strong ETags made of a resource name and a storage version, e.g. {@code "f12.1718000000000042"} for the film 12;
+ * the popular list uses the digest of its cached JSON as the version. CBOR and Smile representations and
+ * {@code fields} projections get a suffix, e.g. {@code "fr3.42.cbor.fields=id+name"}, so each representation
+ * has its own tag, and the response varies by {@code Accept}. The version is read before the resource, so a tag
+ * never claims a newer state than the body it is sent with.
+ */
+@Slf4j
+final class ETags {
+    private static final MediaType APPLICATION_SMILE =
+            MediaType.valueOf(BinaryFormatsConfiguration.APPLICATION_SMILE_VALUE);
+
+    private ETags() {
+    }
+
+    /**
+     * Sets the ETag of the response and checks {@code If-None-Match}; on true the response is a 304 and the
+     * handler returns {@code null}. Without a version there is no ETag and the request is served in full.
+     */
+    static boolean notModified(WebRequest request, String resource, OptionalLong version) {
+        return notModified(request, resource, version, null);
+    }
+
+    static boolean notModified(WebRequest request, String resource, String version) {
+        return notModified(request, resource, version, null);
+    }
+
+    /**
+     * {@link #notModified} of the projection to the given {@code fields} parameter, or of the whole resource
+     * for {@code null}.
+     */
+    static boolean notModified(WebRequest request, String resource, OptionalLong version, String fields) {
+        return notModified(request, resource,
+                version.isPresent() ? Long.toString(version.getAsLong()) : null, fields);
+    }
+
+    static boolean notModified(WebRequest request, String resource, String version, String fields) {
+        varyByAccept(request);
+        if (version == null) {
+            return false;
+        }
+        String tag = resource + "." + version + suffixOf(request.getHeader(HttpHeaders.ACCEPT));
+        if (fields != null) {
+            tag += ".fields=" + String.join("+", SparseFields.requested(fields));
+        }
+        return request.checkNotModified(tag);
+    }
+
+    /**
+     * The version an {@code If-Match} header asks an update to apply to, or empty for no header or {@code *}.
+     *
+     * @throws PreconditionFailedException if the header names no version of the resource
+     */
+    static OptionalLong expectedVersion(String ifMatch, String resource) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return OptionalLong.empty();
+        }
+        String prefix = "\"" + resource + ".";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (!tag.startsWith(prefix) || !tag.endsWith("\"")) {
+                continue;
+            }
+            String version = tag.substring(prefix.length(), tag.length() - 1);
+            int suffix = version.indexOf('.');
+            try {
+                return OptionalLong.of(Long.parseLong(suffix < 0 ? version : version.substring(0, suffix)));
+            } catch (NumberFormatException e) {
+                log.debug("Not a version: {}", tag);
+            }
+        }
+        log.debug("The If-Match header names no version of {}: {}", resource, ifMatch);
+        throw new PreconditionFailedException("The If-Match header names no version of this resource: " + ifMatch);
+    }
+
+    /**
+     * Caches must key the response by {@code Accept} too, since the same URL has a tag per format.
+     */
+    private static void varyByAccept(WebRequest request) {
+        if (!(request instanceof NativeWebRequest)) {
+            return;
+        }
+        HttpServletResponse response = ((NativeWebRequest) request).getNativeResponse(HttpServletResponse.class);
+        if (response != null && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+    }
+
+    /**
+     * The representation the negotiation picks for the header: JSON unless CBOR or Smile is preferred.
+     */
+    private static String suffixOf(String accept) {
+        if (accept == null) {
+            return "";
+        }
+        try {
+            List<MediaType> types = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(types);
+            for (MediaType type : types) {
+                if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return "";
+                }
+                if (type.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                    return ".cbor";
+                }
+                if (type.isCompatibleWith(APPLICATION_SMILE)) {
+                    return ".smile";
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Invalid Accept header: {}", accept);
+        }
+        return "";
+    }
+}
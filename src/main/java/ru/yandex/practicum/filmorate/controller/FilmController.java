@@ -1,24 +1,91 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmPage;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
 import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.film.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.web.BinaryFormatsConfiguration;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
 
 @RestController
 @Slf4j
 @RequiredArgsConstructor
 @RequestMapping("/films")
 public class FilmController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        return filmService.getAllFilms();
+    public Collection<Film> getAllFilms(@RequestParam(required = false) Long after,
+                                          @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return filmService.getAllFilms();
+        }
+        return filmService.getFilmsPage(
+                after == null ? 0 : after,
+                limit == null ? DEFAULT_PAGE_SIZE : limit
+        );
+    }
+
+    /**
+     * Only the requested fields of {@link FilmSummary}, with like counts instead of the likes.
+     */
+    @GetMapping(params = "fields")
+    public MappingJacksonValue getFilmSummaries(@RequestParam String fields,
+                                                @RequestParam(required = false) Long after,
+                                                @RequestParam(required = false) Integer limit) {
+        int pageLimit = after == null && limit == null ? Integer.MAX_VALUE : DEFAULT_PAGE_SIZE;
+        return SparseFields.select(filmService.getFilmSummaries(
+                after == null ? 0 : after,
+                limit == null ? pageLimit : limit
+        ), fields, FilmSummary.FIELDS);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAllFilms() {
+        return NdjsonStreams.write(objectMapper, filmService.getAllFilms());
+    }
+
+    @GetMapping("/search")
+    public FilmPage searchFilms(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+            @RequestParam(required = false) Integer minDuration,
+            @RequestParam(required = false) Integer maxDuration,
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        FilmSearch search = FilmSearch.builder()
+                .releasedFrom(releasedFrom)
+                .releasedTo(releasedTo)
+                .minDuration(minDuration)
+                .maxDuration(maxDuration)
+                .namePrefix(namePrefix)
+                .limit(limit)
+                .build();
+        return filmService.searchFilms(search, sort, after);
     }
 
     @PostMapping
@@ -27,14 +94,25 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    /**
+     * With {@code If-Match} the film is only updated if it is still the version of that ETag, otherwise 412.
+     */
     @PutMapping
-    public Film update(@Valid @RequestBody Film film) {
+    public Film update(@Valid @RequestBody Film film,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("PUT request received: {}", film);
+        OptionalLong expectedVersion = ETags.expectedVersion(ifMatch, "f" + film.getId());
+        if (expectedVersion.isPresent()) {
+            return filmService.updateIfVersion(film, expectedVersion.getAsLong());
+        }
         return filmService.update(film);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable long id) {
+    public Film getFilmById(@PathVariable long id, WebRequest request) {
+        if (ETags.notModified(request, "f" + id, filmService.getFilmVersion(id))) {
+            return null;
+        }
         return filmService.getFilmById(id);
     }
 
@@ -48,8 +126,60 @@ public class FilmController {
         return filmService.deleteLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public List<BatchItemResult> addLikes(@RequestBody List<FilmLike> likes) {
+        log.info("POST request received: a batch of {} likes", likes.size());
+        return filmService.addLikes(likes);
+    }
+
+    /**
+     * All-time popular films, or with {@code window} (1h, 24h or 7d) the films liked most within that window.
+     */
     @GetMapping("/popular")
-    public Collection<Film> getTopFilms(@RequestParam(defaultValue = "10", required = false) int count) {
+    public ResponseEntity<?> getTopFilms(@RequestParam(defaultValue = "10", required = false) int count,
+                                         @RequestParam(required = false) String window,
+                                         WebRequest request) {
+        if (window != null) {
+            return ResponseEntity.ok(filmService.getTrendingFilms(window, count));
+        }
+        PopularFilmsCache.RenderedList top = filmService.getRenderedTopFilms(count);
+        if (ETags.notModified(request, "top" + count, top.getTag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(top.getJson());
+    }
+
+    @GetMapping(value = "/popular", params = "fields")
+    public MappingJacksonValue getTopFilmSummaries(@RequestParam String fields,
+                                                   @RequestParam(defaultValue = "10", required = false) int count,
+                                                   @RequestParam(required = false) String window,
+                                                   WebRequest request) {
+        if (window == null
+                && ETags.notModified(request, "top" + count, filmService.getRenderedTopFilms(count).getTag(), fields)) {
+            return null;
+        }
+        return SparseFields.select(window == null
+                ? filmService.getTopFilmSummaries(count)
+                : filmService.getTrendingFilmSummaries(window, count), fields, FilmSummary.FIELDS);
+    }
+
+    /**
+     * {@link #getTopFilms} for binary clients. The cache holds rendered JSON, so these are encoded per request;
+     * the tag of the cached list is read before the films, so it never claims a newer list than the body.
+     */
+    @GetMapping(value = "/popular",
+            produces = {MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfiguration.APPLICATION_SMILE_VALUE})
+    public Collection<Film> getTopFilmsBinary(@RequestParam(defaultValue = "10", required = false) int count,
+                                              @RequestParam(required = false) String window,
+                                              WebRequest request) {
+        if (window != null) {
+            return filmService.getTrendingFilms(window, count);
+        }
+        if (ETags.notModified(request, "top" + count, filmService.getRenderedTopFilms(count).getTag())) {
+            return null;
+        }
         return filmService.getTopFilms(count);
     }
 }
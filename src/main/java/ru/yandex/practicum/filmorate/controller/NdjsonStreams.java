@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes entities as newline-delimited JSON one at a time, so the response never holds more than one entity.
+ */
+final class NdjsonStreams {
+    private NdjsonStreams() {
+    }
+
+    static StreamingResponseBody write(ObjectMapper objectMapper, Iterable<?> entities) {
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return out -> {
+            for (Object entity : entities) {
+                writer.writeValue(out, entity);
+                out.write('\n');
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Writes summaries with only the properties named in a {@code fields} parameter, e.g. {@code fields=id,likeCount}.
+ */
+@Slf4j
+final class SparseFields {
+    private SparseFields() {
+    }
+
+    static MappingJacksonValue select(Object summaries, String fields, Set<String> available) {
+        Set<String> requested = requested(fields);
+        if (requested.isEmpty()) {
+            log.error("No fields requested: {}", fields);
+            throw new ValidationException("At least one field must be requested, available: " + sorted(available));
+        }
+        Set<String> unknown = new TreeSet<>(requested);
+        unknown.removeAll(available);
+        if (!unknown.isEmpty()) {
+            log.error("Unknown fields requested: {}", unknown);
+            throw new ValidationException("Unknown fields: " + unknown + ", available: " + sorted(available));
+        }
+
+        MappingJacksonValue value = new MappingJacksonValue(summaries);
+        value.setFilters(new SimpleFilterProvider()
+                .addFilter(FilmSummary.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(requested)));
+        return value;
+    }
+
+    /**
+     * The distinct names in a {@code fields} parameter, sorted.
+     */
+    static Set<String> requested(String fields) {
+        return Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static Set<String> sorted(Set<String> fields) {
+        return new TreeSet<>(fields);
+    }
+}
@@ -1,24 +1,69 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.CountResponse;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
 import ru.yandex.practicum.filmorate.service.user.UserService;
 
 import javax.validation.Valid;
 import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
 
 @RestController
 @Slf4j
 @RequiredArgsConstructor
 @RequestMapping("/users")
 public class UserController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_RECOMMENDATIONS = 10;
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        return userService.getAllUsers();
+    public Collection<User> getAllUsers(@RequestParam(required = false) Long after,
+                                          @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return userService.getAllUsers();
+        }
+        return userService.getUsersPage(
+                after == null ? 0 : after,
+                limit == null ? DEFAULT_PAGE_SIZE : limit
+        );
+    }
+
+    /**
+     * Only the requested fields of {@link UserSummary}, with friend counts instead of the friends.
+     */
+    @GetMapping(params = "fields")
+    public MappingJacksonValue getUserSummaries(@RequestParam String fields,
+                                                @RequestParam(required = false) Long after,
+                                                @RequestParam(required = false) Integer limit) {
+        int pageLimit = after == null && limit == null ? Integer.MAX_VALUE : DEFAULT_PAGE_SIZE;
+        return SparseFields.select(userService.getUserSummaries(
+                after == null ? 0 : after,
+                limit == null ? pageLimit : limit
+        ), fields, UserSummary.FIELDS);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAllUsers() {
+        return NdjsonStreams.write(objectMapper, userService.getAllUsers());
     }
 
     @PostMapping
@@ -27,17 +72,38 @@ public class UserController {
         return userService.create(user);
     }
 
+    /**
+     * With {@code If-Match} the user is only updated if it is still the version of that ETag, otherwise 412.
+     */
     @PutMapping
-    public User update(@Valid @RequestBody User user) {
+    public User update(@Valid @RequestBody User user,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("PUT request received: {}", user);
+        OptionalLong expectedVersion = ETags.expectedVersion(ifMatch, "u" + user.getId());
+        if (expectedVersion.isPresent()) {
+            return userService.updateIfVersion(user, expectedVersion.getAsLong());
+        }
         return userService.update(user);
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable long id) {
+    public User getUserById(@PathVariable long id, WebRequest request) {
+        if (ETags.notModified(request, "u" + id, userService.getUserVersion(id))) {
+            return null;
+        }
         return userService.getUserById(id);
     }
 
+    @GetMapping("/by-email/{email}")
+    public User getUserByEmail(@PathVariable String email) {
+        return userService.getUserByEmail(email);
+    }
+
+    @GetMapping("/by-login/{login}")
+    public User getUserByLogin(@PathVariable String login) {
+        return userService.getUserByLogin(login);
+    }
+
     @PutMapping("/{id}/friends/{friendId}")
     public User addToFriend(@PathVariable long id, @PathVariable long friendId) {
         return userService.addToFriend(id, friendId);
@@ -48,13 +114,47 @@ public class UserController {
         return userService.deleteFromFriends(id, friendId);
     }
 
+    @PostMapping("/friends/batch")
+    public List<BatchItemResult> addFriends(@RequestBody List<Friendship> friendships) {
+        log.info("POST request received: a batch of {} friendships", friendships.size());
+        return userService.addFriends(friendships);
+    }
+
     @GetMapping("/{id}/friends")
-    public Collection<User> getAllUserFriends(@PathVariable long id) {
+    public Collection<User> getAllUserFriends(@PathVariable long id, WebRequest request) {
+        if (ETags.notModified(request, "fr" + id, userService.getFriendsVersion(id))) {
+            return null;
+        }
         return userService.getAllUserFriends(id);
     }
 
+    @GetMapping(value = "/{id}/friends", params = "fields")
+    public MappingJacksonValue getFriendSummaries(@PathVariable long id, @RequestParam String fields,
+                                                  WebRequest request) {
+        if (ETags.notModified(request, "fr" + id, userService.getFriendsVersion(id), fields)) {
+            return null;
+        }
+        return SparseFields.select(userService.getFriendSummaries(id), fields, UserSummary.FIELDS);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> getMutualFriends(@PathVariable long id, @PathVariable long otherId) {
         return userService.getMutualFriends(id, otherId);
     }
+
+    @GetMapping(value = "/{id}/friends/common/{otherId}", params = "countOnly=true")
+    public CountResponse getMutualFriendsCount(@PathVariable long id, @PathVariable long otherId) {
+        return new CountResponse(userService.getMutualFriendsCount(id, otherId));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<FriendRecommendation> getFriendRecommendations(@PathVariable long id,
+                                                               @RequestParam(required = false) Integer limit) {
+        return userService.getFriendRecommendations(id, limit == null ? DEFAULT_RECOMMENDATIONS : limit);
+    }
+
+    @GetMapping("/{id}/films/recommended")
+    public List<Film> getRecommendedFilms(@PathVariable long id, @RequestParam(required = false) Integer limit) {
+        return filmService.getRecommendedFilms(id, limit == null ? DEFAULT_RECOMMENDATIONS : limit);
+    }
 }
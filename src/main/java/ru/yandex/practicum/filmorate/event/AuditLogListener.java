@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Audit trail of the mutations on the {@code filmorate.audit} logger, one {@code key=value} line per event,
+ * written by the event bus threads instead of the request threads. Films and users are always logged; likes
+ * and friendships, the bulk of the writes, are sampled at {@code filmorate.audit.sample-rate}.
+ */
+@Component
+@Slf4j(topic = "filmorate.audit")
+@ConditionalOnProperty(name = "filmorate.audit.enabled", havingValue = "true", matchIfMissing = true)
+public class AuditLogListener implements DomainEventListener {
+    private static final String[] EVENT_NAMES = Arrays.stream(DomainEvent.Type.values())
+            .map(type -> type.name().toLowerCase())
+            .toArray(String[]::new);
+
+    private final double sampleRate;
+
+    public AuditLogListener(@Value("${filmorate.audit.sample-rate:1.0}") double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("The audit sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        for (DomainEvent event : events) {
+            if (isSampled(event)) {
+                write(event);
+            }
+        }
+    }
+
+    private boolean isSampled(DomainEvent event) {
+        switch (event.getType()) {
+            case LIKE_ADDED:
+            case LIKE_REMOVED:
+            case FRIEND_ADDED:
+            case FRIEND_REMOVED:
+                return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Parameterized, so the line is formatted by the appender only if the logger still writes INFO.
+     */
+    private static void write(DomainEvent event) {
+        String name = EVENT_NAMES[event.getType().ordinal()];
+        switch (event.getType()) {
+            case LIKE_ADDED:
+            case LIKE_REMOVED:
+                log.info("event={} film={} user={} seq={} at={}",
+                        name, event.getFirstId(), event.getSecondId(), event.getSequence(), event.getTime());
+                break;
+            case FRIEND_ADDED:
+            case FRIEND_REMOVED:
+                log.info("event={} user={} friend={} seq={} at={}",
+                        name, event.getFirstId(), event.getSecondId(), event.getSequence(), event.getTime());
+                break;
+            case FILM_CREATED:
+            case FILM_UPDATED:
+            case FILM_DELETED:
+                log.info("event={} film={} seq={} at={}",
+                        name, event.getFirstId(), event.getSequence(), event.getTime());
+                break;
+            default:
+                log.info("event={} user={} seq={} at={}",
+                        name, event.getFirstId(), event.getSequence(), event.getTime());
+        }
+    }
+}
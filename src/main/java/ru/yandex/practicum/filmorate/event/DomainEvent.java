@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A mutation that has been applied to the storages. Likes refer to the film first, friendships to the user
+ * who made the request.
+ * <p>
+ * The services create and publish an event once the storage call has returned.
+ */
+@Getter
+public final class DomainEvent {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Type type;
+    private final long firstId;
+    private final long secondId;
+    // order of creation over all events
+    private final long sequence;
+    // epoch millis of publishing
+    private final long time;
+
+    private DomainEvent(Type type, long firstId, long secondId) {
+        this.type = type;
+        this.firstId = firstId;
+        this.secondId = secondId;
+        this.sequence = SEQUENCE.incrementAndGet();
+        this.time = System.currentTimeMillis();
+    }
+
+    public static DomainEvent filmCreated(long filmId) {
+        return new DomainEvent(Type.FILM_CREATED, filmId, 0);
+    }
+
+    public static DomainEvent filmUpdated(long filmId) {
+        return new DomainEvent(Type.FILM_UPDATED, filmId, 0);
+    }
+
+    public static DomainEvent filmDeleted(long filmId) {
+        return new DomainEvent(Type.FILM_DELETED, filmId, 0);
+    }
+
+    public static DomainEvent likeAdded(long filmId, long userId) {
+        return new DomainEvent(Type.LIKE_ADDED, filmId, userId);
+    }
+
+    public static DomainEvent likeRemoved(long filmId, long userId) {
+        return new DomainEvent(Type.LIKE_REMOVED, filmId, userId);
+    }
+
+    public static DomainEvent userCreated(long userId) {
+        return new DomainEvent(Type.USER_CREATED, userId, 0);
+    }
+
+    public static DomainEvent userUpdated(long userId) {
+        return new DomainEvent(Type.USER_UPDATED, userId, 0);
+    }
+
+    public static DomainEvent userDeleted(long userId) {
+        return new DomainEvent(Type.USER_DELETED, userId, 0);
+    }
+
+    public static DomainEvent friendAdded(long userId, long friendId) {
+        return new DomainEvent(Type.FRIEND_ADDED, userId, friendId);
+    }
+
+    public static DomainEvent friendRemoved(long userId, long friendId) {
+        return new DomainEvent(Type.FRIEND_REMOVED, userId, friendId);
+    }
+
+    /**
+     * The entity whose events keep their order: the film of film and like events, the user of user events and
+     * the lower user ID of friendship events, so both directions of a friendship share a partition.
+     */
+    public long getKey() {
+        return type == Type.FRIEND_ADDED || type == Type.FRIEND_REMOVED ? Math.min(firstId, secondId) : firstId;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + firstId + (secondId == 0 ? "" : ", " + secondId) + ")#" + sequence;
+    }
+
+    public enum Type {
+        FILM_CREATED,
+        FILM_UPDATED,
+        FILM_DELETED,
+        LIKE_ADDED,
+        LIKE_REMOVED,
+        USER_CREATED,
+        USER_UPDATED,
+        USER_DELETED,
+        FRIEND_ADDED,
+        FRIEND_REMOVED
+    }
+}
@@ -0,0 +1,265 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-process bus that hands the mutations of the services to the {@link DomainEventListener} beans.
+ * <p>
+ * Events are partitioned by {@link DomainEvent#getKey()} over {@code filmorate.events.partitions} ring buffers
+ * of {@code filmorate.events.buffer-size} slots. Each partition has a single consumer thread that takes
+ * everything published since its last pass, up to {@code filmorate.events.max-batch} events, and delivers it
+ * as one batch; so the events of one entity stay in order and a slow listener costs one call per batch, not
+ * per event. A publisher finding its partition full waits for the consumer: memory stays bounded and a
+ * listener that can't keep up slows the writes down instead of losing events.
+ * <p>
+ * On shutdown the consumers deliver what is already published and stop; later events are dropped.
+ */
+@Component
+@Slf4j
+public class DomainEventBus implements SmartInitializingSingleton, DisposableBean {
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+    private final ObjectProvider<DomainEventListener> listenerProvider;
+    private final Partition[] partitions;
+    private final int maxBatch;
+    private List<DomainEventListener> listeners = List.of();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder publisherWaits = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public DomainEventBus(ObjectProvider<DomainEventListener> listenerProvider,
+                          @Value("${filmorate.events.partitions:4}") int partitions,
+                          @Value("${filmorate.events.buffer-size:8192}") int bufferSize,
+                          @Value("${filmorate.events.max-batch:256}") int maxBatch) {
+        if (partitions < 1 || bufferSize < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("The event bus needs at least one partition, slot and batch item");
+        }
+        this.listenerProvider = listenerProvider;
+        this.maxBatch = maxBatch;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(i, bufferSize);
+        }
+    }
+
+    /**
+     * Starts the consumers once all listeners exist; events published before are kept in the buffers.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        listeners = listenerProvider.orderedStream().collect(Collectors.toUnmodifiableList());
+        for (Partition partition : partitions) {
+            partition.start();
+        }
+        log.info("The event bus has started {} partitions for {} listeners", partitions.length, listeners.size());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (Partition partition : partitions) {
+            partition.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+    }
+
+    public void publish(DomainEvent event) {
+        partitions[(int) Math.floorMod(event.getKey(), (long) partitions.length)].publish(event);
+    }
+
+    public void publishAll(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            publish(event);
+        }
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getPublisherWaits() {
+        return publisherWaits.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Events published but not yet taken by a consumer.
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        for (Partition partition : partitions) {
+            backlog += partition.size();
+        }
+        return backlog;
+    }
+
+    private void deliver(List<DomainEvent> batch) {
+        for (DomainEventListener listener : listeners) {
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("The listener {} has failed on {} events", listener.getClass().getSimpleName(),
+                        batch.size(), e);
+            }
+        }
+        delivered.add(batch.size());
+        batches.increment();
+    }
+
+    /**
+     * A ring buffer with one consumer. Publishers claim the next slot under the lock, which is held only to
+     * write one reference; the consumer holds it only to copy a batch out.
+     */
+    private final class Partition implements Runnable {
+        private final DomainEvent[] slots;
+        private final Lock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final Thread consumer;
+        // sequence of the next event to publish and of the next event to consume; slot = sequence % length
+        private long head;
+        private long tail;
+        private boolean consumerWaiting;
+        private boolean closed;
+
+        private Partition(int index, int bufferSize) {
+            this.slots = new DomainEvent[bufferSize];
+            this.consumer = new Thread(this, "domain-events-" + index);
+            this.consumer.setDaemon(true);
+        }
+
+        void start() {
+            consumer.start();
+        }
+
+        void publish(DomainEvent event) {
+            lock.lock();
+            try {
+                if (closed) {
+                    dropped.increment();
+                    log.debug("The event bus is closed, the event {} is dropped", event);
+                    return;
+                }
+                if (head - tail == slots.length) {
+                    publisherWaits.increment();
+                    do {
+                        notFull.awaitUninterruptibly();
+                    } while (head - tail == slots.length && !closed);
+                    if (closed) {
+                        dropped.increment();
+                        return;
+                    }
+                }
+                slots[(int) (head++ % slots.length)] = event;
+                published.increment();
+                if (consumerWaiting) {
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<DomainEvent> batch = new ArrayList<>(maxBatch);
+            while (take(batch)) {
+                deliver(List.copyOf(batch));
+                batch.clear();
+            }
+        }
+
+        /**
+         * Waits for events and moves up to a batch of them out of the buffer.
+         *
+         * @return false once the partition is closed and empty
+         */
+        private boolean take(List<DomainEvent> batch) {
+            lock.lock();
+            try {
+                while (head == tail) {
+                    if (closed) {
+                        return false;
+                    }
+                    consumerWaiting = true;
+                    notEmpty.awaitUninterruptibly();
+                    consumerWaiting = false;
+                }
+                boolean wasFull = head - tail == slots.length;
+                while (tail < head && batch.size() < maxBatch) {
+                    int slot = (int) (tail++ % slots.length);
+                    batch.add(slots[slot]);
+                    slots[slot] = null;
+                }
+                if (wasFull) {
+                    notFull.signalAll();
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long size() {
+            lock.lock();
+            try {
+                return head - tail;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signal();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void join(long millis) throws InterruptedException {
+            consumer.join(millis);
+            if (consumer.isAlive()) {
+                log.warn("The consumer {} hasn't finished in time, {} events are left", consumer.getName(), size());
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.event;
+
+import java.util.List;
+
+/**
+ * A view derived from the mutations, updated off the request threads. Every bean implementing it receives all
+ * events published to the {@link DomainEventBus}.
+ */
+public interface DomainEventListener {
+
+    /**
+     * Called by the consumer thread of one partition with the events published since its last call. The events
+     * of one entity come in publishing order and from one thread; events of different entities may be
+     * delivered concurrently by other partitions.
+     */
+    void onEvents(List<DomainEvent> events);
+}
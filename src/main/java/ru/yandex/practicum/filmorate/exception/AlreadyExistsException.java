@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.exception;
+
+/**
+ * An expected conflict, answered with 409; like {@link NotFoundException} it doesn't capture a stack trace.
+ */
+public class AlreadyExistsException extends RuntimeException {
+    public AlreadyExistsException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -1,7 +1,11 @@
 package ru.yandex.practicum.filmorate.exception;
 
+/**
+ * An expected miss, answered with 404 by the error handler, which logs the message only. The stack trace is
+ * never read, so it isn't captured: bots probing random IDs would otherwise pay a stack walk per request.
+ */
 public class NotFoundException extends RuntimeException {
     public NotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
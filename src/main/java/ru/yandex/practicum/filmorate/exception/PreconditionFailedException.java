@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.exception;
+
+/**
+ * An update whose {@code If-Match} version is no longer current, answered with 412; stackless like
+ * {@link NotFoundException}.
+ */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.DomainEvent;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.DomainEventListener;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutations by type, counted from the event bus instead of the request path, and the health of the bus itself.
+ */
+@Component
+@RequiredArgsConstructor
+public class DomainEventMetrics implements MeterBinder, DomainEventListener {
+    private final DomainEventBus eventBus;
+    private final Map<DomainEvent.Type, LongAdder> eventsByType = newCounters();
+
+    @Override
+    public void onEvents(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            eventsByType.get(event.getType()).increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        eventsByType.forEach((type, counter) ->
+                FunctionCounter.builder("filmorate.events", counter, LongAdder::sum)
+                        .description("Mutations delivered to the event listeners")
+                        .tag("type", type.name().toLowerCase())
+                        .register(registry));
+
+        FunctionCounter.builder("filmorate.events.bus.published", eventBus, DomainEventBus::getPublished)
+                .description("Events accepted by the event bus")
+                .register(registry);
+        FunctionCounter.builder("filmorate.events.bus.batches", eventBus, DomainEventBus::getBatches)
+                .description("Batches delivered to the event listeners")
+                .register(registry);
+        FunctionCounter.builder("filmorate.events.bus.publisher.waits", eventBus, DomainEventBus::getPublisherWaits)
+                .description("Publishes that waited for a full partition")
+                .register(registry);
+        FunctionCounter.builder("filmorate.events.bus.dropped", eventBus, DomainEventBus::getDropped)
+                .description("Events published after the bus was closed")
+                .register(registry);
+        FunctionCounter.builder("filmorate.events.bus.failures", eventBus, DomainEventBus::getFailures)
+                .description("Batches a listener has failed on")
+                .register(registry);
+        Gauge.builder("filmorate.events.bus.backlog", eventBus, DomainEventBus::getBacklog)
+                .description("Events published but not yet taken by a consumer")
+                .register(registry);
+    }
+
+    private static Map<DomainEvent.Type, LongAdder> newCounters() {
+        Map<DomainEvent.Type, LongAdder> counters = new EnumMap<>(DomainEvent.Type.class);
+        for (DomainEvent.Type type : DomainEvent.Type.values()) {
+            counters.put(type, new LongAdder());
+        }
+        return counters;
+    }
+}
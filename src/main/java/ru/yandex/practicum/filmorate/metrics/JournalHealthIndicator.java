@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.journal.FileMutationJournal;
+
+import java.io.IOException;
+
+/**
+ * DOWN once a journal write has failed: the storages then reject every write, and only a restart, which
+ * recovers the state from disk, brings them back.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.journal.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class JournalHealthIndicator extends AbstractHealthIndicator {
+    private final FileMutationJournal journal;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        IOException failure = journal.getFailure();
+        if (failure != null) {
+            builder.down(failure);
+            return;
+        }
+        builder.up()
+                .withDetail("records", journal.getAppendedRecords())
+                .withDetail("fsyncs", journal.getFsyncCount());
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.film.PopularFilmsCache;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+@RequiredArgsConstructor
+public class PopularFilmsCacheMetrics implements MeterBinder {
+    private final PopularFilmsCache cache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.cache.popular.requests", cache, PopularFilmsCache::getHits)
+                .description("Popular films requests by cache result: served from the cache or rebuilt")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.cache.popular.requests", cache, PopularFilmsCache::getMisses)
+                .description("Popular films requests by cache result: served from the cache or rebuilt")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("filmorate.cache.popular.hit.ratio", cache, PopularFilmsCache::getHitRatio)
+                .description("Share of popular films requests answered without a rebuild")
+                .register(registry);
+        Gauge.builder("filmorate.cache.popular.size", cache, PopularFilmsCache::getSize)
+                .description("Cached popular films responses")
+                .register(registry);
+        FunctionTimer.builder("filmorate.cache.popular.rebuild", cache,
+                        PopularFilmsCache::getRebuilds,
+                        PopularFilmsCache::getRebuildNanos,
+                        TimeUnit.NANOSECONDS)
+                .description("Loading and serializing a popular films list on a cache miss")
+                .register(registry);
+    }
+}
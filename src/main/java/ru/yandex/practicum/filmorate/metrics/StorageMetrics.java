@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.HeapFootprint;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.ShardedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.FileMutationJournal;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage sizes and journal health. Gauges are read on scrape, so the storages only keep running counters.
+ */
+@Component
+@RequiredArgsConstructor
+public class StorageMetrics implements MeterBinder {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ObjectProvider<FileMutationJournal> journal;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.films", filmStorage, FilmStorage::getFilmCount)
+                .description("Number of stored films")
+                .register(registry);
+        Gauge.builder("filmorate.likes", filmStorage, FilmStorage::getLikeCount)
+                .description("Number of likes over all films")
+                .register(registry);
+        Gauge.builder("filmorate.users", userStorage, UserStorage::getUserCount)
+                .description("Number of stored users")
+                .register(registry);
+        Gauge.builder("filmorate.friendships", userStorage, UserStorage::getFriendshipCount)
+                .description("Number of friendships, each counted once")
+                .register(registry);
+
+        if (filmStorage instanceof InMemoryFilmStorage) {
+            Gauge.builder("filmorate.likers.distinct", (InMemoryFilmStorage) filmStorage,
+                            InMemoryFilmStorage::estimateDistinctLikers)
+                    .description("Estimated number of distinct users who have ever liked a film (HyperLogLog)")
+                    .register(registry);
+        } else if (filmStorage instanceof ShardedFilmStorage) {
+            Gauge.builder("filmorate.likers.distinct", (ShardedFilmStorage) filmStorage,
+                            ShardedFilmStorage::estimateDistinctLikers)
+                    .description("Estimated number of distinct users who have ever liked a film (HyperLogLog)")
+                    .register(registry);
+        }
+
+        bindHeapFootprint(registry, "films", filmStorage);
+        bindHeapFootprint(registry, "users", userStorage);
+
+        journal.ifAvailable(fileJournal -> bindJournal(registry, fileJournal));
+    }
+
+    private void bindHeapFootprint(MeterRegistry registry, String storage, Object candidate) {
+        if (candidate instanceof HeapFootprint) {
+            Gauge.builder("filmorate.storage.heap", (HeapFootprint) candidate, HeapFootprint::estimateHeapBytes)
+                    .description("Estimated heap held by the in-memory storage")
+                    .baseUnit("bytes")
+                    .tag("storage", storage)
+                    .register(registry);
+        }
+    }
+
+    private void bindJournal(MeterRegistry registry, FileMutationJournal fileJournal) {
+        FunctionTimer.builder("filmorate.journal.fsync", fileJournal,
+                        FileMutationJournal::getFsyncCount,
+                        FileMutationJournal::getFsyncNanos,
+                        TimeUnit.NANOSECONDS)
+                .description("Group commits forced to disk")
+                .register(registry);
+        Gauge.builder("filmorate.journal.records", fileJournal, FileMutationJournal::getAppendedRecords)
+                .description("Records appended since startup")
+                .register(registry);
+        Gauge.builder("filmorate.journal.recovery.records", fileJournal, FileMutationJournal::getRecoveredRecords)
+                .description("Records replayed on the last startup")
+                .register(registry);
+        Gauge.builder("filmorate.journal.recovery.duration", fileJournal, FileMutationJournal::getRecoveryMillis)
+                .description("Duration of the last recovery")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("filmorate.journal.snapshot.duration", fileJournal, FileMutationJournal::getLastSnapshotMillis)
+                .description("Duration of the last snapshot")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item of a batch request. Results are returned in the order of the request items.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    public enum Status {
+        ADDED,
+        ALREADY_EXISTS,
+        NOT_FOUND
+    }
+
+    private static final BatchItemResult ADDED = new BatchItemResult(Status.ADDED, null);
+
+    private final Status status;
+    private final String error;
+
+    private BatchItemResult(Status status, String error) {
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BatchItemResult added() {
+        return ADDED;
+    }
+
+    public static BatchItemResult alreadyExists(String error) {
+        return new BatchItemResult(Status.ALREADY_EXISTS, error);
+    }
+
+    public static BatchItemResult notFound(String error) {
+        return new BatchItemResult(Status.NOT_FOUND, error);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+public class CountResponse {
+    private final long count;
+
+    public CountResponse(long count) {
+        this.count = count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.ToString;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
@@ -22,5 +23,12 @@ public class Film {
     private LocalDate releaseDate;
     @Positive
     private int duration;
+    // logged as a count: a popular entity holds thousands of IDs
+    @ToString.Exclude
     private Set<Long> likes;
+
+    @ToString.Include(name = "likes")
+    private int likesCount() {
+        return likes == null ? 0 : likes.size();
+    }
 }
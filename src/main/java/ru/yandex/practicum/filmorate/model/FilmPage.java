@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One page of search results; {@code next} continues after the last film and is absent on the last page.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FilmPage {
+    private final List<Film> films;
+    private final String next;
+
+    public FilmPage(List<Film> films, String next) {
+        this.films = films;
+        this.next = next;
+    }
+
+    public List<Film> getFilms() {
+        return films;
+    }
+
+    public String getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Filters, order and keyset position of a film search. Unset filters match every film.
+ */
+@Data
+@Builder
+public class FilmSearch {
+    private LocalDate releasedFrom;
+    private LocalDate releasedTo;
+    private Integer minDuration;
+    private Integer maxDuration;
+    private String namePrefix;
+    private Sort sort;
+    private int limit;
+    // sort key and ID of the last film of the previous page, both null on the first page
+    private Comparable<?> afterKey;
+    private Long afterId;
+
+    /**
+     * Names are searched and sorted case-insensitively.
+     */
+    public static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public enum Sort {
+        ID("id", Film::getId, Long::valueOf),
+        RELEASE_DATE("releaseDate", Film::getReleaseDate, LocalDate::parse),
+        DURATION("duration", Film::getDuration, Integer::valueOf),
+        NAME("name", film -> nameKey(film.getName()), key -> key);
+
+        private final String parameter;
+        private final Function<Film, Comparable<?>> keyOf;
+        private final Function<String, Comparable<?>> parser;
+
+        Sort(String parameter, Function<Film, Comparable<?>> keyOf, Function<String, Comparable<?>> parser) {
+            this.parameter = parameter;
+            this.keyOf = keyOf;
+            this.parser = parser;
+        }
+
+        public static Optional<Sort> of(String parameter) {
+            return Arrays.stream(values())
+                    .filter(sort -> sort.parameter.equals(parameter))
+                    .findFirst();
+        }
+
+        public String getParameter() {
+            return parameter;
+        }
+
+        public Comparable<?> keyOf(Film film) {
+            return keyOf.apply(film);
+        }
+
+        public Comparable<?> parseKey(String key) {
+            return parser.apply(key);
+        }
+    }
+}
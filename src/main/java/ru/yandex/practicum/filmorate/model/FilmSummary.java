@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * A film with the number of its likes instead of the IDs of the users who liked it. Written through the
+ * {@value #FIELDS_FILTER} filter, which selects the requested {@link #FIELDS}.
+ */
+@JsonFilter(FilmSummary.FIELDS_FILTER)
+public class FilmSummary {
+    public static final String FIELDS_FILTER = "fields";
+    public static final Set<String> FIELDS =
+            Set.of("id", "name", "description", "releaseDate", "duration", "likeCount");
+
+    private final long id;
+    private final String name;
+    private final String description;
+    private final LocalDate releaseDate;
+    private final int duration;
+    private final int likeCount;
+
+    public FilmSummary(long id, String name, String description, LocalDate releaseDate, int duration,
+                       int likeCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.releaseDate = releaseDate;
+        this.duration = duration;
+        this.likeCount = likeCount;
+    }
+
+    public static FilmSummary of(Film film) {
+        return new FilmSummary(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getLikes() == null ? 0 : film.getLikes().size());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public LocalDate getReleaseDate() {
+        return releaseDate;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getLikeCount() {
+        return likeCount;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+public class FriendRecommendation {
+    private final User user;
+    private final int mutualFriends;
+
+    public FriendRecommendation(User user, int mutualFriends) {
+        this.user = user;
+        this.mutualFriends = mutualFriends;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public int getMutualFriends() {
+        return mutualFriends;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Sliding windows of the trending films. A window is counted in fixed buckets, so it slides by one bucket
+ * at a time.
+ */
+public enum TrendingWindow {
+    HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(1)),
+    DAY("24h", Duration.ofHours(24), Duration.ofMinutes(15)),
+    WEEK("7d", Duration.ofDays(7), Duration.ofHours(1));
+
+    private final String parameter;
+    private final Duration length;
+    private final Duration bucket;
+
+    TrendingWindow(String parameter, Duration length, Duration bucket) {
+        this.parameter = parameter;
+        this.length = length;
+        this.bucket = bucket;
+    }
+
+    public static Optional<TrendingWindow> of(String parameter) {
+        return Arrays.stream(values())
+                .filter(window -> window.parameter.equals(parameter))
+                .findFirst();
+    }
+
+    public Duration getLength() {
+        return length;
+    }
+
+    public long getBucketMillis() {
+        return bucket.toMillis();
+    }
+
+    public int getBuckets() {
+        return (int) (length.toMillis() / bucket.toMillis());
+    }
+}
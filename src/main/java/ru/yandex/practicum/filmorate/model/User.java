@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.ToString;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
@@ -22,5 +23,12 @@ public class User {
     @NotNull
     @Past
     private LocalDate birthday;
+    // logged as a count: a popular entity holds thousands of IDs
+    @ToString.Exclude
     private Set<Long> friends;
+
+    @ToString.Include(name = "friends")
+    private int friendsCount() {
+        return friends == null ? 0 : friends.size();
+    }
 }
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * A user with the number of their friends instead of the friends' IDs. Written through the
+ * {@value FilmSummary#FIELDS_FILTER} filter, which selects the requested {@link #FIELDS}.
+ */
+@JsonFilter(FilmSummary.FIELDS_FILTER)
+public class UserSummary {
+    public static final Set<String> FIELDS = Set.of("id", "email", "login", "name", "birthday", "friendCount");
+
+    private final long id;
+    private final String email;
+    private final String login;
+    private final String name;
+    private final LocalDate birthday;
+    private final int friendCount;
+
+    public UserSummary(long id, String email, String login, String name, LocalDate birthday, int friendCount) {
+        this.id = id;
+        this.email = email;
+        this.login = login;
+        this.name = name;
+        this.birthday = birthday;
+        this.friendCount = friendCount;
+    }
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(),
+                user.getFriends() == null ? 0 : user.getFriends().size());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDate getBirthday() {
+        return birthday;
+    }
+
+    public int getFriendCount() {
+        return friendCount;
+    }
+}
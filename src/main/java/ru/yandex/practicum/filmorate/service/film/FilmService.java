@@ -1,62 +1,288 @@
 package ru.yandex.practicum.filmorate.service.film;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.DomainEvent;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmPage;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
 import ru.yandex.practicum.filmorate.service.user.UserService;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.util.Collection;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static java.time.Month.DECEMBER;
 
+/**
+ * A mutation publishes its event to the {@link DomainEventBus} once the storage call has returned, without holding
+ * a lock of its own. The mutations of a film one after another are published in that order; racing ones may be
+ * published in either order.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class FilmService {
     private final FilmStorage filmStorage;
     private final UserService userService;
+    private final PopularFilmsCache popularFilmsCache;
+    private final DomainEventBus eventBus;
     private static final LocalDate MIN_DAY_RELEASE = LocalDate.of(1895, DECEMBER, 28);
+    private static final int MAX_BATCH_SIZE = 10_000;
 
+    @Timed("filmorate.films.service")
     public Film create(Film film) {
         validateFilm(film);
-        return filmStorage.create(film);
+        Film created = filmStorage.create(film);
+        popularFilmsCache.onFilmCreated(created.getId());
+        eventBus.publish(DomainEvent.filmCreated(created.getId()));
+        return created;
     }
 
+    @Timed("filmorate.films.service")
     public Film update(Film film) {
         validateFilm(film);
-        return filmStorage.update(film);
+        return onUpdated(filmStorage.update(film));
     }
 
+    /**
+     * {@link #update} of the film as of the given version, for {@code If-Match} requests.
+     */
+    @Timed("filmorate.films.service")
+    public Film updateIfVersion(Film film, long expectedVersion) {
+        validateFilm(film);
+        return onUpdated(filmStorage.updateIfVersion(film, expectedVersion));
+    }
+
+    @Timed("filmorate.films.service")
     public Film delete(Film film) {
-        return filmStorage.delete(film);
+        Film deleted = filmStorage.delete(film);
+        popularFilmsCache.onFilmDeleted(deleted.getId());
+        eventBus.publish(DomainEvent.filmDeleted(deleted.getId()));
+        return deleted;
     }
 
+    @Timed("filmorate.films.service")
     public Collection<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    @Timed("filmorate.films.service")
+    public Collection<Film> getFilmsPage(long afterId, int limit) {
+        validatePageLimit(limit);
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
+    @Timed("filmorate.films.service")
+    public List<FilmSummary> getFilmSummaries(long afterId, int limit) {
+        validatePageLimit(limit);
+        return filmStorage.getFilmSummaries(afterId, limit);
+    }
+
+    @Timed("filmorate.films.service")
     public Film getFilmById(long id) {
         return filmStorage.getFilmById(id);
     }
 
+    @Timed("filmorate.films.service")
+    public OptionalLong getFilmVersion(long id) {
+        return filmStorage.getFilmVersion(id);
+    }
+
+    @Timed("filmorate.films.service")
     public Film addLike(long filmId, long userId) {
         userService.getUserById(userId);
-        return filmStorage.addLike(filmId, userId);
+        Film film = filmStorage.addLike(filmId, userId);
+        popularFilmsCache.onLikesChanged(filmId, film.getLikes().size());
+        eventBus.publish(DomainEvent.likeAdded(filmId, userId));
+        return film;
     }
 
+    @Timed("filmorate.films.service")
     public Film deleteLike(long filmId, long userId) {
         userService.getUserById(userId);
-        return filmStorage.deleteLike(filmId, userId);
+        Film film = filmStorage.deleteLike(filmId, userId);
+        popularFilmsCache.onLikesChanged(filmId, film.getLikes().size());
+        eventBus.publish(DomainEvent.likeRemoved(filmId, userId));
+        return film;
     }
 
+    /**
+     * Checks all users of the batch with one lookup instead of one per like; likes of unknown users
+     * don't reach the storage. The likes added are published one by one after the storage call.
+     */
+    @Timed("filmorate.films.service")
+    public List<BatchItemResult> addLikes(List<FilmLike> likes) {
+        validateBatchSize(likes.size());
+        Set<Long> existingUsers = userService.getExistingUserIds(
+                likes.stream().map(FilmLike::getUserId).collect(Collectors.toSet())
+        );
+
+        BatchItemResult[] results = new BatchItemResult[likes.size()];
+        List<FilmLike> likesOfExistingUsers = new ArrayList<>(likes.size());
+        for (int i = 0; i < likes.size(); i++) {
+            long userId = likes.get(i).getUserId();
+            if (existingUsers.contains(userId)) {
+                likesOfExistingUsers.add(likes.get(i));
+            } else {
+                results[i] = BatchItemResult.notFound("User not found, ID=" + userId);
+            }
+        }
+
+        List<BatchItemResult> appliedResults = filmStorage.addLikes(likesOfExistingUsers);
+        if (appliedResults.stream().anyMatch(result -> result.getStatus() == BatchItemResult.Status.ADDED)) {
+            popularFilmsCache.invalidateAll();
+        }
+        for (int i = 0; i < appliedResults.size(); i++) {
+            if (appliedResults.get(i).getStatus() == BatchItemResult.Status.ADDED) {
+                FilmLike like = likesOfExistingUsers.get(i);
+                eventBus.publish(DomainEvent.likeAdded(like.getFilmId(), like.getUserId()));
+            }
+        }
+
+        Iterator<BatchItemResult> applied = appliedResults.iterator();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = applied.next();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Timed("filmorate.films.service")
     public Collection<Film> getTopFilms(int count) {
         return filmStorage.getTopFilms(count);
     }
 
+    @Timed("filmorate.films.service")
+    public List<FilmSummary> getTopFilmSummaries(int count) {
+        return filmStorage.getTopFilmSummaries(count);
+    }
+
+    @Timed(value = "filmorate.films.trending", percentiles = {0.5, 0.95, 0.99})
+    public Collection<Film> getTrendingFilms(String window, int count) {
+        return filmStorage.getTrendingFilms(parseTrendingWindow(window), count);
+    }
+
+    @Timed(value = "filmorate.films.trending", percentiles = {0.5, 0.95, 0.99})
+    public List<FilmSummary> getTrendingFilmSummaries(String window, int count) {
+        return filmStorage.getTrendingFilmSummaries(parseTrendingWindow(window), count);
+    }
+
+    @Timed(value = "filmorate.films.recommended", percentiles = {0.5, 0.95, 0.99})
+    public List<Film> getRecommendedFilms(long userId, int limit) {
+        userService.getUserById(userId);
+        if (limit < 1) {
+            log.error("The limit must be positive: {}", limit);
+            throw new ValidationException("The limit must be positive: " + limit);
+        }
+        return filmStorage.getRecommendedFilms(userId, limit);
+    }
+
+    /**
+     * Films matching the search filters, one page in the requested order. The {@code next} position of the
+     * page encodes the order and the sort key and ID of its last film.
+     */
+    @Timed(value = "filmorate.films.search", percentiles = {0.5, 0.95, 0.99})
+    public FilmPage searchFilms(FilmSearch search, String sort, String after) {
+        validatePageLimit(search.getLimit());
+        validateSearchRanges(search);
+        search.setSort(FilmSearch.Sort.of(sort).orElseThrow(() -> {
+            log.error("Unknown sort order: {}", sort);
+            return new ValidationException("Unknown sort order: " + sort);
+        }));
+        if (after != null) {
+            decodePosition(search, after);
+        }
+
+        List<Film> films = filmStorage.searchFilms(search);
+        String next = films.size() < search.getLimit()
+                ? null : encodePosition(search.getSort(), films.get(films.size() - 1));
+        return new FilmPage(films, next);
+    }
+
+    /**
+     * The popular films list already serialized to JSON and tagged by its content, served from
+     * {@link PopularFilmsCache}.
+     */
+    @Timed(value = "filmorate.films.popular", percentiles = {0.5, 0.95, 0.99})
+    public PopularFilmsCache.RenderedList getRenderedTopFilms(int count) {
+        return popularFilmsCache.get(count, filmStorage::getTopFilms);
+    }
+
+    private Film onUpdated(Film updated) {
+        popularFilmsCache.onFilmUpdated(updated.getId());
+        eventBus.publish(DomainEvent.filmUpdated(updated.getId()));
+        return updated;
+    }
+
+    private void validateBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            log.error("The batch is too large: {}", size);
+            throw new ValidationException("The batch can't contain more than " + MAX_BATCH_SIZE + " items: " + size);
+        }
+    }
+
+    private TrendingWindow parseTrendingWindow(String window) {
+        return TrendingWindow.of(window).orElseThrow(() -> {
+            log.error("Unknown trending window: {}", window);
+            return new ValidationException("Unknown trending window: " + window);
+        });
+    }
+
+    private void validatePageLimit(int limit) {
+        if (limit < 1) {
+            log.error("The page limit must be positive: {}", limit);
+            throw new ValidationException("The page limit must be positive: " + limit);
+        }
+    }
+
+    private void validateSearchRanges(FilmSearch search) {
+        if (search.getReleasedFrom() != null && search.getReleasedTo() != null
+                && search.getReleasedFrom().isAfter(search.getReleasedTo())) {
+            log.error("The release date range is empty: {} - {}", search.getReleasedFrom(), search.getReleasedTo());
+            throw new ValidationException("The release date range is empty: "
+                    + search.getReleasedFrom() + " - " + search.getReleasedTo());
+        }
+        if (search.getMinDuration() != null && search.getMaxDuration() != null
+                && search.getMinDuration() > search.getMaxDuration()) {
+            log.error("The duration range is empty: {} - {}", search.getMinDuration(), search.getMaxDuration());
+            throw new ValidationException("The duration range is empty: "
+                    + search.getMinDuration() + " - " + search.getMaxDuration());
+        }
+    }
+
+    private static String encodePosition(FilmSearch.Sort sort, Film last) {
+        String position = sort.getParameter() + '\n' + sort.keyOf(last) + '\n' + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void decodePosition(FilmSearch search, String after) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            int keyStart = position.indexOf('\n');
+            int idStart = position.lastIndexOf('\n');
+            if (keyStart == idStart || !position.substring(0, keyStart).equals(search.getSort().getParameter())) {
+                throw new IllegalArgumentException("The position belongs to another order");
+            }
+            search.setAfterKey(search.getSort().parseKey(position.substring(keyStart + 1, idStart)));
+            search.setAfterId(Long.parseLong(position.substring(idStart + 1)));
+        } catch (RuntimeException e) {
+            log.error("Invalid page position: {}", after);
+            throw new ValidationException("Invalid page position: " + after);
+        }
+    }
+
     private void validateFilm(Film film) {
         if (film.getReleaseDate().isBefore(MIN_DAY_RELEASE)) {
             log.error("The release date of movie can't earlier than the first day " +
@@ -0,0 +1,223 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Serialized responses of the popular films list, one per requested count, evicted in LRU order.
+ * <p>
+ * There is no TTL: the film service reports every mutation, and only the entries the mutation can change are
+ * dropped. An entry remembers the films it lists and the like count of its last film, so a like on a film
+ * far below that threshold keeps the entry.
+ * <p>
+ * A rebuild remembers the mutations that overlap it and is stored only if none of them would have dropped the
+ * rebuilt entry. Otherwise it could store a list read before such a mutation after the mutation has already
+ * invalidated the entries. Requests that miss the same count while it is rebuilt wait for that rebuild.
+ * <p>
+ * Each list is tagged with a digest of its JSON, taken once per rebuild. The tag changes only when the list
+ * does: a like far below the list or a change of an unlisted film keeps it, even if it drops the entry.
+ */
+@Component
+public class PopularFilmsCache {
+    private final ObjectMapper objectMapper;
+    private final Map<Integer, CachedList> entries;
+    // guarded by entries, like the mutations recorded in them
+    private final Map<Integer, Rebuild> rebuilding = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder rebuildNanos = new LongAdder();
+
+    public PopularFilmsCache(ObjectMapper objectMapper,
+                             @Value("${filmorate.popular-cache.max-entries:64}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedList> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public RenderedList get(int count, IntFunction<Collection<Film>> loader) {
+        while (true) {
+            Rebuild rebuild;
+            boolean started = false;
+            synchronized (entries) {
+                CachedList entry = entries.get(count);
+                if (entry != null) {
+                    hits.increment();
+                    return entry.rendered;
+                }
+                rebuild = rebuilding.get(count);
+                if (rebuild == null) {
+                    rebuild = new Rebuild();
+                    rebuilding.put(count, rebuild);
+                    started = true;
+                }
+            }
+            misses.increment();
+            if (started) {
+                return rebuild(count, loader, rebuild);
+            }
+            // a rebuild that was not stored may predate a mutation this request follows, so it is not shared
+            RenderedList shared = rebuild.result.join();
+            if (shared != null) {
+                return shared;
+            }
+        }
+    }
+
+    public void onFilmCreated(long filmId) {
+        // a new film has no likes and the highest ID, so it only shows up in lists shorter than requested
+        invalidateIf(entry -> !entry.full);
+    }
+
+    public void onFilmUpdated(long filmId) {
+        invalidateIf(entry -> entry.filmIds.contains(filmId));
+    }
+
+    public void onFilmDeleted(long filmId) {
+        invalidateIf(entry -> entry.filmIds.contains(filmId));
+    }
+
+    public void onLikesChanged(long filmId, int likes) {
+        invalidateIf(entry -> entry.filmIds.contains(filmId) || !entry.full || likes >= entry.threshold);
+    }
+
+    public void invalidateAll() {
+        invalidateIf(entry -> true);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getRebuilds() {
+        return rebuilds.sum();
+    }
+
+    public long getRebuildNanos() {
+        return rebuildNanos.sum();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private RenderedList rebuild(int count, IntFunction<Collection<Film>> loader, Rebuild rebuild) {
+        CachedList rebuilt = null;
+        try {
+            long start = System.nanoTime();
+            rebuilt = new CachedList(count, loader.apply(count));
+            rebuildNanos.add(System.nanoTime() - start);
+            rebuilds.increment();
+            return rebuilt.rendered;
+        } finally {
+            boolean stored = false;
+            synchronized (entries) {
+                rebuilding.remove(count);
+                if (rebuilt != null && !rebuild.isAffected(rebuilt)) {
+                    entries.put(count, rebuilt);
+                    stored = true;
+                }
+            }
+            rebuild.result.complete(stored ? rebuilt.rendered : null);
+        }
+    }
+
+    private void invalidateIf(Predicate<CachedList> affected) {
+        synchronized (entries) {
+            entries.values().removeIf(affected);
+            for (Rebuild rebuild : rebuilding.values()) {
+                rebuild.overlapping.add(affected);
+            }
+        }
+    }
+
+    /**
+     * A rebuild in flight: the mutations since it started, and its list once stored, or {@code null} if it
+     * failed or was not stored.
+     */
+    private static final class Rebuild {
+        private final List<Predicate<CachedList>> overlapping = new ArrayList<>();
+        private final CompletableFuture<RenderedList> result = new CompletableFuture<>();
+
+        boolean isAffected(CachedList rebuilt) {
+            for (Predicate<CachedList> affected : overlapping) {
+                if (affected.test(rebuilt)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class CachedList {
+        private final Set<Long> filmIds = new HashSet<>();
+        private final RenderedList rendered;
+        private final boolean full;
+        // like count of the last listed film
+        private final int threshold;
+
+        private CachedList(int count, Collection<Film> films) {
+            int minLikes = Integer.MAX_VALUE;
+            for (Film film : films) {
+                filmIds.add(film.getId());
+                minLikes = Math.min(minLikes, film.getLikes() == null ? 0 : film.getLikes().size());
+            }
+            this.full = films.size() >= count;
+            this.threshold = minLikes;
+            try {
+                this.rendered = new RenderedList(objectMapper.writeValueAsBytes(films));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A popular list serialized to JSON, with the digest of that JSON as its tag.
+     */
+    public static final class RenderedList {
+        private final byte[] json;
+        private final String tag;
+
+        RenderedList(byte[] json) {
+            this.json = json;
+            this.tag = DigestUtils.md5DigestAsHex(json);
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+}
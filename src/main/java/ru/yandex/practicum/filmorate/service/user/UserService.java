@@ -1,58 +1,185 @@
 package ru.yandex.practicum.filmorate.service.user;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.DomainEvent;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
 
+/**
+ * A mutation publishes its event to the {@link DomainEventBus} once the storage call has returned, without holding
+ * a lock of its own. The mutations of a user or a friendship one after another are published in that order; racing
+ * ones may be published in either order.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class UserService {
+    private static final int MAX_BATCH_SIZE = 10_000;
     private final UserStorage userStorage;
+    private final DomainEventBus eventBus;
 
+    @Timed("filmorate.users.service")
     public User create(User user) {
         validateUser(user);
-        return userStorage.create(user);
+        User created = userStorage.create(user);
+        eventBus.publish(DomainEvent.userCreated(created.getId()));
+        return created;
     }
 
+    @Timed("filmorate.users.service")
     public User update(User user) {
         validateUser(user);
-        return userStorage.update(user);
+        User updated = userStorage.update(user);
+        eventBus.publish(DomainEvent.userUpdated(updated.getId()));
+        return updated;
     }
 
+    /**
+     * {@link #update} of the user as of the given version, for {@code If-Match} requests.
+     */
+    @Timed("filmorate.users.service")
+    public User updateIfVersion(User user, long expectedVersion) {
+        validateUser(user);
+        User updated = userStorage.updateIfVersion(user, expectedVersion);
+        eventBus.publish(DomainEvent.userUpdated(updated.getId()));
+        return updated;
+    }
+
+    @Timed("filmorate.users.service")
     public User delete(User user) {
-        return userStorage.delete(user);
+        User deleted = userStorage.delete(user);
+        eventBus.publish(DomainEvent.userDeleted(deleted.getId()));
+        return deleted;
     }
 
+    @Timed("filmorate.users.service")
     public Collection<User> getAllUsers() {
         return userStorage.getAllUsers();
     }
 
+    @Timed("filmorate.users.service")
+    public Collection<User> getUsersPage(long afterId, int limit) {
+        validateLimit(limit);
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
+    @Timed("filmorate.users.service")
+    public List<UserSummary> getUserSummaries(long afterId, int limit) {
+        validateLimit(limit);
+        return userStorage.getUserSummaries(afterId, limit);
+    }
+
+    @Timed("filmorate.users.service")
     public User getUserById(long id) {
         return userStorage.getUserById(id);
     }
 
+    @Timed("filmorate.users.service")
+    public OptionalLong getUserVersion(long id) {
+        return userStorage.getUserVersion(id);
+    }
+
+    @Timed("filmorate.users.service")
+    public OptionalLong getFriendsVersion(long id) {
+        return userStorage.getFriendsVersion(id);
+    }
+
+    @Timed("filmorate.users.service")
+    public User getUserByEmail(String email) {
+        return userStorage.getUserByEmail(email);
+    }
+
+    @Timed("filmorate.users.service")
+    public User getUserByLogin(String login) {
+        return userStorage.getUserByLogin(login);
+    }
+
+    @Timed("filmorate.users.service")
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        return userStorage.getExistingUserIds(ids);
+    }
+
+    @Timed("filmorate.users.service")
     public User addToFriend(long userId, long friendId) {
-        return userStorage.addToFriend(userId, friendId);
+        User user = userStorage.addToFriend(userId, friendId);
+        eventBus.publish(DomainEvent.friendAdded(userId, friendId));
+        return user;
     }
 
+    @Timed("filmorate.users.service")
     public User deleteFromFriends(long userId, long friendId) {
-        return userStorage.deleteFromFriends(userId, friendId);
+        User user = userStorage.deleteFromFriends(userId, friendId);
+        eventBus.publish(DomainEvent.friendRemoved(userId, friendId));
+        return user;
+    }
+
+    @Timed("filmorate.users.service")
+    public List<BatchItemResult> addFriends(List<Friendship> friendships) {
+        validateBatchSize(friendships.size());
+        List<BatchItemResult> results = userStorage.addFriends(friendships);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).getStatus() == BatchItemResult.Status.ADDED) {
+                Friendship friendship = friendships.get(i);
+                eventBus.publish(DomainEvent.friendAdded(friendship.getUserId(), friendship.getFriendId()));
+            }
+        }
+        return results;
     }
 
+    @Timed("filmorate.users.service")
     public Collection<User> getAllUserFriends(long userId) {
         return userStorage.getAllUserFriends(userId);
     }
 
+    @Timed("filmorate.users.service")
+    public List<UserSummary> getFriendSummaries(long userId) {
+        return userStorage.getFriendSummaries(userId);
+    }
+
+    @Timed(value = "filmorate.users.mutual-friends", percentiles = {0.5, 0.95, 0.99})
     public Collection<User> getMutualFriends(long firstUserId, long secondUserId) {
         return userStorage.getMutualFriends(firstUserId, secondUserId);
     }
 
+    @Timed("filmorate.users.service")
+    public int getMutualFriendsCount(long firstUserId, long secondUserId) {
+        return userStorage.getMutualFriendsCount(firstUserId, secondUserId);
+    }
+
+    @Timed(value = "filmorate.users.recommendations", percentiles = {0.5, 0.95, 0.99})
+    public List<FriendRecommendation> getFriendRecommendations(long userId, int limit) {
+        validateLimit(limit);
+        return userStorage.getFriendRecommendations(userId, limit);
+    }
+
+    private void validateBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            log.error("The batch is too large: {}", size);
+            throw new ValidationException("The batch can't contain more than " + MAX_BATCH_SIZE + " items: " + size);
+        }
+    }
+
+    private void validateLimit(int limit) {
+        if (limit < 1) {
+            log.error("The limit must be positive: {}", limit);
+            throw new ValidationException("The limit must be positive: " + limit);
+        }
+    }
+
     private void validateUser(User user) {
         if (user.getLogin().contains(" ")) {
             log.error("The user's login can't contain the space.");
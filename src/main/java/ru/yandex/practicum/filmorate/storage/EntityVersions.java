@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version stamps of entities, the ETags of conditional requests. A mutation stamps each entity it changes with
+ * the next tick of a clock once the change is applied, so a stamp read before an entity never describes a newer
+ * state than the one read after it. The clock starts at the microseconds of the start time, so a restarted
+ * storage doesn't hand out the stamps of its previous run again.
+ */
+public class EntityVersions {
+    private final AtomicLong clock;
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public EntityVersions() {
+        this(newClock());
+    }
+
+    /**
+     * Versions on a clock shared with other partitions, so the stamps of an entity don't go back when it moves.
+     */
+    public EntityVersions(AtomicLong clock) {
+        this.clock = clock;
+    }
+
+    public static AtomicLong newClock() {
+        return new AtomicLong(System.currentTimeMillis() * 1000);
+    }
+
+    public void stamp(long id) {
+        versions.put(id, clock.incrementAndGet());
+    }
+
+    /**
+     * Stamps the entity only if it has a version, for changes made without holding its lock.
+     */
+    public void restamp(long id) {
+        versions.computeIfPresent(id, (key, version) -> clock.incrementAndGet());
+    }
+
+    public void remove(long id) {
+        versions.remove(id);
+        clock.incrementAndGet();
+    }
+
+    /**
+     * The stamp of the entity, or 0 if it has none.
+     */
+    public long get(long id) {
+        Long version = versions.get(id);
+        return version == null ? 0 : version;
+    }
+}
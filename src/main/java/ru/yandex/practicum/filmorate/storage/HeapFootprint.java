@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Implemented by storages that keep their data on the JVM heap.
+ */
+public interface HeapFootprint {
+    /**
+     * A rough estimate from entity and edge counts, cheap enough to be polled by a metrics scrape.
+     */
+    long estimateHeapBytes();
+}
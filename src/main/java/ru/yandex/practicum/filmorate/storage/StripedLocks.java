@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by entity ID. Two entities in the same stripe share a lock,
+ * so the number of stripes bounds contention rather than the number of entities.
+ */
+public class StripedLocks {
+    private final Lock[] locks;
+    private final int mask;
+
+    public StripedLocks() {
+        this(Runtime.getRuntime().availableProcessors() * 16);
+    }
+
+    public StripedLocks(int minStripes) {
+        int stripes = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = stripes - 1;
+    }
+
+    public int stripeOf(long id) {
+        int hash = Long.hashCode(id);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public Lock get(long id) {
+        return locks[stripeOf(id)];
+    }
+
+    /**
+     * Locks the stripes of both IDs in a fixed order, so that two threads locking
+     * the same pair in opposite directions can't deadlock.
+     */
+    public void lockBoth(long firstId, long secondId) {
+        int first = stripeOf(firstId);
+        int second = stripeOf(secondId);
+        locks[Math.min(first, second)].lock();
+        if (first != second) {
+            locks[Math.max(first, second)].lock();
+        }
+    }
+
+    public void unlockBoth(long firstId, long secondId) {
+        int first = stripeOf(firstId);
+        int second = stripeOf(secondId);
+        if (first != second) {
+            locks[Math.max(first, second)].unlock();
+        }
+        locks[Math.min(first, second)].unlock();
+    }
+
+    /**
+     * Locks the stripes of all IDs in ascending order, the order {@link #lockBoth} uses.
+     *
+     * @return the stripes taken, for {@link #holdsAll} and {@link #unlockAll}
+     */
+    public int[] lockAll(long[] ids) {
+        int[] stripes = Arrays.stream(ids).mapToInt(this::stripeOf).sorted().distinct().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    public boolean holdsAll(int[] stripes, long[] ids) {
+        for (long id : ids) {
+            if (Arrays.binarySearch(stripes, stripeOf(id)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void unlockAll(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    /**
+     * Runs the action holding every stripe, taken in ascending order, the same order {@link #lockBoth} uses.
+     */
+    public void runExclusively(Runnable action) {
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        try {
+            action.run();
+        } finally {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
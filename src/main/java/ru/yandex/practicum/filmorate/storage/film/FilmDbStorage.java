@@ -0,0 +1,446 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.graph.LongSetView;
+import ru.yandex.practicum.filmorate.storage.graph.SortedLongSet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Component
+@Profile("db")
+@Slf4j
+public class FilmDbStorage implements FilmStorage {
+    private static final Map<FilmSearch.Sort, String> SEARCH_COLUMNS = Map.of(
+            FilmSearch.Sort.ID, "id",
+            FilmSearch.Sort.RELEASE_DATE, "release_date",
+            FilmSearch.Sort.DURATION, "duration",
+            FilmSearch.Sort.NAME, "name_key"
+    );
+    private static final String SELECT_FILMS =
+            "SELECT id, name, description, release_date, duration FROM films ";
+    // like_count is kept on the film row, so summaries read no likes
+    private static final String SELECT_FILM_SUMMARIES =
+            "SELECT id, name, description, release_date, duration, like_count FROM films ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SimpleJdbcInsert filmInsert;
+    private final int recommendationNeighbours;
+
+    public FilmDbStorage(JdbcTemplate jdbcTemplate,
+                         @Value("${filmorate.recommendations.neighbours:50}") int recommendationNeighbours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.recommendationNeighbours = recommendationNeighbours;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.filmInsert = new SimpleJdbcInsert(jdbcTemplate)
+                .withTableName("films")
+                .usingColumns("name", "description", "release_date", "duration")
+                .usingGeneratedKeyColumns("id");
+    }
+
+    @Override
+    public Film create(Film film) {
+        Number id = filmInsert.executeAndReturnKey(Map.of(
+                "name", film.getName(),
+                "description", film.getDescription(),
+                "release_date", film.getReleaseDate(),
+                "duration", film.getDuration()
+        ));
+        film.setId(id.longValue());
+        film.setLikes(new LongSetView(new SortedLongSet()));
+
+        log.debug("A new film has been added: {}", film);
+        return film;
+    }
+
+    @Override
+    public Film update(Film film) {
+        int updated = jdbcTemplate.update(
+                "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ? WHERE id = ?",
+                film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getId()
+        );
+        if (updated == 0) {
+            printErrorMessage("Updating a movie is not possible. The movie is not found, ID=" + film.getId());
+        }
+
+        film.setLikes(new LongSetView(SortedLongSet.ofSorted(findLikes(film.getId()))));
+        log.debug("The movie has been updated: {}", film);
+
+        return film;
+    }
+
+    /**
+     * The tables keep no versions, so there is no version an update could be checked against.
+     */
+    @Override
+    public Film updateIfVersion(Film film, long expectedVersion) {
+        log.debug("Conditional updates are not supported, ID={}", film.getId());
+        throw new PreconditionFailedException("Conditional updates are not supported by this storage");
+    }
+
+    @Override
+    public Film delete(Film film) {
+        int deleted = jdbcTemplate.update("DELETE FROM films WHERE id = ?", film.getId());
+        if (deleted == 0) {
+            printErrorMessage("Deleting a movie is not possible. The movie was not found, ID=" + film.getId());
+        }
+        log.debug("The movie has been deleted: {}", film);
+
+        return film;
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return withLikes(jdbcTemplate.query(SELECT_FILMS + "ORDER BY id", this::mapFilm));
+    }
+
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit) {
+        return withLikes(jdbcTemplate.query(
+                SELECT_FILMS + "WHERE id > ? ORDER BY id LIMIT ?",
+                this::mapFilm, afterId, limit
+        ));
+    }
+
+    @Override
+    public List<FilmSummary> getFilmSummaries(long afterId, int limit) {
+        return jdbcTemplate.query(
+                SELECT_FILM_SUMMARIES + "WHERE id > ? ORDER BY id LIMIT ?",
+                this::mapFilmSummary, afterId, limit
+        );
+    }
+
+    /**
+     * Each filter and order is served by one of the (key, id) indexes; the page position is a keyset condition
+     * on the order index.
+     */
+    @Override
+    public List<Film> searchFilms(FilmSearch search) {
+        String column = SEARCH_COLUMNS.get(search.getSort());
+        List<String> conditions = new ArrayList<>();
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", search.getLimit());
+        if (search.getReleasedFrom() != null) {
+            conditions.add("release_date >= :releasedFrom");
+            params.addValue("releasedFrom", search.getReleasedFrom());
+        }
+        if (search.getReleasedTo() != null) {
+            conditions.add("release_date <= :releasedTo");
+            params.addValue("releasedTo", search.getReleasedTo());
+        }
+        if (search.getMinDuration() != null) {
+            conditions.add("duration >= :minDuration");
+            params.addValue("minDuration", search.getMinDuration());
+        }
+        if (search.getMaxDuration() != null) {
+            conditions.add("duration <= :maxDuration");
+            params.addValue("maxDuration", search.getMaxDuration());
+        }
+        if (search.getNamePrefix() != null) {
+            conditions.add("name_key LIKE :namePrefix ESCAPE '\\'");
+            params.addValue("namePrefix", FilmSearch.nameKey(search.getNamePrefix())
+                    .replaceAll("([\\\\%_])", "\\\\$1") + "%");
+        }
+        if (search.getAfterId() != null) {
+            conditions.add(column.equals("id")
+                    ? "id > :afterId"
+                    : "(" + column + " > :afterKey OR " + column + " = :afterKey AND id > :afterId)");
+            params.addValue("afterKey", search.getAfterKey());
+            params.addValue("afterId", search.getAfterId());
+        }
+
+        String where = conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ";
+        String order = column.equals("id") ? "ORDER BY id " : "ORDER BY " + column + ", id ";
+        return withLikes(namedJdbcTemplate.query(SELECT_FILMS + where + order + "LIMIT :limit", params, this::mapFilm));
+    }
+
+    @Override
+    public Film getFilmById(long id) {
+        List<Film> films = jdbcTemplate.query(SELECT_FILMS + "WHERE id = ?", this::mapFilm, id);
+        if (films.isEmpty()) {
+            printErrorMessage("Getting an existing movie is not possible. The movie was not found, ID=" + id);
+        }
+        return withLikes(films).get(0);
+    }
+
+    @Override
+    public OptionalLong getFilmVersion(long id) {
+        return OptionalLong.empty();
+    }
+
+    @Override
+    @Transactional
+    public Film addLike(long filmId, long userId) {
+        checkFilmForExist(filmId, "Adding a user's like is not possible. The movie was not found, ID=");
+
+        try {
+            jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        } catch (DuplicateKeyException e) {
+            printErrorMessage("The user ID=" + userId + " has already liked the film with ID=" + filmId);
+        }
+        jdbcTemplate.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?", filmId);
+        if (log.isDebugEnabled()) {
+            log.debug("The user ID={} has liked the film with ID={}", userId, filmId);
+        }
+
+        return getFilmById(filmId);
+    }
+
+    @Override
+    @Transactional
+    public Film deleteLike(long filmId, long userId) {
+        checkFilmForExist(filmId, "Deleting the user's like is not possible. A movie was not found, ID=");
+
+        int deleted = jdbcTemplate.update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId);
+        if (deleted == 0) {
+            printErrorMessage("The user ID=" + userId + " didn't like the film with ID=" + filmId);
+        }
+        jdbcTemplate.update("UPDATE films SET like_count = like_count - 1 WHERE id = ?", filmId);
+        if (log.isDebugEnabled()) {
+            log.debug("The like of user with ID={} has been removed from the film ID={}", userId, filmId);
+        }
+
+        return getFilmById(filmId);
+    }
+
+    /**
+     * Checks films and existing likes with one query each, then writes the new likes and the like counters
+     * as two JDBC batches.
+     */
+    @Override
+    @Transactional
+    public List<BatchItemResult> addLikes(List<FilmLike> likes) {
+        if (likes.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource ids = new MapSqlParameterSource()
+                .addValue("films", likes.stream().map(FilmLike::getFilmId).collect(Collectors.toSet()))
+                .addValue("users", likes.stream().map(FilmLike::getUserId).collect(Collectors.toSet()));
+        Set<Long> existingFilms = new HashSet<>(
+                namedJdbcTemplate.queryForList("SELECT id FROM films WHERE id IN (:films)", ids, Long.class)
+        );
+        Map<Long, Set<Long>> likesByFilm = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT film_id, user_id FROM likes WHERE film_id IN (:films) AND user_id IN (:users)",
+                ids,
+                rs -> {
+                    likesByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>())
+                            .add(rs.getLong("user_id"));
+                }
+        );
+
+        List<BatchItemResult> results = new ArrayList<>(likes.size());
+        List<Object[]> inserts = new ArrayList<>();
+        Map<Long, Integer> addedByFilm = new HashMap<>();
+        for (FilmLike like : likes) {
+            long filmId = like.getFilmId();
+            if (!existingFilms.contains(filmId)) {
+                results.add(BatchItemResult.notFound("The movie was not found, ID=" + filmId));
+            } else if (!likesByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(like.getUserId())) {
+                results.add(BatchItemResult.alreadyExists(
+                        "The user ID=" + like.getUserId() + " has already liked the film with ID=" + filmId
+                ));
+            } else {
+                inserts.add(new Object[]{filmId, like.getUserId()});
+                addedByFilm.merge(filmId, 1, Integer::sum);
+                results.add(BatchItemResult.added());
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", inserts);
+        jdbcTemplate.batchUpdate(
+                "UPDATE films SET like_count = like_count + ? WHERE id = ?",
+                addedByFilm.entrySet().stream()
+                        .map(added -> new Object[]{added.getValue(), added.getKey()})
+                        .collect(Collectors.toList())
+        );
+        log.debug("A batch of {} likes has been applied, {} added.", likes.size(), inserts.size());
+
+        return results;
+    }
+
+    @Override
+    public Collection<Film> getTopFilms(int count) {
+        log.debug("Getting the list of popular films.");
+        // served by films_popularity_idx (like_count DESC, id)
+        return withLikes(jdbcTemplate.query(
+                SELECT_FILMS + "ORDER BY like_count DESC, id LIMIT ?",
+                this::mapFilm, count
+        ));
+    }
+
+    @Override
+    public Collection<Film> getTrendingFilms(TrendingWindow window, int count) {
+        return findFilmsInOrder(findTrendingFilmIds(window, count));
+    }
+
+    @Override
+    public List<FilmSummary> getTopFilmSummaries(int count) {
+        return jdbcTemplate.query(
+                SELECT_FILM_SUMMARIES + "ORDER BY like_count DESC, id LIMIT ?",
+                this::mapFilmSummary, count
+        );
+    }
+
+    @Override
+    public List<FilmSummary> getTrendingFilmSummaries(TrendingWindow window, int count) {
+        List<Long> filmIds = findTrendingFilmIds(window, count);
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, FilmSummary> films = namedJdbcTemplate.query(
+                SELECT_FILM_SUMMARIES + "WHERE id IN (:ids)", new MapSqlParameterSource("ids", filmIds),
+                this::mapFilmSummary
+        ).stream().collect(Collectors.toMap(FilmSummary::getId, film -> film));
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> findTrendingFilmIds(TrendingWindow window, int count) {
+        // served by likes_created_idx (created_at)
+        return jdbcTemplate.queryForList(
+                "SELECT film_id FROM likes WHERE created_at > ? "
+                        + "GROUP BY film_id ORDER BY COUNT(*) DESC, film_id LIMIT ?",
+                Long.class, Timestamp.from(Instant.now().minus(window.getLength())), count
+        );
+    }
+
+    /**
+     * Same ranking as the in-memory storage: the nearest users by the Jaccard index of their likes, then the films
+     * they liked and the user didn't, by summed similarity.
+     */
+    @Override
+    public List<Film> getRecommendedFilms(long userId, int limit) {
+        List<Long> filmIds = jdbcTemplate.queryForList(
+                "WITH neighbours AS ("
+                        + "SELECT l2.user_id, COUNT(*) * 1.0 / ("
+                        + "(SELECT COUNT(*) FROM likes WHERE user_id = ?) "
+                        + "+ (SELECT COUNT(*) FROM likes l3 WHERE l3.user_id = l2.user_id) - COUNT(*)"
+                        + ") AS similarity "
+                        + "FROM likes l1 JOIN likes l2 ON l2.film_id = l1.film_id AND l2.user_id <> l1.user_id "
+                        + "WHERE l1.user_id = ? "
+                        + "GROUP BY l2.user_id ORDER BY similarity DESC, l2.user_id LIMIT ?) "
+                        + "SELECT l.film_id FROM neighbours n JOIN likes l ON l.user_id = n.user_id "
+                        + "WHERE l.film_id NOT IN (SELECT film_id FROM likes WHERE user_id = ?) "
+                        + "GROUP BY l.film_id ORDER BY SUM(n.similarity) DESC, l.film_id LIMIT ?",
+                Long.class, userId, userId, recommendationNeighbours, userId, limit
+        );
+        return findFilmsInOrder(filmIds);
+    }
+
+    private List<Film> findFilmsInOrder(List<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Film> films = withLikes(namedJdbcTemplate.query(
+                SELECT_FILMS + "WHERE id IN (:ids)", new MapSqlParameterSource("ids", filmIds), this::mapFilm
+        )).stream().collect(Collectors.toMap(Film::getId, film -> film));
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long getFilmCount() {
+        return count("SELECT COUNT(*) FROM films");
+    }
+
+    @Override
+    public long getLikeCount() {
+        return count("SELECT COUNT(*) FROM likes");
+    }
+
+    private long count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private Film mapFilm(ResultSet rs, int rowNum) throws SQLException {
+        return Film.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .description(rs.getString("description"))
+                .releaseDate(rs.getDate("release_date").toLocalDate())
+                .duration(rs.getInt("duration"))
+                .build();
+    }
+
+    private FilmSummary mapFilmSummary(ResultSet rs, int rowNum) throws SQLException {
+        return new FilmSummary(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getDate("release_date").toLocalDate(),
+                rs.getInt("duration"),
+                rs.getInt("like_count")
+        );
+    }
+
+    private long[] findLikes(long filmId) {
+        return jdbcTemplate.queryForList(
+                "SELECT user_id FROM likes WHERE film_id = ? ORDER BY user_id", Long.class, filmId
+        ).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Loads the likes of all given films with one query instead of one query per film.
+     */
+    private List<Film> withLikes(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Long, List<Long>> likesByFilm = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT film_id, user_id FROM likes WHERE film_id IN (:ids) ORDER BY film_id, user_id",
+                new MapSqlParameterSource("ids", films.stream().map(Film::getId).collect(Collectors.toList())),
+                rs -> {
+                    likesByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>())
+                            .add(rs.getLong("user_id"));
+                }
+        );
+        for (Film film : films) {
+            long[] likes = likesByFilm.getOrDefault(film.getId(), List.of()).stream()
+                    .mapToLong(Long::longValue)
+                    .toArray();
+            film.setLikes(new LongSetView(SortedLongSet.ofSorted(likes)));
+        }
+        return films;
+    }
+
+    private void checkFilmForExist(long id, String message) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films WHERE id = ?", Integer.class, id);
+        if (count == null || count == 0) {
+            printErrorMessage(message + id);
+        }
+    }
+
+    private void printErrorMessage(String message) {
+        log.debug(message);
+        throw new NotFoundException(message);
+    }
+}
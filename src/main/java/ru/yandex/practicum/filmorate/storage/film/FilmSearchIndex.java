@@ -0,0 +1,268 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Secondary indexes of films by release date, duration and lower-cased name, each ordered by (key, film ID).
+ * Name prefixes are ranges of the name index.
+ * <p>
+ * A search either walks the index of the requested order from the page position, checking the other filters
+ * film by film and stopping at the limit, or, when a filter of another index selects at most
+ * {@value #MATERIALIZE_LIMIT} films, loads that range, filters and sorts it. The second plan avoids walking
+ * most of the order index to find a few films matching a narrow filter.
+ * <p>
+ * Updates of one film must be serialized by the caller; readers never block. An entry is only trusted when
+ * it still matches the film's current key, so a reader never reports an entry left over by a concurrent update.
+ */
+class FilmSearchIndex {
+    private static final int MATERIALIZE_LIMIT = 10_000;
+
+    private final NavigableSet<Key<LocalDate>> byReleaseDate = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key<Integer>> byDuration = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key<String>> byName = new ConcurrentSkipListSet<>();
+
+    void add(Film film) {
+        long filmId = film.getId();
+        byReleaseDate.add(new Key<>(film.getReleaseDate(), filmId));
+        byDuration.add(new Key<>(film.getDuration(), filmId));
+        byName.add(new Key<>(FilmSearch.nameKey(film.getName()), filmId));
+    }
+
+    void remove(Film film) {
+        long filmId = film.getId();
+        byReleaseDate.remove(new Key<>(film.getReleaseDate(), filmId));
+        byDuration.remove(new Key<>(film.getDuration(), filmId));
+        byName.remove(new Key<>(FilmSearch.nameKey(film.getName()), filmId));
+    }
+
+    /**
+     * Removes the entries of a replaced version of the film whose keys have changed. The new version is added
+     * before it is published and the old one retired after, so a concurrent reader may meet the film twice,
+     * but never lose it.
+     */
+    void retire(Film oldFilm, Film newFilm) {
+        if (oldFilm == null) {
+            return;
+        }
+        long filmId = oldFilm.getId();
+        if (!oldFilm.getReleaseDate().equals(newFilm.getReleaseDate())) {
+            byReleaseDate.remove(new Key<>(oldFilm.getReleaseDate(), filmId));
+        }
+        if (oldFilm.getDuration() != newFilm.getDuration()) {
+            byDuration.remove(new Key<>(oldFilm.getDuration(), filmId));
+        }
+        String oldName = FilmSearch.nameKey(oldFilm.getName());
+        if (!oldName.equals(FilmSearch.nameKey(newFilm.getName()))) {
+            byName.remove(new Key<>(oldName, filmId));
+        }
+    }
+
+    List<Film> search(FilmSearch search, NavigableMap<Long, Film> films) {
+        NavigableSet<Key<LocalDate>> releaseRange = hasReleaseFilter(search)
+                ? range(byReleaseDate, search.getReleasedFrom(), search.getReleasedTo()) : null;
+        NavigableSet<Key<Integer>> durationRange = hasDurationFilter(search)
+                ? range(byDuration, search.getMinDuration(), search.getMaxDuration()) : null;
+        NavigableSet<Key<String>> nameRange = search.getNamePrefix() != null
+                ? prefixRange(FilmSearch.nameKey(search.getNamePrefix())) : null;
+
+        List<NavigableSet<? extends Key<?>>> filters = new ArrayList<>();
+        if (releaseRange != null) {
+            filters.add(releaseRange);
+        }
+        if (durationRange != null) {
+            filters.add(durationRange);
+        }
+        if (nameRange != null) {
+            filters.add(nameRange);
+        }
+
+        NavigableSet<? extends Key<?>> narrowest = null;
+        int narrowestSize = MATERIALIZE_LIMIT + 1;
+        for (NavigableSet<? extends Key<?>> range : filters) {
+            int size = boundedSize(range);
+            if (size == 0) {
+                return List.of();
+            }
+            if (size < narrowestSize) {
+                narrowest = range;
+                narrowestSize = size;
+            }
+        }
+
+        NavigableSet<? extends Key<?>> orderRange;
+        switch (search.getSort()) {
+            case RELEASE_DATE:
+                orderRange = releaseRange != null ? releaseRange : byReleaseDate;
+                break;
+            case DURATION:
+                orderRange = durationRange != null ? durationRange : byDuration;
+                break;
+            case NAME:
+                orderRange = nameRange != null ? nameRange : byName;
+                break;
+            default:
+                orderRange = null;
+        }
+
+        if (narrowest != null && narrowest != orderRange) {
+            return materialize(narrowest, search, films);
+        }
+        return orderRange == null ? walkById(search, films) : walk(orderRange, search, films);
+    }
+
+    private List<Film> walkById(FilmSearch search, NavigableMap<Long, Film> films) {
+        NavigableMap<Long, Film> tail = search.getAfterId() == null
+                ? films : films.tailMap(search.getAfterId(), false);
+        List<Film> result = new ArrayList<>();
+        for (Film film : tail.values()) {
+            if (result.size() >= search.getLimit()) {
+                break;
+            }
+            if (matches(film, search)) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Film> walk(NavigableSet<? extends Key<?>> range, FilmSearch search, NavigableMap<Long, Film> films) {
+        NavigableSet<Key> entries = (NavigableSet) range;
+        if (search.getAfterId() != null) {
+            entries = entries.tailSet(new Key(search.getAfterKey(), search.getAfterId()), false);
+        }
+        Function<Film, Comparable<?>> keyOf = search.getSort()::keyOf;
+        List<Film> result = new ArrayList<>();
+        Iterator<Key> iterator = entries.iterator();
+        while (result.size() < search.getLimit() && iterator.hasNext()) {
+            Key entry = iterator.next();
+            Film film = films.get(entry.filmId);
+            if (film != null && entry.key.equals(keyOf.apply(film)) && matches(film, search)) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Film> materialize(NavigableSet<? extends Key<?>> range, FilmSearch search,
+                                   NavigableMap<Long, Film> films) {
+        FilmSearch.Sort sort = search.getSort();
+        Comparator<Film> order = Comparator.comparing(film -> (Comparable) sort.keyOf(film));
+        order = order.thenComparing(Film::getId);
+        Key after = search.getAfterId() == null ? null : new Key(search.getAfterKey(), search.getAfterId());
+
+        List<Film> result = new ArrayList<>();
+        // an updated film may be met under its old and its new key
+        Set<Long> seen = new HashSet<>();
+        for (Key<?> entry : range) {
+            Film film = films.get(entry.filmId);
+            if (film == null || !matches(film, search) || !seen.add(film.getId())) {
+                continue;
+            }
+            if (after != null && after.compareTo(new Key(sort.keyOf(film), film.getId())) >= 0) {
+                continue;
+            }
+            result.add(film);
+        }
+        return result.stream()
+                .sorted(order)
+                .limit(search.getLimit())
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matches(Film film, FilmSearch search) {
+        LocalDate releaseDate = film.getReleaseDate();
+        return (search.getReleasedFrom() == null || !releaseDate.isBefore(search.getReleasedFrom()))
+                && (search.getReleasedTo() == null || !releaseDate.isAfter(search.getReleasedTo()))
+                && (search.getMinDuration() == null || film.getDuration() >= search.getMinDuration())
+                && (search.getMaxDuration() == null || film.getDuration() <= search.getMaxDuration())
+                && (search.getNamePrefix() == null
+                || FilmSearch.nameKey(film.getName()).startsWith(FilmSearch.nameKey(search.getNamePrefix())));
+    }
+
+    private static boolean hasReleaseFilter(FilmSearch search) {
+        return search.getReleasedFrom() != null || search.getReleasedTo() != null;
+    }
+
+    private static boolean hasDurationFilter(FilmSearch search) {
+        return search.getMinDuration() != null || search.getMaxDuration() != null;
+    }
+
+    private static <K extends Comparable<? super K>> NavigableSet<Key<K>> range(NavigableSet<Key<K>> index, K from, K to) {
+        if (from != null && to != null) {
+            if (from.compareTo(to) > 0) {
+                return new ConcurrentSkipListSet<>();
+            }
+            return index.subSet(new Key<>(from, Long.MIN_VALUE), true, new Key<>(to, Long.MAX_VALUE), true);
+        }
+        if (from != null) {
+            return index.tailSet(new Key<>(from, Long.MIN_VALUE), true);
+        }
+        return index.headSet(new Key<>(to, Long.MAX_VALUE), true);
+    }
+
+    private NavigableSet<Key<String>> prefixRange(String prefix) {
+        // every string starting with the prefix sorts below the prefix followed by the highest char
+        return byName.subSet(new Key<>(prefix, Long.MIN_VALUE), true,
+                new Key<>(prefix + Character.MAX_VALUE, Long.MAX_VALUE), true);
+    }
+
+    private static int boundedSize(NavigableSet<?> range) {
+        int size = 0;
+        Iterator<?> iterator = range.iterator();
+        while (size <= MATERIALIZE_LIMIT && iterator.hasNext()) {
+            iterator.next();
+            size++;
+        }
+        return size;
+    }
+
+    private static final class Key<K extends Comparable<? super K>> implements Comparable<Key<K>> {
+        private final K key;
+        private final long filmId;
+
+        private Key(K key, long filmId) {
+            this.key = key;
+            this.filmId = filmId;
+        }
+
+        @Override
+        public int compareTo(Key<K> other) {
+            int comp = key.compareTo(other.key);
+            return comp != 0 ? comp : Long.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key<?> other = (Key<?>) o;
+            return filmId == other.filmId && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(filmId) + Objects.hashCode(key);
+        }
+    }
+}
@@ -1,23 +1,72 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
 
 public interface FilmStorage {
     Film create(Film film);
 
     Film update(Film film);
 
+    /**
+     * Updates the film only if its version is still {@code expectedVersion}.
+     *
+     * @throws ru.yandex.practicum.filmorate.exception.PreconditionFailedException if the film has changed since
+     */
+    Film updateIfVersion(Film film, long expectedVersion);
+
     Film delete(Film film);
 
     Collection<Film> getAllFilms();
 
+    Collection<Film> getFilmsPage(long afterId, int limit);
+
+    /**
+     * The films of {@link #getFilmsPage} with like counts, read without loading the likes.
+     */
+    List<FilmSummary> getFilmSummaries(long afterId, int limit);
+
+    /**
+     * Films matching every filter of the search, in its order, after its page position and up to its limit.
+     */
+    List<Film> searchFilms(FilmSearch search);
+
     Film getFilmById(long id);
 
+    /**
+     * A version that changes with every change of the film, its likes included, or empty if the storage
+     * doesn't version films.
+     */
+    OptionalLong getFilmVersion(long id);
+
     Film addLike(long filmId, long userId);
 
     Film deleteLike(long filmId, long userId);
 
+    List<BatchItemResult> addLikes(List<FilmLike> likes);
+
     Collection<Film> getTopFilms(int count);
+
+    /**
+     * Films ranked by the likes they received within the window, films without such likes left out.
+     */
+    Collection<Film> getTrendingFilms(TrendingWindow window, int count);
+
+    List<FilmSummary> getTopFilmSummaries(int count);
+
+    List<FilmSummary> getTrendingFilmSummaries(TrendingWindow window, int count);
+
+    List<Film> getRecommendedFilms(long userId, int limit);
+
+    long getFilmCount();
+
+    long getLikeCount();
 }
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.sketch.SpaceSaving;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Popularity ranking backed by {@link SpaceSaving} sketches fed with the like count changes. The films are
+ * partitioned by ID over stripes with a sketch each, so likes of films in different stripes don't wait for one
+ * monitor; {@link #top} merges the tops of all stripes.
+ * <p>
+ * Every stripe has the counters for the whole error bound: an item's error is at most the weight of its stripe
+ * divided by the capacity, which is at most the bound of the total weight. So memory is bounded by the stripes
+ * times the counters of one sketch, and a stripe only fills up with as many films as it sees.
+ */
+class HeavyHittersRanking implements PopularityRanking {
+    private final SpaceSaving[] stripes;
+    private final int mask;
+
+    HeavyHittersRanking(double maxError) {
+        this(maxError, Runtime.getRuntime().availableProcessors());
+    }
+
+    HeavyHittersRanking(double maxError, int minStripes) {
+        int count = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        stripes = new SpaceSaving[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = SpaceSaving.withMaxError(maxError);
+        }
+        mask = count - 1;
+    }
+
+    @Override
+    public void add(long filmId, int likes) {
+        if (likes > 0) {
+            stripeOf(filmId).add(filmId, likes);
+        }
+    }
+
+    @Override
+    public void remove(long filmId, int likes) {
+        stripeOf(filmId).remove(filmId, likes);
+    }
+
+    @Override
+    public void change(long filmId, int oldLikes, int newLikes) {
+        if (newLikes > oldLikes) {
+            stripeOf(filmId).add(filmId, newLikes - oldLikes);
+        } else if (newLikes < oldLikes) {
+            stripeOf(filmId).subtract(filmId, oldLikes - newLikes);
+        }
+    }
+
+    /**
+     * The stripes hold disjoint films, so the top of the union is among the tops of the stripes.
+     */
+    @Override
+    public List<Long> top(int count) {
+        List<SpaceSaving.Estimate> candidates = new ArrayList<>();
+        for (SpaceSaving stripe : stripes) {
+            candidates.addAll(stripe.topEstimates(count));
+        }
+        return candidates.stream()
+                .sorted(SpaceSaving.Estimate.BY_RANK)
+                .limit(count)
+                .map(SpaceSaving.Estimate::getItem)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        long bytes = 0;
+        for (SpaceSaving stripe : stripes) {
+            bytes += stripe.estimateHeapBytes();
+        }
+        return bytes;
+    }
+
+    private SpaceSaving stripeOf(long filmId) {
+        int hash = Long.hashCode(filmId);
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+}
@@ -1,55 +1,172 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.HeapFootprint;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.LongSetView;
+import ru.yandex.practicum.filmorate.storage.graph.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.sketch.HyperLogLog;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
-import static java.lang.Integer.compare;
-
 @Component
+@Profile("!db & !sharded")
 @Slf4j
-public class InMemoryFilmStorage implements FilmStorage {
-    private static long counter = 0;
-    private final Map<Long, Film> filmsByID = new HashMap<>();
+public class InMemoryFilmStorage implements FilmStorage, HeapFootprint {
+    // map node, Film, strings, LocalDate, likes row, version and search index entries of an average film
+    private static final long FILM_BYTES = 484;
+    // 16 KB, a standard error of 0.8%
+    static final int LIKERS_PRECISION = 14;
+    // a like is stored in the film's row and in the user's row of the reverse index
+    private static final long LIKE_BYTES = 2 * Long.BYTES;
+    private final MutationJournal journal;
+    private final FilmRecommender recommender;
+    private final PopularityRanking popularity;
+    private final AtomicLong counter = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, Film> filmsByID = new ConcurrentSkipListMap<>();
+    private final Map<Long, SortedLongSet> likesByFilm = new ConcurrentHashMap<>();
+    // reverse index of likesByFilm; its rows are guarded by userLocks, taken while holding the film's lock
+    private final Map<Long, SortedLongSet> filmsByUser = new ConcurrentHashMap<>();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final TrendingIndex trending = new TrendingIndex(System::currentTimeMillis);
+    // every user who has ever liked a film; unlikes don't take users out
+    private final HyperLogLog likers = new HyperLogLog(LIKERS_PRECISION);
+    private final StripedLocks locks = new StripedLocks();
+    private final StripedLocks userLocks = new StripedLocks();
+    private final LongAdder filmCount = new LongAdder();
+    private final LongAdder likeCount = new LongAdder();
+    private final EntityVersions versions;
+
+    @Autowired
+    public InMemoryFilmStorage(MutationJournal journal, FilmRecommender recommender, PopularityRanking popularity) {
+        this(journal, recommender, popularity, EntityVersions.newClock());
+    }
+
+    /**
+     * A partition of a sharded storage. The partitions stamp versions on one clock, so the version of a film
+     * doesn't go back when it moves.
+     */
+    InMemoryFilmStorage(MutationJournal journal, FilmRecommender recommender, PopularityRanking popularity,
+                        AtomicLong versionClock) {
+        this.journal = journal;
+        this.recommender = recommender;
+        this.popularity = popularity;
+        this.versions = new EntityVersions(versionClock);
+    }
 
     @Override
     public Film create(Film film) {
         film.setId(setFilmId());
-        film.setLikes(new HashSet<>());
-        filmsByID.put(film.getId(), film);
+        return insert(film);
+    }
+
+    /**
+     * Adds a film whose ID has been assigned by the caller, the router of a sharded storage.
+     */
+    Film insert(Film film) {
+        SortedLongSet likes = new SortedLongSet();
+        film.setLikes(new LongSetView(likes));
+
+        Lock lock = locks.get(film.getId());
+        lock.lock();
+        try {
+            journal.append(JournalRecord.filmCreated(film));
+            likesByFilm.put(film.getId(), likes);
+            filmsByID.put(film.getId(), film);
+            popularity.add(film.getId(), 0);
+            searchIndex.add(film);
+            filmCount.increment();
+            versions.stamp(film.getId());
+        } finally {
+            lock.unlock();
+        }
 
-        log.info("A new film has been added: {}", film);
+        log.debug("A new film has been added: {}", film);
         return film;
     }
 
     @Override
     public Film update(Film film) {
+        return update(film, null);
+    }
+
+    @Override
+    public Film updateIfVersion(Film film, long expectedVersion) {
+        return update(film, expectedVersion);
+    }
+
+    private Film update(Film film, Long expectedVersion) {
         long filmId = film.getId();
-        checkFilmForExist(
-                filmId,
-                "Updating a movie is not possible. The movie is not found, ID="
-        );
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            checkFilmForExist(
+                    filmId,
+                    "Updating a movie is not possible. The movie is not found, ID="
+            );
+            if (expectedVersion != null && versions.get(filmId) != expectedVersion) {
+                printPreconditionMessage("The movie has been changed since the version " + expectedVersion
+                        + ", ID=" + filmId);
+            }
 
-        film.setLikes(filmsByID.get(filmId).getLikes());
-        filmsByID.put(filmId, film);
-        log.info("The movie has been updated: {}", film);
+            journal.append(JournalRecord.filmUpdated(film));
+            film.setLikes(new LongSetView(likesByFilm.get(filmId)));
+            searchIndex.add(film);
+            searchIndex.retire(filmsByID.put(filmId, film), film);
+            versions.stamp(filmId);
+        } finally {
+            lock.unlock();
+        }
+        log.debug("The movie has been updated: {}", film);
 
         return film;
     }
 
     @Override
     public Film delete(Film film) {
-        checkFilmForExist(
-                film.getId(),
-                "Deleting a movie is not possible. The movie was not found, ID="
-        );
+        Lock lock = locks.get(film.getId());
+        lock.lock();
+        try {
+            checkFilmForExist(
+                    film.getId(),
+                    "Deleting a movie is not possible. The movie was not found, ID="
+            );
 
-        filmsByID.remove(film.getId());
-        log.info("The movie has been deleted: {}", film);
+            journal.append(JournalRecord.filmDeleted(film.getId()));
+            searchIndex.remove(filmsByID.remove(film.getId()));
+            SortedLongSet likes = likesByFilm.remove(film.getId());
+            popularity.remove(film.getId(), likes.size());
+            trending.onFilmDeleted(film.getId());
+            likes.forEach(userId -> unindexLike(userId, film.getId()));
+            filmCount.decrement();
+            likeCount.add(-likes.size());
+            versions.remove(film.getId());
+        } finally {
+            lock.unlock();
+        }
+        log.debug("The movie has been deleted: {}", film);
 
         return film;
     }
@@ -59,75 +176,422 @@ public class InMemoryFilmStorage implements FilmStorage {
         return filmsByID.values();
     }
 
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit) {
+        return filmsByID.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Like counts are the sizes of the like rows, so summaries cost no more than the films.
+     */
+    @Override
+    public List<FilmSummary> getFilmSummaries(long afterId, int limit) {
+        return filmsByID.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(FilmSummary::of)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> searchFilms(FilmSearch search) {
+        return searchIndex.search(search, filmsByID);
+    }
+
     @Override
     public Film getFilmById(long id) {
-        checkFilmForExist(
-                id,
-                "Getting an existing movie is not possible. The movie was not found, ID="
-        );
-        return filmsByID.get(id);
+        Film film = filmsByID.get(id);
+        if (film == null) {
+            printErrorMessage("Getting an existing movie is not possible. The movie was not found, ID=" + id);
+        }
+        return film;
+    }
+
+    @Override
+    public OptionalLong getFilmVersion(long id) {
+        checkFilmForExist(id, "Getting an existing movie is not possible. The movie was not found, ID=");
+        return OptionalLong.of(versions.get(id));
     }
 
     @Override
     public Film addLike(long filmId, long userId) {
-        checkFilmForExist(
-                filmId,
-                "Adding a user's like is not possible. The movie was not found, ID="
-        );
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            checkFilmForExist(
+                    filmId,
+                    "Adding a user's like is not possible. The movie was not found, ID="
+            );
 
-        makeUserLike(filmId, userId);
+            makeUserLike(filmId, userId);
 
-        return filmsByID.get(filmId);
+            return filmsByID.get(filmId);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public Film deleteLike(long filmId, long userId) {
-        checkFilmForExist(
-                filmId,
-                "Deleting the user's like is not possible. A movie was not found, ID="
-        );
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            checkFilmForExist(
+                    filmId,
+                    "Deleting the user's like is not possible. A movie was not found, ID="
+            );
+
+            unlike(filmId, userId);
+
+            return filmsByID.get(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Groups the likes by lock stripe and applies each group under one lock acquisition. The new likes of a film
+     * are merged into its row with one copy, the popularity index is updated once per film and the group is
+     * journaled with one durable write before any of it is applied.
+     */
+    @Override
+    public List<BatchItemResult> addLikes(List<FilmLike> likes) {
+        BatchItemResult[] results = new BatchItemResult[likes.size()];
+        Map<Integer, Map<Long, List<Integer>>> itemsByStripe = new HashMap<>();
+        for (int i = 0; i < likes.size(); i++) {
+            long filmId = likes.get(i).getFilmId();
+            itemsByStripe.computeIfAbsent(locks.stripeOf(filmId), stripe -> new HashMap<>())
+                    .computeIfAbsent(filmId, id -> new ArrayList<>())
+                    .add(i);
+        }
 
-        unlike(filmId, userId);
+        for (Map<Long, List<Integer>> itemsByFilm : itemsByStripe.values()) {
+            Lock lock = locks.get(itemsByFilm.keySet().iterator().next());
+            lock.lock();
+            try {
+                long likedAt = trending.now();
+                List<JournalRecord> records = new ArrayList<>();
+                Map<Long, long[]> newLikesByFilm = new HashMap<>();
+                itemsByFilm.forEach((filmId, items) -> {
+                    long[] newLikes = newLikesOf(filmId, items, likes, results);
+                    if (newLikes.length > 0) {
+                        newLikesByFilm.put(filmId, newLikes);
+                        Arrays.stream(newLikes).forEach(
+                                userId -> records.add(JournalRecord.likeAdded(filmId, userId, likedAt)));
+                    }
+                });
+                journal.appendAll(records);
+                newLikesByFilm.forEach((filmId, newLikes) -> addLikesToFilm(filmId, newLikes, likedAt));
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.debug("A batch of {} likes has been applied.", likes.size());
 
-        return filmsByID.get(filmId);
+        return Arrays.asList(results);
     }
 
     @Override
     public Collection<Film> getTopFilms(int count) {
-        log.info("Getting the list of popular films.");
-        Collection<Film> topFilms = getAllFilms();
-        return topFilms.stream()
-                .sorted((o1, o2) -> {
-                    int comp = compare(o1.getLikes().size(), o2.getLikes().size());
-                    return -1 * comp;
-                }).limit(count)
+        log.debug("Getting the list of popular films.");
+        return popularity.top(count).stream()
+                .map(filmsByID::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Film> getTrendingFilms(TrendingWindow window, int count) {
+        return trending.top(window, count).stream()
+                .map(filmsByID::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<FilmSummary> getTopFilmSummaries(int count) {
+        return getTopFilms(count).stream().map(FilmSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<FilmSummary> getTrendingFilmSummaries(TrendingWindow window, int count) {
+        return getTrendingFilms(window, count).stream().map(FilmSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(long userId, int limit) {
+        SortedLongSet likedFilms = filmsByUser.get(userId);
+        if (likedFilms == null) {
+            return List.of();
+        }
+
+        long[] filmIds = recommender.recommend(
+                userId, likedFilms.snapshot(), filmId -> row(likesByFilm, filmId), user -> row(filmsByUser, user), limit
+        );
+        return Arrays.stream(filmIds)
+                .mapToObj(filmsByID::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public long getFilmCount() {
+        return filmCount.sum();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return likeCount.sum();
+    }
+
+    /**
+     * Estimated number of distinct users who have ever liked a film.
+     */
+    public long estimateDistinctLikers() {
+        return likers.estimate();
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        return filmCount.sum() * FILM_BYTES + likeCount.sum() * LIKE_BYTES
+                + popularity.estimateHeapBytes() + trending.estimateHeapBytes() + likers.sizeInBytes();
+    }
+
+    /*
+     * Used by ShardedFilmStorage to merge the answers of its shards.
+     */
+
+    Film findFilm(long id) {
+        return filmsByID.get(id);
+    }
+
+    long[] likesOf(long filmId) {
+        return row(likesByFilm, filmId);
+    }
+
+    long[] likedFilmsOf(long userId) {
+        return row(filmsByUser, userId);
+    }
+
+    int getTrendingLikes(TrendingWindow window, long filmId) {
+        return trending.likes(window, filmId);
+    }
+
+    void mergeLikersInto(HyperLogLog sketch) {
+        sketch.merge(likers);
+    }
+
+    /**
+     * Time of a like within the longest trending window, or 0 for an older like or one whose time was forgotten.
+     */
+    public long getLikedAt(long filmId, long userId) {
+        return trending.likedAt(filmId, userId);
+    }
+
+    /**
+     * Runs the action while no mutation is between its journal append and its apply: both happen under the
+     * lock of the film, and the action holds all of them.
+     */
+    public void runQuiescent(Runnable action) {
+        locks.runExclusively(action);
+    }
+
+    public long getLastFilmId() {
+        return counter.get();
+    }
+
+    /*
+     * Journal replay. Unlike the API methods these are idempotent, tolerate missing entities
+     * and don't write to the journal again.
+     */
+
+    public void restoreFilm(Film film) {
+        long filmId = film.getId();
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            SortedLongSet likes = likesByFilm.get(filmId);
+            if (likes == null) {
+                likes = new SortedLongSet();
+                likesByFilm.put(filmId, likes);
+                popularity.add(filmId, 0);
+                filmCount.increment();
+            }
+            film.setLikes(new LongSetView(likes));
+            searchIndex.add(film);
+            searchIndex.retire(filmsByID.put(filmId, film), film);
+            restoreLastFilmId(filmId);
+            versions.stamp(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void restoreFilmDeletion(long filmId) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Film film = filmsByID.remove(filmId);
+            if (film != null) {
+                searchIndex.remove(film);
+            }
+            SortedLongSet likes = likesByFilm.remove(filmId);
+            if (likes != null) {
+                popularity.remove(filmId, likes.size());
+                trending.onFilmDeleted(filmId);
+                likes.forEach(userId -> unindexLike(userId, filmId));
+                filmCount.decrement();
+                likeCount.add(-likes.size());
+            }
+            versions.remove(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void restoreLike(long filmId, long userId, long likedAt) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            SortedLongSet likes = likesByFilm.get(filmId);
+            if (likes != null && likes.add(userId)) {
+                popularity.change(filmId, likes.size() - 1, likes.size());
+                trending.onLike(filmId, userId, likedAt);
+                indexLike(userId, filmId);
+                likeCount.increment();
+                versions.stamp(filmId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void restoreUnlike(long filmId, long userId) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            SortedLongSet likes = likesByFilm.get(filmId);
+            if (likes != null && likes.remove(userId)) {
+                popularity.change(filmId, likes.size() + 1, likes.size());
+                trending.onUnlike(filmId, userId);
+                unindexLike(userId, filmId);
+                likeCount.decrement();
+                versions.stamp(filmId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void restoreLastFilmId(long filmId) {
+        counter.accumulateAndGet(filmId, Math::max);
+    }
+
     private void unlike(long filmId, long userId) {
-        Set<Long> usersLikes = filmsByID.get(filmId).getLikes();
+        SortedLongSet usersLikes = likesByFilm.get(filmId);
 
         if (!usersLikes.contains(userId)) {
-            printErrorMessage(String.format(
-                    "The user ID=%s didn't like the film with ID=%s", userId, filmId
-            ));
+            printErrorMessage("The user ID=" + userId + " didn't like the film with ID=" + filmId);
         }
 
+        journal.append(JournalRecord.likeRemoved(filmId, userId));
         usersLikes.remove(userId);
-        log.info("The like of user with ID={} has been removed from the film ID={}", userId, filmId);
+        popularity.change(filmId, usersLikes.size() + 1, usersLikes.size());
+        trending.onUnlike(filmId, userId);
+        unindexLike(userId, filmId);
+        likeCount.decrement();
+        versions.stamp(filmId);
+        if (log.isDebugEnabled()) {
+            log.debug("The like of user with ID={} has been removed from the film ID={}", userId, filmId);
+        }
+    }
+
+    /**
+     * Sets the results of the items liking one film and returns the sorted users whose likes are new.
+     */
+    private long[] newLikesOf(long filmId, List<Integer> items, List<FilmLike> likes, BatchItemResult[] results) {
+        SortedLongSet usersLikes = likesByFilm.get(filmId);
+        if (usersLikes == null) {
+            BatchItemResult notFound = BatchItemResult.notFound("The movie was not found, ID=" + filmId);
+            items.forEach(item -> results[item] = notFound);
+            return new long[0];
+        }
+
+        Set<Long> newLikes = new HashSet<>();
+        for (int item : items) {
+            long userId = likes.get(item).getUserId();
+            if (usersLikes.contains(userId) || !newLikes.add(userId)) {
+                results[item] = BatchItemResult.alreadyExists(
+                        "The user ID=" + userId + " has already liked the film with ID=" + filmId
+                );
+                continue;
+            }
+            results[item] = BatchItemResult.added();
+        }
+        return newLikes.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private void addLikesToFilm(long filmId, long[] newLikes, long likedAt) {
+        SortedLongSet usersLikes = likesByFilm.get(filmId);
+        int sizeBefore = usersLikes.size();
+        usersLikes.addAll(newLikes);
+        popularity.change(filmId, sizeBefore, usersLikes.size());
+        for (long userId : newLikes) {
+            trending.onLike(filmId, userId, likedAt);
+            indexLike(userId, filmId);
+        }
+        likeCount.add(newLikes.length);
+        versions.stamp(filmId);
     }
 
     private void makeUserLike(long filmId, long userId) {
-        Set<Long> usersLikes = filmsByID.get(filmId).getLikes();
+        SortedLongSet usersLikes = likesByFilm.get(filmId);
 
         if (usersLikes.contains(userId)) {
-            printErrorMessage(String.format(
-                    "The user ID=%s has already liked the film with ID=%s", userId, filmId
-            ));
+            printErrorMessage("The user ID=" + userId + " has already liked the film with ID=" + filmId);
         }
 
+        long likedAt = trending.now();
+        journal.append(JournalRecord.likeAdded(filmId, userId, likedAt));
         usersLikes.add(userId);
-        log.info("The user ID={} has liked the film with ID={}", userId, filmId);
+        popularity.change(filmId, usersLikes.size() - 1, usersLikes.size());
+        trending.onLike(filmId, userId, likedAt);
+        indexLike(userId, filmId);
+        likeCount.increment();
+        versions.stamp(filmId);
+        if (log.isDebugEnabled()) {
+            log.debug("The user ID={} has liked the film with ID={}", userId, filmId);
+        }
+    }
+
+    private void indexLike(long userId, long filmId) {
+        likers.add(userId);
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            filmsByUser.computeIfAbsent(userId, id -> new SortedLongSet()).add(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unindexLike(long userId, long filmId) {
+        Lock lock = userLocks.get(userId);
+        lock.lock();
+        try {
+            SortedLongSet films = filmsByUser.get(userId);
+            if (films != null) {
+                films.remove(filmId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long[] row(Map<Long, SortedLongSet> rows, long id) {
+        SortedLongSet row = rows.get(id);
+        return row == null ? null : row.snapshot();
     }
 
     private void checkFilmForExist(long id, String message) {
@@ -137,11 +601,16 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     private void printErrorMessage(String message) {
-        log.error(message);
+        log.debug(message);
         throw new NotFoundException(message);
     }
 
+    private void printPreconditionMessage(String message) {
+        log.debug(message);
+        throw new PreconditionFailedException(message);
+    }
+
     private Long setFilmId() {
-        return ++counter;
+        return counter.incrementAndGet();
     }
 }
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Chooses the popularity ranking of the in-memory film storage: {@code filmorate.popularity.mode=exact} (default)
+ * or {@code approximate}, with {@code filmorate.popularity.max-error} as the error bound of the latter.
+ */
+@Configuration
+@Profile("!db & !sharded")
+public class PopularityConfiguration {
+
+    @Bean
+    public PopularityRanking popularityRanking(@Value("${filmorate.popularity.mode:exact}") String mode,
+                                               @Value("${filmorate.popularity.max-error:0.0001}") double maxError) {
+        return create(mode, maxError);
+    }
+
+    public static PopularityRanking create(String mode, double maxError) {
+        switch (mode) {
+            case "exact":
+                return PopularityRanking.exact();
+            case "approximate":
+                return PopularityRanking.approximate(maxError);
+            default:
+                throw new IllegalArgumentException("Unknown popularity mode: " + mode);
+        }
+    }
+}
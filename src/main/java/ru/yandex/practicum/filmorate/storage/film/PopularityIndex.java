@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Films ordered by like count (descending), ties broken by film ID (ascending).
+ * Kept up to date by the storage on every like, so a top-N query walks only N entries.
+ * Updates of one film must be serialized by the caller; readers never block.
+ * <p>
+ * A change is an insert of the new entry and a removal of the old one, which a concurrent walk may see in part.
+ * A film moving down the list is seen at least once. A film moving up may be missed by a walk already past its
+ * new place, which then lists the next film instead; the storage reports that like after the walk, so
+ * {@code PopularFilmsCache} drops the list.
+ */
+class PopularityIndex implements PopularityRanking {
+    // skip list node, index levels and Rank of an entry
+    private static final long ENTRY_BYTES = 64;
+
+    private final NavigableSet<Rank> ranks = new ConcurrentSkipListSet<>();
+    private final LongAdder size = new LongAdder();
+
+    @Override
+    public void add(long filmId, int likes) {
+        if (ranks.add(new Rank(filmId, likes))) {
+            size.increment();
+        }
+    }
+
+    @Override
+    public void remove(long filmId, int likes) {
+        if (ranks.remove(new Rank(filmId, likes))) {
+            size.decrement();
+        }
+    }
+
+    @Override
+    public void change(long filmId, int oldLikes, int newLikes) {
+        if (oldLikes == newLikes) {
+            return;
+        }
+        // add before remove: a reader may see a film moving down twice, but can't lose it
+        add(filmId, newLikes);
+        remove(filmId, oldLikes);
+    }
+
+    /**
+     * The first {@code count} distinct films; a film seen at both its old and new place counts once.
+     */
+    @Override
+    public List<Long> top(int count) {
+        Set<Long> filmIds = new LinkedHashSet<>();
+        Iterator<Rank> iterator = ranks.iterator();
+        while (filmIds.size() < count && iterator.hasNext()) {
+            filmIds.add(iterator.next().filmId);
+        }
+        return new ArrayList<>(filmIds);
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        return size.sum() * ENTRY_BYTES;
+    }
+
+    private static final class Rank implements Comparable<Rank> {
+        private final long filmId;
+        private final int likes;
+
+        private Rank(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int comp = Integer.compare(other.likes, likes);
+            return comp != 0 ? comp : Long.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Rank)) {
+                return false;
+            }
+            Rank rank = (Rank) o;
+            return filmId == rank.filmId && likes == rank.likes;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(filmId) + likes;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.List;
+
+/**
+ * Films ranked by like count for the popular films list, kept up to date by the storage on every like.
+ * Updates of one film must be serialized by the caller.
+ */
+public interface PopularityRanking {
+    void add(long filmId, int likes);
+
+    void remove(long filmId, int likes);
+
+    void change(long filmId, int oldLikes, int newLikes);
+
+    List<Long> top(int count);
+
+    long estimateHeapBytes();
+
+    /**
+     * Every film in an ordered index; exact, with one index entry per film.
+     */
+    static PopularityRanking exact() {
+        return new PopularityIndex();
+    }
+
+    /**
+     * Only the heavy hitters, with like counts overestimated by at most {@code maxError} of all likes; memory
+     * depends on the error bound instead of the catalogue size. Films with fewer likes than the bound may be
+     * missing from the list.
+     */
+    static PopularityRanking approximate(double maxError) {
+        return new HeavyHittersRanking(maxError);
+    }
+}
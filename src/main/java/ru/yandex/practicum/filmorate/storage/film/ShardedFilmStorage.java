@@ -0,0 +1,323 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.HeapFootprint;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.shard.ConsistentHashRing;
+import ru.yandex.practicum.filmorate.storage.shard.ShardCluster;
+import ru.yandex.practicum.filmorate.storage.shard.ShardMerge;
+import ru.yandex.practicum.filmorate.storage.sketch.HyperLogLog;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Films partitioned by ID over the shards of a {@link ShardCluster}, an {@link InMemoryFilmStorage} per shard.
+ * Calls on one film go to its shard. Lists are gathered from every shard and merged: pages and searches in
+ * their order, popular and trending films by like count, so each shard only contributes its own top N.
+ * <p>
+ * Likes live with their film, so the likes of one user are spread over the shards; recommendations read the
+ * rows of every shard through the router. IDs come from one counter in the router. The shards don't journal.
+ */
+@Slf4j
+public class ShardedFilmStorage implements FilmStorage, HeapFootprint, ShardCluster.Listener {
+    private static final Comparator<Film> BY_ID = Comparator.comparing(Film::getId);
+    private static final Comparator<Film> BY_LIKES =
+            Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed();
+
+    private final ShardCluster cluster;
+    private final FilmRecommender recommender;
+    private final Supplier<PopularityRanking> rankings;
+    private final Map<String, InMemoryFilmStorage> shards = new ConcurrentHashMap<>();
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong versionClock = EntityVersions.newClock();
+
+    public ShardedFilmStorage(ShardCluster cluster, FilmRecommender recommender,
+                              Supplier<PopularityRanking> rankings) {
+        this.cluster = cluster;
+        this.recommender = recommender;
+        this.rankings = rankings;
+        for (String shard : cluster.getShards()) {
+            shards.put(shard, newShard());
+        }
+        cluster.addListener(this);
+    }
+
+    @Override
+    public Film create(Film film) {
+        return cluster.read(() -> {
+            film.setId(counter.incrementAndGet());
+            return shardOf(film.getId()).insert(film);
+        });
+    }
+
+    @Override
+    public Film update(Film film) {
+        return cluster.read(() -> shardOf(film.getId()).update(film));
+    }
+
+    @Override
+    public Film updateIfVersion(Film film, long expectedVersion) {
+        return cluster.read(() -> shardOf(film.getId()).updateIfVersion(film, expectedVersion));
+    }
+
+    @Override
+    public Film delete(Film film) {
+        return cluster.read(() -> shardOf(film.getId()).delete(film));
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return cluster.read(() -> ShardMerge.merge(
+                gather(InMemoryFilmStorage::getAllFilms), BY_ID, Integer.MAX_VALUE
+        ));
+    }
+
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit) {
+        return cluster.read(() -> ShardMerge.merge(
+                gather(shard -> shard.getFilmsPage(afterId, limit)), BY_ID, limit
+        ));
+    }
+
+    @Override
+    public List<FilmSummary> getFilmSummaries(long afterId, int limit) {
+        return cluster.read(() -> ShardMerge.merge(
+                gather(shard -> shard.getFilmSummaries(afterId, limit)),
+                Comparator.comparingLong(FilmSummary::getId), limit
+        ));
+    }
+
+    /**
+     * Every shard answers the whole search, page position and limit included; the first {@code limit} films of
+     * the merged answers are the page.
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Film> searchFilms(FilmSearch search) {
+        FilmSearch.Sort sort = search.getSort();
+        Comparator<Film> order = Comparator.comparing(film -> (Comparable) sort.keyOf(film));
+        return cluster.read(() -> ShardMerge.merge(
+                gather(shard -> shard.searchFilms(search)), order.thenComparing(BY_ID), search.getLimit()
+        ));
+    }
+
+    @Override
+    public Film getFilmById(long id) {
+        return cluster.read(() -> shardOf(id).getFilmById(id));
+    }
+
+    @Override
+    public OptionalLong getFilmVersion(long id) {
+        return cluster.read(() -> shardOf(id).getFilmVersion(id));
+    }
+
+    @Override
+    public Film addLike(long filmId, long userId) {
+        return cluster.read(() -> shardOf(filmId).addLike(filmId, userId));
+    }
+
+    @Override
+    public Film deleteLike(long filmId, long userId) {
+        return cluster.read(() -> shardOf(filmId).deleteLike(filmId, userId));
+    }
+
+    /**
+     * Splits the batch by shard; every shard applies its part as one batch.
+     */
+    @Override
+    public List<BatchItemResult> addLikes(List<FilmLike> likes) {
+        return cluster.read(() -> {
+            Map<InMemoryFilmStorage, List<Integer>> itemsByShard = new HashMap<>();
+            for (int i = 0; i < likes.size(); i++) {
+                itemsByShard.computeIfAbsent(shardOf(likes.get(i).getFilmId()), shard -> new ArrayList<>()).add(i);
+            }
+
+            BatchItemResult[] results = new BatchItemResult[likes.size()];
+            itemsByShard.forEach((shard, items) -> {
+                List<BatchItemResult> shardResults = shard.addLikes(
+                        items.stream().map(likes::get).collect(Collectors.toList())
+                );
+                for (int i = 0; i < items.size(); i++) {
+                    results[items.get(i)] = shardResults.get(i);
+                }
+            });
+            return Arrays.asList(results);
+        });
+    }
+
+    @Override
+    public Collection<Film> getTopFilms(int count) {
+        return cluster.read(() -> shards.values().stream()
+                .flatMap(shard -> shard.getTopFilms(count).stream())
+                .sorted(BY_LIKES.thenComparing(BY_ID))
+                .limit(count)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Collection<Film> getTrendingFilms(TrendingWindow window, int count) {
+        return cluster.read(() -> {
+            List<Ranked> candidates = new ArrayList<>();
+            for (InMemoryFilmStorage shard : shards.values()) {
+                for (Film film : shard.getTrendingFilms(window, count)) {
+                    candidates.add(new Ranked(film, shard.getTrendingLikes(window, film.getId())));
+                }
+            }
+            return candidates.stream()
+                    .sorted()
+                    .limit(count)
+                    .map(ranked -> ranked.film)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public List<FilmSummary> getTopFilmSummaries(int count) {
+        return getTopFilms(count).stream().map(FilmSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<FilmSummary> getTrendingFilmSummaries(TrendingWindow window, int count) {
+        return getTrendingFilms(window, count).stream().map(FilmSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(long userId, int limit) {
+        return cluster.read(() -> {
+            long[] likedFilms = likedFilmsOf(userId);
+            if (likedFilms == null) {
+                return List.of();
+            }
+
+            long[] filmIds = recommender.recommend(
+                    userId, likedFilms, filmId -> shardOf(filmId).likesOf(filmId), this::likedFilmsOf, limit
+            );
+            return Arrays.stream(filmIds)
+                    .mapToObj(filmId -> shardOf(filmId).findFilm(filmId))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public long getFilmCount() {
+        return shards.values().stream().mapToLong(InMemoryFilmStorage::getFilmCount).sum();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return shards.values().stream().mapToLong(InMemoryFilmStorage::getLikeCount).sum();
+    }
+
+    /**
+     * Estimated number of distinct users who have ever liked a film, from the union of the shards' sketches.
+     */
+    public long estimateDistinctLikers() {
+        HyperLogLog likers = new HyperLogLog(InMemoryFilmStorage.LIKERS_PRECISION);
+        shards.values().forEach(shard -> shard.mergeLikersInto(likers));
+        return likers.estimate();
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        return shards.values().stream().mapToLong(InMemoryFilmStorage::estimateHeapBytes).sum();
+    }
+
+    public Map<String, Long> getFilmCountsByShard() {
+        return shards.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getFilmCount(),
+                        (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * Moves the films the new ring routes to the new shard, with their likes and like times, through the journal
+     * replay methods of both shards.
+     */
+    @Override
+    public void shardAdded(String shard, ConsistentHashRing newRing) {
+        InMemoryFilmStorage target = newShard();
+        long moved = 0;
+        for (InMemoryFilmStorage source : shards.values()) {
+            for (Film film : new ArrayList<>(source.getAllFilms())) {
+                if (shard.equals(newRing.shardOf(film.getId()))) {
+                    move(film, source, target);
+                    moved++;
+                }
+            }
+        }
+        shards.put(shard, target);
+        log.info("{} films have been moved to the shard {}", moved, shard);
+    }
+
+    private static void move(Film film, InMemoryFilmStorage source, InMemoryFilmStorage target) {
+        long filmId = film.getId();
+        long[] likes = source.likesOf(filmId);
+        long[] likedAt = new long[likes.length];
+        for (int i = 0; i < likes.length; i++) {
+            likedAt[i] = source.getLikedAt(filmId, likes[i]);
+        }
+        source.restoreFilmDeletion(filmId);
+        target.restoreFilm(film);
+        for (int i = 0; i < likes.length; i++) {
+            target.restoreLike(filmId, likes[i], likedAt[i]);
+        }
+    }
+
+    private InMemoryFilmStorage newShard() {
+        return new InMemoryFilmStorage(MutationJournal.NONE, recommender, rankings.get(), versionClock);
+    }
+
+    private InMemoryFilmStorage shardOf(long filmId) {
+        return shards.get(cluster.getRing().shardOf(filmId));
+    }
+
+    private <T> List<Collection<T>> gather(Function<InMemoryFilmStorage, Collection<T>> query) {
+        return shards.values().stream().map(query).collect(Collectors.toList());
+    }
+
+    /**
+     * The films the user liked on every shard, or {@code null} if none.
+     */
+    private long[] likedFilmsOf(long userId) {
+        long[][] rows = shards.values().stream()
+                .map(shard -> shard.likedFilmsOf(userId))
+                .filter(Objects::nonNull)
+                .toArray(long[][]::new);
+        if (rows.length == 0) {
+            return null;
+        }
+        // a film is on one shard only, so the rows are disjoint
+        long[] films = Arrays.stream(rows).flatMapToLong(Arrays::stream).toArray();
+        Arrays.sort(films);
+        return films;
+    }
+
+    private static final class Ranked implements Comparable<Ranked> {
+        private final Film film;
+        private final int likes;
+
+        private Ranked(Film film, int likes) {
+            this.film = film;
+            this.likes = likes;
+        }
+
+        @Override
+        public int compareTo(Ranked other) {
+            int comp = Integer.compare(other.likes, likes);
+            return comp != 0 ? comp : Long.compare(film.getId(), other.film.getId());
+        }
+    }
+}
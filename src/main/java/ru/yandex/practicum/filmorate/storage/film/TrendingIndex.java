@@ -0,0 +1,392 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Like counts of films over the sliding windows of {@link TrendingWindow}, each window ranked like
+ * {@link PopularityIndex}, so a top-N query walks only N entries.
+ * <p>
+ * A film liked within the longest window has a ring of bucket counts per window, so its memory is bounded
+ * whatever its like rate. Every bucket remembers the films liked in it; when the bucket leaves its window only
+ * those films are re-ranked, so neither likes nor queries scan the catalogue.
+ * <p>
+ * The times of up to {@link #MAX_LIKE_TIMES_PER_FILM} recent likes of a film are kept, so that an unlike is
+ * taken back from the bucket of its like. The buckets of older likes only count how many of their times were
+ * forgotten, and an unlike of such a like is taken back from the oldest of them: the window totals stay right,
+ * only the bucket may be older than the like's.
+ * <p>
+ * Updates of a film hold its stripe; sliding the windows, once per finest bucket, is serialized by a lock of its
+ * own. Readers of the rankings don't block.
+ */
+class TrendingIndex {
+    static final int MAX_LIKE_TIMES_PER_FILM = 1024;
+    private static final TrendingWindow[] WINDOWS = TrendingWindow.values();
+    private static final TrendingWindow LONGEST = Arrays.stream(WINDOWS)
+            .max(Comparator.comparing(TrendingWindow::getLength))
+            .orElseThrow();
+    // ring arrays and map nodes of a tracked film
+    private static final long FILM_OVERHEAD_BYTES = 160;
+    // map node and boxed user ID and time of a recent like
+    private static final long LIKE_BYTES = 64;
+
+    private final LongSupplier clock;
+    private final int maxLikeTimes;
+    private final long finestBucketMillis;
+    private final StripedLocks locks = new StripedLocks();
+    // a film's counters are guarded by its stripe
+    private final Map<Long, Counters> countersByFilm = new ConcurrentHashMap<>();
+    private final List<NavigableMap<Long, Set<Long>>> filmsByBucket = new ArrayList<>();
+    private final AtomicLongArray currentBucket = new AtomicLongArray(WINDOWS.length);
+    private final LongAdder recentLikes = new LongAdder();
+    private final Lock advanceLock = new ReentrantLock();
+    private volatile long advancedAt;
+
+    private final PopularityIndex[] rankings = new PopularityIndex[WINDOWS.length];
+
+    TrendingIndex(LongSupplier clock) {
+        this(clock, MAX_LIKE_TIMES_PER_FILM);
+    }
+
+    TrendingIndex(LongSupplier clock, int maxLikeTimes) {
+        this.clock = clock;
+        this.maxLikeTimes = maxLikeTimes;
+        this.finestBucketMillis = Arrays.stream(WINDOWS)
+                .mapToLong(TrendingWindow::getBucketMillis)
+                .min()
+                .orElseThrow();
+        long now = clock.getAsLong();
+        for (TrendingWindow window : WINDOWS) {
+            filmsByBucket.add(new ConcurrentSkipListMap<>());
+            currentBucket.set(window.ordinal(), now / window.getBucketMillis());
+            rankings[window.ordinal()] = new PopularityIndex();
+        }
+        this.advancedAt = now / finestBucketMillis;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Records a like. Replaying a like whose time is still kept changes nothing.
+     */
+    void onLike(long filmId, long userId, long likedAt) {
+        long now = clock.getAsLong();
+        advance(now);
+        long time = Math.min(likedAt, now);
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            if (!inWindow(LONGEST, time)) {
+                return;
+            }
+            Counters counters = countersByFilm.computeIfAbsent(filmId, id -> new Counters());
+            if (counters.likedAt.putIfAbsent(userId, time) != null) {
+                return;
+            }
+            recentLikes.increment();
+            for (TrendingWindow window : WINDOWS) {
+                if (inWindow(window, time)) {
+                    long bucket = time / window.getBucketMillis();
+                    // registered before counting: a slide that misses the film has already moved the window,
+                    // so the count below sees the bucket expired
+                    filmsByBucket.get(window.ordinal())
+                            .computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet())
+                            .add(filmId);
+                    count(filmId, counters, window, bucket, 1);
+                }
+            }
+            if (counters.likedAt.size() > maxLikeTimes) {
+                forgetEldestLike(counters);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onUnlike(long filmId, long userId) {
+        advance(clock.getAsLong());
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Counters counters = countersByFilm.get(filmId);
+            if (counters == null) {
+                return;
+            }
+            Long likedAt = counters.likedAt.remove(userId);
+            if (likedAt != null) {
+                recentLikes.decrement();
+            }
+            for (TrendingWindow window : WINDOWS) {
+                Ring ring = counters.rings[window.ordinal()];
+                int before = ring.total;
+                ring.advance(currentBucket.get(window.ordinal()));
+                if (likedAt == null) {
+                    ring.takeBackForgotten();
+                } else {
+                    ring.add(likedAt / window.getBucketMillis(), -1);
+                }
+                rank(window, filmId, before, ring.total);
+            }
+            if (counters.isEmpty()) {
+                countersByFilm.remove(filmId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onFilmDeleted(long filmId) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Counters counters = countersByFilm.remove(filmId);
+            if (counters == null) {
+                return;
+            }
+            recentLikes.add(-counters.likedAt.size());
+            for (TrendingWindow window : WINDOWS) {
+                int total = counters.rings[window.ordinal()].total;
+                if (total > 0) {
+                    rankings[window.ordinal()].remove(filmId, total);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    List<Long> top(TrendingWindow window, int count) {
+        advance(clock.getAsLong());
+        return rankings[window.ordinal()].top(count);
+    }
+
+    /**
+     * Likes of the film within the window, as ranked by {@link #top}.
+     */
+    int likes(TrendingWindow window, long filmId) {
+        advance(clock.getAsLong());
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Counters counters = countersByFilm.get(filmId);
+            return counters == null ? 0 : counters.rings[window.ordinal()].total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time of a like still within the longest window, or 0 for an older or unknown like, or one whose time was
+     * forgotten.
+     */
+    long likedAt(long filmId, long userId) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Counters counters = countersByFilm.get(filmId);
+            return counters == null ? 0 : counters.likedAt.getOrDefault(userId, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long estimateHeapBytes() {
+        long ringBytes = Arrays.stream(WINDOWS).mapToLong(window -> window.getBuckets() * (long) Integer.BYTES).sum();
+        return countersByFilm.size() * (ringBytes + FILM_OVERHEAD_BYTES) + recentLikes.sum() * LIKE_BYTES;
+    }
+
+    /**
+     * Slides every window to the current bucket and re-ranks the films liked in the buckets that left it.
+     */
+    private void advance(long now) {
+        if (now / finestBucketMillis <= advancedAt) {
+            return;
+        }
+        advanceLock.lock();
+        try {
+            for (TrendingWindow window : WINDOWS) {
+                int index = window.ordinal();
+                long bucket = now / window.getBucketMillis();
+                if (bucket <= currentBucket.get(index)) {
+                    continue;
+                }
+                currentBucket.set(index, bucket);
+                NavigableMap<Long, Set<Long>> expired = filmsByBucket.get(index)
+                        .headMap(bucket - window.getBuckets(), true);
+                for (Set<Long> filmIds : expired.values()) {
+                    for (long filmId : filmIds) {
+                        slide(window, filmId, bucket);
+                    }
+                }
+                expired.clear();
+            }
+            advancedAt = Math.max(advancedAt, now / finestBucketMillis);
+        } finally {
+            advanceLock.unlock();
+        }
+    }
+
+    private void slide(TrendingWindow window, long filmId, long bucket) {
+        Lock lock = locks.get(filmId);
+        lock.lock();
+        try {
+            Counters counters = countersByFilm.get(filmId);
+            if (counters == null) {
+                return;
+            }
+            Ring ring = counters.rings[window.ordinal()];
+            int before = ring.total;
+            ring.advance(bucket);
+            rank(window, filmId, before, ring.total);
+            if (window == LONGEST) {
+                forgetOldLikes(counters);
+                if (counters.isEmpty()) {
+                    countersByFilm.remove(filmId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forgetOldLikes(Counters counters) {
+        int before = counters.likedAt.size();
+        counters.likedAt.values().removeIf(likedAt -> !inWindow(LONGEST, likedAt));
+        recentLikes.add(counters.likedAt.size() - before);
+    }
+
+    private void forgetEldestLike(Counters counters) {
+        Iterator<Long> eldest = counters.likedAt.values().iterator();
+        long likedAt = eldest.next();
+        eldest.remove();
+        recentLikes.decrement();
+        for (TrendingWindow window : WINDOWS) {
+            counters.rings[window.ordinal()].forget(likedAt / window.getBucketMillis());
+        }
+    }
+
+    private boolean inWindow(TrendingWindow window, long time) {
+        return time / window.getBucketMillis() > currentBucket.get(window.ordinal()) - window.getBuckets();
+    }
+
+    private void count(long filmId, Counters counters, TrendingWindow window, long bucket, int delta) {
+        Ring ring = counters.rings[window.ordinal()];
+        int before = ring.total;
+        ring.advance(currentBucket.get(window.ordinal()));
+        ring.add(bucket, delta);
+        rank(window, filmId, before, ring.total);
+    }
+
+    private void rank(TrendingWindow window, long filmId, int before, int after) {
+        PopularityIndex ranking = rankings[window.ordinal()];
+        if (before == after) {
+            return;
+        }
+        if (before == 0) {
+            ranking.add(filmId, after);
+        } else if (after == 0) {
+            ranking.remove(filmId, before);
+        } else {
+            ranking.change(filmId, before, after);
+        }
+    }
+
+    private final class Counters {
+        private final Ring[] rings = new Ring[WINDOWS.length];
+        // in the order of the likes, so the eldest is forgotten first
+        private final Map<Long, Long> likedAt = new LinkedHashMap<>();
+
+        private Counters() {
+            for (TrendingWindow window : WINDOWS) {
+                rings[window.ordinal()] = new Ring(window.getBuckets(), currentBucket.get(window.ordinal()));
+            }
+        }
+
+        boolean isEmpty() {
+            return likedAt.isEmpty() && rings[LONGEST.ordinal()].total == 0;
+        }
+    }
+
+    /**
+     * Counts of the last {@code counts.length} buckets up to {@code newest}, and their sum. Of each count,
+     * {@code forgotten} likes have no time kept; allocated on the first one.
+     */
+    private static final class Ring {
+        private final int[] counts;
+        private int[] forgotten;
+        private long newest;
+        private int total;
+
+        private Ring(int buckets, long newest) {
+            this.counts = new int[buckets];
+            this.newest = newest;
+        }
+
+        void advance(long bucket) {
+            if (bucket <= newest) {
+                return;
+            }
+            long steps = Math.min(bucket - newest, counts.length);
+            for (long step = 1; step <= steps; step++) {
+                int slot = Math.floorMod(newest + step, counts.length);
+                total -= counts[slot];
+                counts[slot] = 0;
+                if (forgotten != null) {
+                    forgotten[slot] = 0;
+                }
+            }
+            newest = bucket;
+        }
+
+        void add(long bucket, int delta) {
+            if (!holds(bucket)) {
+                return;
+            }
+            counts[Math.floorMod(bucket, counts.length)] += delta;
+            total += delta;
+        }
+
+        void forget(long bucket) {
+            if (!holds(bucket)) {
+                return;
+            }
+            if (forgotten == null) {
+                forgotten = new int[counts.length];
+            }
+            forgotten[Math.floorMod(bucket, counts.length)]++;
+        }
+
+        /**
+         * Takes a like back from the oldest bucket with a forgotten time, if any is left in the ring.
+         */
+        void takeBackForgotten() {
+            if (forgotten == null) {
+                return;
+            }
+            for (long bucket = newest - counts.length + 1; bucket <= newest; bucket++) {
+                int slot = Math.floorMod(bucket, counts.length);
+                if (forgotten[slot] > 0) {
+                    forgotten[slot]--;
+                    counts[slot]--;
+                    total--;
+                    return;
+                }
+            }
+        }
+
+        private boolean holds(long bucket) {
+            return bucket <= newest && bucket > newest - counts.length;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+/**
+ * Recommends films liked by the users whose likes overlap most with the given user's (user-based
+ * collaborative filtering).
+ * <ol>
+ * <li>Overlap: the likers of every film the user liked are counted, which gives the number of common likes
+ * per other user without intersecting any rows. Films with more than {@code maxFanout} likers are skipped,
+ * since nearly everybody shares them. The user's films are split between fork-join tasks that count into
+ * their own tables and merge them on join.</li>
+ * <li>Similarity: the Jaccard index of every candidate, {@code common / (mine + theirs - common)}, computed
+ * in parallel over the candidates. Each task keeps its own best {@code neighbours}.</li>
+ * <li>Scoring: every film of the nearest neighbours the user hasn't liked yet scores the neighbour's
+ * similarity. The best {@code limit} films win.</li>
+ * </ol>
+ */
+@Component
+public class FilmRecommender {
+    // below these sizes a task does the work itself instead of forking
+    private static final int FILMS_PER_TASK = 256;
+    private static final int CANDIDATES_PER_TASK = 4096;
+
+    private static final Comparator<Scored> BEST_FIRST = Comparator
+            .comparingDouble((Scored scored) -> scored.score).reversed()
+            .thenComparingLong(scored -> scored.id);
+
+    private final int maxFanout;
+    private final int neighbours;
+
+    public FilmRecommender(@Value("${filmorate.recommendations.max-fanout:5000}") int maxFanout,
+                           @Value("${filmorate.recommendations.neighbours:50}") int neighbours) {
+        this.maxFanout = maxFanout;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * @param likedFilms the user's sorted row of liked films
+     * @param likersOf   the sorted likers of a film, or {@code null} if the film is gone
+     * @param filmsOf    the sorted liked films of another user, or {@code null} if the user has none
+     * @return up to {@code limit} film IDs, best first
+     */
+    public long[] recommend(long userId, long[] likedFilms, LongFunction<long[]> likersOf,
+                            LongFunction<long[]> filmsOf, int limit) {
+        if (likedFilms.length == 0) {
+            return new long[0];
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        LongCounter overlaps = pool.invoke(new OverlapTask(userId, likedFilms, likersOf, 0, likedFilms.length));
+        long[] candidates = new long[overlaps.size()];
+        int[] common = new int[overlaps.size()];
+        int count = 0;
+        for (int slot = 0; slot < overlaps.capacity(); slot++) {
+            if (overlaps.isOccupied(slot)) {
+                candidates[count] = overlaps.keyAt(slot);
+                common[count] = overlaps.countAt(slot);
+                count++;
+            }
+        }
+
+        List<Scored> nearest = pool.invoke(
+                new SimilarityTask(likedFilms.length, candidates, common, filmsOf, 0, count)
+        );
+        return topFilms(likedFilms, nearest, filmsOf, limit);
+    }
+
+    private static long[] topFilms(long[] likedFilms, List<Scored> nearest, LongFunction<long[]> filmsOf,
+                                   int limit) {
+        LongScoreTable scores = new LongScoreTable(1024);
+        for (Scored neighbour : nearest) {
+            long[] films = filmsOf.apply(neighbour.id);
+            if (films == null) {
+                continue;
+            }
+            for (long filmId : films) {
+                if (Arrays.binarySearch(likedFilms, filmId) < 0) {
+                    scores.add(filmId, neighbour.score);
+                }
+            }
+        }
+
+        // lowest score on top, so it is the one replaced
+        PriorityQueue<Scored> heap = new PriorityQueue<>(BEST_FIRST.reversed());
+        for (int slot = 0; slot < scores.capacity(); slot++) {
+            if (scores.isOccupied(slot)) {
+                offer(heap, new Scored(scores.keyAt(slot), scores.scoreAt(slot)), limit);
+            }
+        }
+        List<Scored> best = new ArrayList<>(heap);
+        best.sort(BEST_FIRST);
+        return best.stream().mapToLong(film -> film.id).toArray();
+    }
+
+    private static void offer(PriorityQueue<Scored> heap, Scored candidate, int limit) {
+        if (heap.size() < limit) {
+            heap.add(candidate);
+        } else if (limit > 0 && BEST_FIRST.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    /**
+     * A neighbouring user with its similarity, or a film with its score.
+     */
+    private static final class Scored {
+        private final long id;
+        private final double score;
+
+        private Scored(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    private final class OverlapTask extends RecursiveTask<LongCounter> {
+        private final long userId;
+        private final long[] likedFilms;
+        private final LongFunction<long[]> likersOf;
+        private final int from;
+        private final int to;
+
+        private OverlapTask(long userId, long[] likedFilms, LongFunction<long[]> likersOf, int from, int to) {
+            this.userId = userId;
+            this.likedFilms = likedFilms;
+            this.likersOf = likersOf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongCounter compute() {
+            if (to - from > FILMS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                OverlapTask left = new OverlapTask(userId, likedFilms, likersOf, from, middle);
+                left.fork();
+                LongCounter right = new OverlapTask(userId, likedFilms, likersOf, middle, to).compute();
+                LongCounter leftResult = left.join();
+                if (leftResult.size() < right.size()) {
+                    right.addAll(leftResult);
+                    return right;
+                }
+                leftResult.addAll(right);
+                return leftResult;
+            }
+
+            LongCounter counter = new LongCounter(1024);
+            for (int i = from; i < to; i++) {
+                long[] likers = likersOf.apply(likedFilms[i]);
+                if (likers == null || likers.length > maxFanout) {
+                    continue;
+                }
+                for (long likerId : likers) {
+                    if (likerId != userId) {
+                        counter.increment(likerId);
+                    }
+                }
+            }
+            return counter;
+        }
+    }
+
+    private final class SimilarityTask extends RecursiveTask<List<Scored>> {
+        private final int likedCount;
+        private final long[] candidates;
+        private final int[] common;
+        private final LongFunction<long[]> filmsOf;
+        private final int from;
+        private final int to;
+
+        private SimilarityTask(int likedCount, long[] candidates, int[] common, LongFunction<long[]> filmsOf,
+                               int from, int to) {
+            this.likedCount = likedCount;
+            this.candidates = candidates;
+            this.common = common;
+            this.filmsOf = filmsOf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Scored> compute() {
+            PriorityQueue<Scored> heap = new PriorityQueue<>(BEST_FIRST.reversed());
+            if (to - from > CANDIDATES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                SimilarityTask left = new SimilarityTask(likedCount, candidates, common, filmsOf, from, middle);
+                left.fork();
+                List<Scored> right =
+                        new SimilarityTask(likedCount, candidates, common, filmsOf, middle, to).compute();
+                for (Scored neighbour : left.join()) {
+                    offer(heap, neighbour, neighbours);
+                }
+                for (Scored neighbour : right) {
+                    offer(heap, neighbour, neighbours);
+                }
+                return new ArrayList<>(heap);
+            }
+
+            for (int i = from; i < to; i++) {
+                long[] films = filmsOf.apply(candidates[i]);
+                int theirs = films == null ? common[i] : films.length;
+                double similarity = (double) common[i] / (likedCount + theirs - common[i]);
+                offer(heap, new Scored(candidates[i], similarity), neighbours);
+            }
+            return new ArrayList<>(heap);
+        }
+    }
+}
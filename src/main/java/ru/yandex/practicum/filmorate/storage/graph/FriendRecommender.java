@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Ranks the friends of a user's friends by the number of mutual friends.
+ * <p>
+ * The second hop reads the sorted adjacency rows directly and counts candidates in a primitive table. Only the
+ * best {@code limit} candidates are kept, in a bounded heap. Friends with more than {@code maxFanout} friends
+ * are not expanded: a celebrity links almost everybody and says little about any one of them. The other
+ * friends are expanded from the smallest row up until {@code maxVisitedEdges} edges have been read, so one
+ * request does bounded work whatever the shape of the graph.
+ */
+@Component
+public class FriendRecommender {
+    private static final Comparator<Candidate> BEST_FIRST = Comparator
+            .comparingInt(Candidate::getMutualFriends).reversed()
+            .thenComparingLong(Candidate::getUserId);
+
+    private final int maxFanout;
+    private final int maxVisitedEdges;
+
+    public FriendRecommender(@Value("${filmorate.recommendations.max-fanout:5000}") int maxFanout,
+                             @Value("${filmorate.recommendations.max-visited-edges:1000000}") int maxVisitedEdges) {
+        this.maxFanout = maxFanout;
+        this.maxVisitedEdges = maxVisitedEdges;
+    }
+
+    /**
+     * @param friends the user's sorted friend row
+     * @param rowOf   the sorted friend row of another user, or {@code null} if the user is gone
+     * @return up to {@code limit} candidates, best first
+     */
+    public List<Candidate> recommend(long userId, long[] friends, LongFunction<long[]> rowOf, int limit) {
+        long[][] rows = new long[friends.length][];
+        int expanded = 0;
+        for (long friendId : friends) {
+            long[] row = rowOf.apply(friendId);
+            if (row != null && row.length <= maxFanout) {
+                rows[expanded++] = row;
+            }
+        }
+        Arrays.sort(rows, 0, expanded, Comparator.comparingInt(row -> row.length));
+
+        LongCounter counter = new LongCounter(Math.min(maxVisitedEdges, 1 << 16));
+        long budget = maxVisitedEdges;
+        for (int i = 0; i < expanded && budget > 0; i++) {
+            int visited = (int) Math.min(rows[i].length, budget);
+            for (int j = 0; j < visited; j++) {
+                counter.increment(rows[i][j]);
+            }
+            budget -= visited;
+        }
+
+        return top(counter, userId, friends, limit);
+    }
+
+    private static List<Candidate> top(LongCounter counter, long userId, long[] friends, int limit) {
+        // worst candidate on top, so it is the one replaced
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(BEST_FIRST.reversed());
+        for (int slot = 0; slot < counter.capacity(); slot++) {
+            if (!counter.isOccupied(slot)) {
+                continue;
+            }
+            long candidateId = counter.keyAt(slot);
+            int mutualFriends = counter.countAt(slot);
+            if (candidateId == userId || Arrays.binarySearch(friends, candidateId) >= 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Candidate(candidateId, mutualFriends));
+            } else if (isBetter(mutualFriends, candidateId, heap.peek())) {
+                heap.poll();
+                heap.add(new Candidate(candidateId, mutualFriends));
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(heap);
+        result.sort(BEST_FIRST);
+        return result;
+    }
+
+    private static boolean isBetter(int mutualFriends, long candidateId, Candidate worst) {
+        return mutualFriends > worst.mutualFriends
+                || mutualFriends == worst.mutualFriends && candidateId < worst.userId;
+    }
+
+    public static final class Candidate {
+        private final long userId;
+        private final int mutualFriends;
+
+        private Candidate(long userId, int mutualFriends) {
+            this.userId = userId;
+            this.mutualFriends = mutualFriends;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public int getMutualFriends() {
+            return mutualFriends;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+/**
+ * Sums {@code double} scores per {@code long} ID in an open-addressing table without boxing.
+ */
+final class LongScoreTable {
+    private long[] keys;
+    private double[] scores;
+    private boolean[] occupied;
+    private int mask;
+    private int size;
+
+    LongScoreTable(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedKeys * 2 - 1)) << 1;
+        keys = new long[capacity];
+        scores = new double[capacity];
+        occupied = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    void add(long key, double score) {
+        int slot = slotOf(key);
+        while (occupied[slot]) {
+            if (keys[slot] == key) {
+                scores[slot] += score;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        scores[slot] = score;
+        occupied[slot] = true;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean isOccupied(int slot) {
+        return occupied[slot];
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    double scoreAt(int slot) {
+        return scores[slot];
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        double[] oldScores = scores;
+        boolean[] oldOccupied = occupied;
+        keys = new long[oldKeys.length * 2];
+        scores = new double[oldScores.length * 2];
+        occupied = new boolean[oldOccupied.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldOccupied[i]) {
+                int slot = slotOf(oldKeys[i]);
+                while (occupied[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                scores[slot] = oldScores[i];
+                occupied[slot] = true;
+            }
+        }
+    }
+}
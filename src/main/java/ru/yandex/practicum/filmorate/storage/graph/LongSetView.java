@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only {@code Set<Long>} view of a {@link SortedLongSet}, handed to the model in place of a copied set.
+ * Membership and size checks stay primitive, and JSON is written straight from the {@code long[]} snapshot.
+ */
+@JsonSerialize(using = LongSetView.Serializer.class)
+public class LongSetView extends AbstractSet<Long> {
+    private final SortedLongSet ids;
+
+    public LongSetView(SortedLongSet ids) {
+        this.ids = ids;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && ids.contains((Long) o);
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        long[] snapshot = ids.snapshot();
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[next++];
+            }
+        };
+    }
+
+    public long[] toLongArray() {
+        return ids.snapshot();
+    }
+
+    public static class Serializer extends StdSerializer<LongSetView> {
+        public Serializer() {
+            super(LongSetView.class);
+        }
+
+        @Override
+        public void serialize(LongSetView value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            long[] snapshot = value.toLongArray();
+            gen.writeArray(snapshot, 0, snapshot.length);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only journal in numbered segment files ({@code journal-N.log}) plus compact snapshots
+ * ({@code snapshot-N.snap}, the state before segment N).
+ * <p>
+ * Group commit: appenders enqueue their encoded record and wait; a single flusher thread writes everything
+ * queued so far with one gathering write and one {@code force}, then releases all waiting appenders at once.
+ * <p>
+ * Replay must be idempotent: a snapshot is written while mutations continue into the new segment,
+ * so the first records of that segment may already be part of the snapshot.
+ * <p>
+ * A failed write is final: the waiting appenders and every later append fail, so the storages, which append
+ * before they apply a change, stop accepting writes. The journal health is then DOWN until a restart recovers
+ * the state from disk.
+ */
+@Slf4j
+public class FileMutationJournal implements MutationJournal, Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    // guards the queue and sequence numbers; appenders wait on its condition. Not a monitor, so a virtual
+    // thread waiting for the group commit unmounts instead of pinning its carrier
+    private final Lock queueLock = new ReentrantLock();
+    private final Condition queueChanged = queueLock.newCondition();
+    // guards the channel: held while a batch is written and while segments rotate
+    private final Object ioLock = new Object();
+
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean open;
+    private boolean closed;
+    private IOException failure;
+
+    private FileChannel channel;
+    private long segment;
+    private Thread flusher;
+
+    private final AtomicLong fsyncCount = new AtomicLong();
+    private final AtomicLong fsyncNanos = new AtomicLong();
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private volatile long recoveryMillis;
+    private volatile long recoveredRecords;
+    private volatile long lastSnapshotMillis;
+
+    public FileMutationJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void append(JournalRecord record) {
+        appendAll(List.of(record));
+    }
+
+    @Override
+    public void appendAll(List<JournalRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<ByteBuffer> frames = records.stream().map(JournalCodec::encode).collect(Collectors.toList());
+        queueLock.lock();
+        try {
+            if (!open) {
+                throw new IllegalStateException("The journal is not open");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("The journal has failed", failure);
+            }
+            pending.addAll(frames);
+            appendedSeq += frames.size();
+            long seq = appendedSeq;
+            queueChanged.signalAll();
+
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw new UncheckedIOException("The journal write has failed", failure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("The journal has been closed");
+                }
+                try {
+                    queueChanged.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal", e);
+                }
+            }
+        } finally {
+            queueLock.unlock();
+        }
+        appendedRecords.addAndGet(frames.size());
+    }
+
+    /**
+     * Loads the latest snapshot and replays the journal segments written after it, then opens a fresh segment
+     * for appending. A torn record at the tail ends the replay.
+     */
+    public void recover(Consumer<JournalRecord> replay) throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(directory);
+
+        OptionalLong snapshot = latest(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long firstSegment = snapshot.orElse(0);
+        long records = 0;
+        if (snapshot.isPresent()) {
+            records += replayFile(file(SNAPSHOT_PREFIX, snapshot.getAsLong(), SNAPSHOT_SUFFIX), replay);
+        }
+
+        long lastSegment = firstSegment;
+        for (long number : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number < firstSegment) {
+                continue;
+            }
+            records += replayFile(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), replay);
+            lastSegment = Math.max(lastSegment, number);
+        }
+
+        synchronized (ioLock) {
+            segment = lastSegment + 1;
+            channel = openSegment(segment);
+        }
+        queueLock.lock();
+        try {
+            open = true;
+        } finally {
+            queueLock.unlock();
+        }
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        recoveredRecords = records;
+        recoveryMillis = System.currentTimeMillis() - start;
+        log.info("The journal has been recovered: {} records in {} ms, appending to segment {}",
+                records, recoveryMillis, segment);
+    }
+
+    /**
+     * Starts a new segment and writes the current state as snapshot of it. Older snapshots and segments are
+     * deleted once the new snapshot is durable.
+     * <p>
+     * The rotation runs inside {@code quiescence}, which must hold off every mutation between its append and
+     * its apply. Otherwise a record could be flushed to the old segment while its change is not yet visible to
+     * the snapshot, and be lost with that segment.
+     */
+    public void snapshot(Consumer<Runnable> quiescence, Consumer<Consumer<JournalRecord>> state) throws IOException {
+        long start = System.currentTimeMillis();
+        long[] rotated = new long[1];
+        quiescence.accept(() -> {
+            try {
+                rotated[0] = rotate();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long snapshotSegment = rotated[0];
+
+        Path target = file(SNAPSHOT_PREFIX, snapshotSegment, SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING);
+             OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16)) {
+            state.accept(record -> {
+                ByteBuffer frame = JournalCodec.encode(record);
+                try {
+                    stream.write(frame.array(), frame.arrayOffset(), frame.remaining());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            stream.flush();
+            out.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long number : numbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (number < snapshotSegment) {
+                Files.deleteIfExists(file(SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+            }
+        }
+        for (long number : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number < snapshotSegment) {
+                Files.deleteIfExists(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+            }
+        }
+
+        lastSnapshotMillis = System.currentTimeMillis() - start;
+        log.info("A snapshot before segment {} has been written in {} ms", snapshotSegment, lastSnapshotMillis);
+    }
+
+    @Override
+    public void close() throws IOException {
+        queueLock.lock();
+        try {
+            if (!open || closed) {
+                return;
+            }
+            closed = true;
+            queueChanged.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            if (getFailure() == null) {
+                flushPending();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * The write error that has stopped the journal, or {@code null} while it works.
+     */
+    public IOException getFailure() {
+        queueLock.lock();
+        try {
+            return failure;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    public long getFsyncCount() {
+        return fsyncCount.get();
+    }
+
+    public long getFsyncNanos() {
+        return fsyncNanos.get();
+    }
+
+    public long getAppendedRecords() {
+        return appendedRecords.get();
+    }
+
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public long getLastSnapshotMillis() {
+        return lastSnapshotMillis;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            queueLock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        queueChanged.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+            } finally {
+                queueLock.unlock();
+            }
+            synchronized (ioLock) {
+                try {
+                    flushPending();
+                } catch (IOException e) {
+                    log.error("The journal write has failed, it accepts no more records", e);
+                    queueLock.lock();
+                    try {
+                        failure = e;
+                        pending = new ArrayList<>();
+                        queueChanged.signalAll();
+                    } finally {
+                        queueLock.unlock();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes and forces everything queued so far. The caller holds {@code ioLock}, so batches reach the file
+     * in the order they were queued.
+     */
+    private void flushPending() throws IOException {
+        List<ByteBuffer> batch;
+        long seq;
+        queueLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            seq = appendedSeq;
+        } finally {
+            queueLock.unlock();
+        }
+
+        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+        long remaining = batch.stream().mapToLong(ByteBuffer::remaining).sum();
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        long start = System.nanoTime();
+        channel.force(false);
+        fsyncNanos.addAndGet(System.nanoTime() - start);
+        fsyncCount.incrementAndGet();
+
+        queueLock.lock();
+        try {
+            durableSeq = seq;
+            queueChanged.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private long rotate() throws IOException {
+        synchronized (ioLock) {
+            flushPending();
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), CREATE, WRITE, APPEND);
+    }
+
+    private long replayFile(Path file, Consumer<JournalRecord> replay) throws IOException {
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            JournalRecord record;
+            while ((record = JournalCodec.read(in)) != null) {
+                replay.accept(record);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private Path file(String prefix, long number, String suffix) {
+        return directory.resolve(prefix + number + suffix);
+    }
+
+    private OptionalLong latest(String prefix, String suffix) throws IOException {
+        return numbers(prefix, suffix).stream().mapToLong(Long::longValue).max();
+    }
+
+    private List<Long> numbers(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
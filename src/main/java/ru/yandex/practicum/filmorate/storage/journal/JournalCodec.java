@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+/**
+ * Binary framing of journal records: {@code [int length][int crc32][payload]}. A frame with a wrong length or
+ * checksum marks a torn write at the tail of a segment.
+ * <p>
+ * Strings are written as {@code [int length][UTF-8 bytes]}.
+ */
+final class JournalCodec {
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    private JournalCodec() {
+    }
+
+    static ByteBuffer encode(JournalRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(record.getType().code());
+            switch (record.getType()) {
+                case FILM_CREATED:
+                case FILM_UPDATED:
+                    writeFilm(out, record.getFilm());
+                    break;
+                case USER_CREATED:
+                case USER_UPDATED:
+                    writeUser(out, record.getUser());
+                    break;
+                case FILM_DELETED:
+                case USER_DELETED:
+                    out.writeLong(record.getFirstId());
+                    break;
+                case LIKE_ADDED:
+                    out.writeLong(record.getFirstId());
+                    out.writeLong(record.getSecondId());
+                    out.writeLong(record.getTime());
+                    break;
+                default:
+                    out.writeLong(record.getFirstId());
+                    out.writeLong(record.getSecondId());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] payload = bytes.toByteArray();
+        // the reader takes a longer frame for a torn one and would drop everything after it
+        if (payload.length > MAX_PAYLOAD) {
+            throw new ValidationException("The " + record.getType() + " record is too large to be stored: "
+                    + payload.length + " bytes, at most " + MAX_PAYLOAD);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        return frame;
+    }
+
+    /**
+     * Reads the next record, or returns {@code null} at the end of the stream or at a torn/corrupt frame.
+     */
+    static JournalRecord read(DataInputStream in) throws IOException {
+        byte[] payload;
+        try {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length <= 0 || length > MAX_PAYLOAD) {
+                return null;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+            if (checksum(payload) != crc) {
+                return null;
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+        return decode(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    private static JournalRecord decode(DataInputStream in) throws IOException {
+        switch (JournalRecord.Type.of(in.readByte())) {
+            case FILM_CREATED:
+                return JournalRecord.filmCreated(readFilm(in));
+            case FILM_UPDATED:
+                return JournalRecord.filmUpdated(readFilm(in));
+            case FILM_DELETED:
+                return JournalRecord.filmDeleted(in.readLong());
+            case LIKE_ADDED:
+                return JournalRecord.likeAdded(in.readLong(), in.readLong(), in.readLong());
+            case LIKE_REMOVED:
+                return JournalRecord.likeRemoved(in.readLong(), in.readLong());
+            case USER_CREATED:
+                return JournalRecord.userCreated(readUser(in));
+            case USER_UPDATED:
+                return JournalRecord.userUpdated(readUser(in));
+            case USER_DELETED:
+                return JournalRecord.userDeleted(in.readLong());
+            case FRIEND_ADDED:
+                return JournalRecord.friendAdded(in.readLong(), in.readLong());
+            case FRIEND_REMOVED:
+                return JournalRecord.friendRemoved(in.readLong(), in.readLong());
+            default:
+                return JournalRecord.idWatermark(in.readLong(), in.readLong());
+        }
+    }
+
+    private static void writeFilm(DataOutputStream out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        out.writeLong(film.getReleaseDate().toEpochDay());
+        out.writeInt(film.getDuration());
+    }
+
+    private static Film readFilm(DataInputStream in) throws IOException {
+        return Film.builder()
+                .id(in.readLong())
+                .name(readString(in))
+                .description(readString(in))
+                .releaseDate(LocalDate.ofEpochDay(in.readLong()))
+                .duration(in.readInt())
+                .build();
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeLong(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        out.writeBoolean(user.getName() != null);
+        if (user.getName() != null) {
+            writeString(out, user.getName());
+        }
+        out.writeLong(user.getBirthday().toEpochDay());
+    }
+
+    private static User readUser(DataInputStream in) throws IOException {
+        return User.builder()
+                .id(in.readLong())
+                .email(readString(in))
+                .login(readString(in))
+                .name(in.readBoolean() ? readString(in) : null)
+                .birthday(LocalDate.ofEpochDay(in.readLong()))
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class JournalConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.journal.enabled", havingValue = "true")
+    public FileMutationJournal fileMutationJournal(@Value("${filmorate.journal.dir:journal}") Path directory) {
+        return new FileMutationJournal(directory);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.journal.enabled", havingValue = "false", matchIfMissing = true)
+    public MutationJournal noMutationJournal() {
+        return MutationJournal.NONE;
+    }
+}
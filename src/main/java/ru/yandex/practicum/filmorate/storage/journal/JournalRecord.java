@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+@Getter
+public final class JournalRecord {
+    private final Type type;
+    private final Film film;
+    private final User user;
+    private final long firstId;
+    private final long secondId;
+    // epoch millis of a like
+    private final long time;
+
+    private JournalRecord(Type type, Film film, User user, long firstId, long secondId) {
+        this(type, film, user, firstId, secondId, 0);
+    }
+
+    private JournalRecord(Type type, Film film, User user, long firstId, long secondId, long time) {
+        this.type = type;
+        this.film = film;
+        this.user = user;
+        this.firstId = firstId;
+        this.secondId = secondId;
+        this.time = time;
+    }
+
+    public static JournalRecord filmCreated(Film film) {
+        return new JournalRecord(Type.FILM_CREATED, film, null, film.getId(), 0);
+    }
+
+    public static JournalRecord filmUpdated(Film film) {
+        return new JournalRecord(Type.FILM_UPDATED, film, null, film.getId(), 0);
+    }
+
+    public static JournalRecord filmDeleted(long filmId) {
+        return new JournalRecord(Type.FILM_DELETED, null, null, filmId, 0);
+    }
+
+    public static JournalRecord likeAdded(long filmId, long userId, long likedAt) {
+        return new JournalRecord(Type.LIKE_ADDED, null, null, filmId, userId, likedAt);
+    }
+
+    public static JournalRecord likeRemoved(long filmId, long userId) {
+        return new JournalRecord(Type.LIKE_REMOVED, null, null, filmId, userId);
+    }
+
+    public static JournalRecord userCreated(User user) {
+        return new JournalRecord(Type.USER_CREATED, null, user, user.getId(), 0);
+    }
+
+    public static JournalRecord userUpdated(User user) {
+        return new JournalRecord(Type.USER_UPDATED, null, user, user.getId(), 0);
+    }
+
+    public static JournalRecord userDeleted(long userId) {
+        return new JournalRecord(Type.USER_DELETED, null, null, userId, 0);
+    }
+
+    public static JournalRecord friendAdded(long userId, long friendId) {
+        return new JournalRecord(Type.FRIEND_ADDED, null, null, userId, friendId);
+    }
+
+    public static JournalRecord friendRemoved(long userId, long friendId) {
+        return new JournalRecord(Type.FRIEND_REMOVED, null, null, userId, friendId);
+    }
+
+    /**
+     * Highest film and user IDs ever issued, so that IDs of deleted entities are not reused after recovery.
+     */
+    public static JournalRecord idWatermark(long lastFilmId, long lastUserId) {
+        return new JournalRecord(Type.ID_WATERMARK, null, null, lastFilmId, lastUserId);
+    }
+
+    public enum Type {
+        FILM_CREATED(1),
+        FILM_UPDATED(2),
+        FILM_DELETED(3),
+        LIKE_ADDED(4),
+        LIKE_REMOVED(5),
+        USER_CREATED(6),
+        USER_UPDATED(7),
+        USER_DELETED(8),
+        FRIEND_ADDED(9),
+        FRIEND_REMOVED(10),
+        ID_WATERMARK(11);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        byte code() {
+            return code;
+        }
+
+        static Type of(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown journal record type: " + code);
+        }
+    }
+}
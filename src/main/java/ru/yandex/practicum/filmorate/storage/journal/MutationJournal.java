@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.util.List;
+
+/**
+ * Durable log of storage mutations. The storages append a record while still holding the entity's lock and
+ * before they apply the change, so records of one entity are journaled in the order they are applied, and a
+ * change whose append throws is not applied at all.
+ */
+public interface MutationJournal {
+    MutationJournal NONE = record -> {
+    };
+
+    void append(JournalRecord record);
+
+    /**
+     * Appends the records in order. Implementations with durable writes wait once for the whole batch.
+     */
+    default void appendAll(List<JournalRecord> records) {
+        records.forEach(this::append);
+    }
+}
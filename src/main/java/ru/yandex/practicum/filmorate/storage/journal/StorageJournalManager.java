@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Restores the in-memory storages from the journal before the web server starts, and writes periodic snapshots.
+ */
+@Component
+@Profile("!db & !sharded")
+@ConditionalOnProperty(name = "filmorate.journal.enabled", havingValue = "true")
+@Slf4j
+@RequiredArgsConstructor
+public class StorageJournalManager implements SmartInitializingSingleton, DisposableBean {
+    private final FileMutationJournal journal;
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    @Value("${filmorate.journal.snapshot-interval:10m}")
+    private Duration snapshotInterval;
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            journal.recover(this::replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The storages can't be recovered from the journal", e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = snapshotInterval.toMillis();
+        scheduler.scheduleAtFixedRate(this::snapshot, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    void snapshot() {
+        try {
+            journal.snapshot(this::quiesced, this::writeState);
+        } catch (IOException | RuntimeException e) {
+            log.error("The snapshot has failed", e);
+        }
+    }
+
+    /**
+     * Holds off the mutations of both storages; they never lock each other, so the order is free.
+     */
+    private void quiesced(Runnable action) {
+        filmStorage.runQuiescent(() -> userStorage.runQuiescent(action));
+    }
+
+    private void writeState(Consumer<JournalRecord> sink) {
+        sink.accept(JournalRecord.idWatermark(filmStorage.getLastFilmId(), userStorage.getLastUserId()));
+        for (Film film : filmStorage.getAllFilms()) {
+            sink.accept(JournalRecord.filmCreated(film));
+            for (Long userId : film.getLikes()) {
+                long likedAt = filmStorage.getLikedAt(film.getId(), userId);
+                sink.accept(JournalRecord.likeAdded(film.getId(), userId, likedAt));
+            }
+        }
+        for (User user : userStorage.getAllUsers()) {
+            sink.accept(JournalRecord.userCreated(user));
+        }
+        for (User user : userStorage.getAllUsers()) {
+            for (Long friendId : user.getFriends()) {
+                // a friendship is symmetric, one record restores both sides; a self-friendship has only one
+                if (user.getId() <= friendId) {
+                    sink.accept(JournalRecord.friendAdded(user.getId(), friendId));
+                }
+            }
+        }
+    }
+
+    private void replay(JournalRecord record) {
+        switch (record.getType()) {
+            case FILM_CREATED:
+            case FILM_UPDATED:
+                filmStorage.restoreFilm(record.getFilm());
+                break;
+            case FILM_DELETED:
+                filmStorage.restoreFilmDeletion(record.getFirstId());
+                break;
+            case LIKE_ADDED:
+                filmStorage.restoreLike(record.getFirstId(), record.getSecondId(), record.getTime());
+                break;
+            case LIKE_REMOVED:
+                filmStorage.restoreUnlike(record.getFirstId(), record.getSecondId());
+                break;
+            case USER_CREATED:
+            case USER_UPDATED:
+                userStorage.restoreUser(record.getUser());
+                break;
+            case USER_DELETED:
+                userStorage.restoreUserDeletion(record.getFirstId());
+                break;
+            case FRIEND_ADDED:
+                userStorage.restoreFriendship(record.getFirstId(), record.getSecondId());
+                break;
+            case FRIEND_REMOVED:
+                userStorage.restoreFriendshipEnd(record.getFirstId(), record.getSecondId());
+                break;
+            case ID_WATERMARK:
+                filmStorage.restoreLastFilmId(record.getFirstId());
+                userStorage.restoreLastUserId(record.getSecondId());
+                break;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Shards placed on a 64-bit hash ring at {@code virtualNodes} points each. An ID belongs to the shard of the
+ * first point at or after the ID's hash, wrapping around. Adding a shard only takes over the IDs between its
+ * points and their predecessors, about 1/N of all IDs, and moves none between the old shards.
+ * <p>
+ * Immutable: adding a shard returns a new ring, so a router reads a consistent ring without locking.
+ */
+public final class ConsistentHashRing {
+    private final NavigableMap<Long, String> points;
+    private final List<String> shards;
+    private final int virtualNodes;
+
+    private ConsistentHashRing(NavigableMap<Long, String> points, List<String> shards, int virtualNodes) {
+        this.points = points;
+        this.shards = shards;
+        this.virtualNodes = virtualNodes;
+    }
+
+    public static ConsistentHashRing of(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one shard and one virtual node per shard");
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(new TreeMap<>(), List.of(), virtualNodes);
+        for (String shard : shards) {
+            ring = ring.withShard(shard);
+        }
+        return ring;
+    }
+
+    public ConsistentHashRing withShard(String shard) {
+        if (shards.contains(shard)) {
+            throw new IllegalArgumentException("The shard is already on the ring: " + shard);
+        }
+        NavigableMap<Long, String> newPoints = new TreeMap<>(points);
+        long seed = seed(shard);
+        for (int node = 0; node < virtualNodes; node++) {
+            // on a collision the earlier shard keeps the point
+            newPoints.putIfAbsent(mix(seed + node), shard);
+        }
+        List<String> newShards = new ArrayList<>(shards);
+        newShards.add(shard);
+        return new ConsistentHashRing(newPoints, Collections.unmodifiableList(newShards), virtualNodes);
+    }
+
+    public String shardOf(long id) {
+        Map.Entry<Long, String> point = points.ceilingEntry(mix(id));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    private static long seed(String shard) {
+        // FNV-1a, String.hashCode is too regular for names like shard-1, shard-2
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : shard.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash << 16;
+    }
+
+    // MurmurHash3 finalizer: IDs are sequential, the ring needs them spread over all 64 bits
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe53e1a87L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
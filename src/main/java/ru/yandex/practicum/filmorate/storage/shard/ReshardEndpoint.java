@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.jmx.annotation.JmxEndpoint;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Adds a shard and rebalances onto it. Only JMX exposes this endpoint, so adding a shard needs access to the
+ * JVM rather than an unauthenticated HTTP request.
+ */
+@Component
+@Profile("sharded")
+@JmxEndpoint(id = "reshard")
+@RequiredArgsConstructor
+public class ReshardEndpoint {
+    private final ShardCluster cluster;
+    private final ShardsEndpoint shards;
+
+    @WriteOperation
+    public Map<String, Map<String, Long>> addShard(String name) {
+        cluster.addShard(name);
+        return shards.shards();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Membership of the shard nodes and the ring that routes entity IDs to them. The sharded storages keep a
+ * partition per shard and route every call through the current ring.
+ * <p>
+ * Storage calls run under the read lock. Adding a shard takes the write lock, so requests wait while the
+ * listeners move the entities the new shard takes over; no request sees an entity on the wrong shard.
+ */
+@Slf4j
+public class ShardCluster {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ConsistentHashRing ring;
+
+    public ShardCluster(List<String> shards, int virtualNodes) {
+        this.ring = ConsistentHashRing.of(shards, virtualNodes);
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public List<String> getShards() {
+        return ring.getShards();
+    }
+
+    /**
+     * Registers a storage for future shards; it partitions itself over the current ones.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addShard(String shard) {
+        lock.writeLock().lock();
+        try {
+            long start = System.currentTimeMillis();
+            ConsistentHashRing newRing = ring.withShard(shard);
+            for (Listener listener : listeners) {
+                listener.shardAdded(shard, newRing);
+            }
+            ring = newRing;
+            log.info("The shard {} has been added in {} ms, shards: {}",
+                    shard, System.currentTimeMillis() - start, newRing.getShards());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Creates the partition of the new shard and moves to it the entities the new ring routes there.
+         */
+        void shardAdded(String shard, ConsistentHashRing newRing);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges lists that each shard has already sorted, reading only as many entries as the result needs.
+ */
+public final class ShardMerge {
+    private ShardMerge() {
+    }
+
+    public static <T> List<T> merge(Collection<? extends Collection<T>> sorted, Comparator<? super T> order,
+                                    int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.head, b.head));
+        for (Collection<T> list : sorted) {
+            Iterator<T> iterator = list.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Cursor<>(iterator));
+            }
+        }
+        List<T> result = new ArrayList<>();
+        while (result.size() < limit && !heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            result.add(cursor.head);
+            if (cursor.iterator.hasNext()) {
+                cursor.head = cursor.iterator.next();
+                heads.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private static final class Cursor<T> {
+        private final Iterator<T> iterator;
+        private T head;
+
+        private Cursor(Iterator<T> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+    }
+}
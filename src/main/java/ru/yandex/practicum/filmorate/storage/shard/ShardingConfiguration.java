@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import ru.yandex.practicum.filmorate.storage.film.PopularityConfiguration;
+import ru.yandex.practicum.filmorate.storage.film.ShardedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.user.ShardedUserStorage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code sharded} profile: films and users partitioned over {@code filmorate.sharding.shards} in-process
+ * shards named {@code shard-0}, {@code shard-1}, ..., each placed on the ring as
+ * {@code filmorate.sharding.virtual-nodes} points. Every shard ranks popular films in the configured
+ * {@code filmorate.popularity.mode}.
+ */
+@Configuration
+@Profile("sharded")
+public class ShardingConfiguration {
+
+    @Bean
+    public ShardCluster shardCluster(@Value("${filmorate.sharding.shards:4}") int shards,
+                                     @Value("${filmorate.sharding.virtual-nodes:128}") int virtualNodes) {
+        List<String> names = IntStream.range(0, shards)
+                .mapToObj(shard -> "shard-" + shard)
+                .collect(Collectors.toList());
+        return new ShardCluster(names, virtualNodes);
+    }
+
+    @Bean
+    public ShardedFilmStorage shardedFilmStorage(ShardCluster cluster, FilmRecommender recommender,
+                                                 @Value("${filmorate.popularity.mode:exact}") String mode,
+                                                 @Value("${filmorate.popularity.max-error:0.0001}") double maxError) {
+        return new ShardedFilmStorage(cluster, recommender, () -> PopularityConfiguration.create(mode, maxError));
+    }
+
+    @Bean
+    public ShardedUserStorage shardedUserStorage(ShardCluster cluster, FriendRecommender recommender) {
+        return new ShardedUserStorage(cluster, recommender);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.ShardedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.ShardedUserStorage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/shards} lists the shards with their film and user counts. It is read-only, so it can be
+ * exposed over HTTP; shards are added through {@link ReshardEndpoint}, which is JMX-only.
+ */
+@Component
+@Profile("sharded")
+@Endpoint(id = "shards")
+@RequiredArgsConstructor
+public class ShardsEndpoint {
+    private final ShardCluster cluster;
+    private final ShardedFilmStorage filmStorage;
+    private final ShardedUserStorage userStorage;
+
+    @ReadOperation
+    public Map<String, Map<String, Long>> shards() {
+        Map<String, Long> films = filmStorage.getFilmCountsByShard();
+        Map<String, Long> users = userStorage.getUserCountsByShard();
+        Map<String, Map<String, Long>> shards = new LinkedHashMap<>();
+        for (String shard : cluster.getShards()) {
+            shards.put(shard, Map.of(
+                    "films", films.getOrDefault(shard, 0L),
+                    "users", users.getOrDefault(shard, 0L)
+            ));
+        }
+        return shards;
+    }
+}
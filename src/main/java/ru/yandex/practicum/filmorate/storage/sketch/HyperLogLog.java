@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.sketch;
+
+/**
+ * HyperLogLog distinct counter (Flajolet et al.) with {@code 2^precision} one-byte registers and a standard
+ * error of about {@code 1.04 / sqrt(2^precision)}, with linear counting for small cardinalities.
+ * Values can't be removed.
+ * <p>
+ * Adds are lock-free while they don't raise a register, which is almost always once the sketch has warmed up.
+ */
+public class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("The precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit bounds the rank when the remaining bits are all zero
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (registers[index] < rank) {
+            synchronized (registers) {
+                if (registers[index] < rank) {
+                    registers[index] = rank;
+                }
+            }
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Sketches of different precision can't be merged");
+        }
+        synchronized (registers) {
+            for (int i = 0; i < registers.length; i++) {
+                registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+            }
+        }
+    }
+
+    public int sizeInBytes() {
+        return registers.length;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // MurmurHash3 finalizer: IDs are sequential, the registers need uniformly spread bits
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe53e1a87L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.storage.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy hitters (Metwally et al.): at most {@code capacity} monitored items with counts. An item
+ * that isn't monitored takes over the counter of the smallest one and inherits its count as error, so a count
+ * overestimates the true weight by at most its error, and at most {@code total / capacity}. Every item heavier
+ * than that bound is guaranteed to be monitored.
+ * <p>
+ * Decrements are applied to monitored items only; the weight taken from an item that was evicted earlier is
+ * already covered by the error bound.
+ */
+public class SpaceSaving {
+    // map node, boxed key, counter and tree node of a monitored item
+    private static final long COUNTER_BYTES = 128;
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final NavigableSet<Counter> byCount = new TreeSet<>();
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Enough counters for a count error of at most {@code maxError} of the total weight.
+     */
+    public static SpaceSaving withMaxError(double maxError) {
+        if (maxError <= 0 || maxError >= 1) {
+            throw new IllegalArgumentException("The error must be between 0 and 1: " + maxError);
+        }
+        return new SpaceSaving((int) Math.ceil(1 / maxError));
+    }
+
+    public synchronized void add(long item, long weight) {
+        total += weight;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += weight;
+        } else if (counters.size() < capacity) {
+            counter = new Counter(item, weight, 0);
+            counters.put(item, counter);
+        } else {
+            Counter smallest = byCount.pollFirst();
+            counters.remove(smallest.item);
+            counter = new Counter(item, smallest.count + weight, smallest.count);
+            counters.put(item, counter);
+        }
+        byCount.add(counter);
+    }
+
+    public synchronized void subtract(long item, long weight) {
+        total = Math.max(0, total - weight);
+        Counter counter = counters.get(item);
+        if (counter == null) {
+            return;
+        }
+        byCount.remove(counter);
+        counter.count = Math.max(0, counter.count - weight);
+        counter.error = Math.min(counter.error, counter.count);
+        byCount.add(counter);
+    }
+
+    /**
+     * Forgets an item whose weight has been withdrawn as a whole.
+     */
+    public synchronized void remove(long item, long weight) {
+        total = Math.max(0, total - weight);
+        Counter counter = counters.remove(item);
+        if (counter != null) {
+            byCount.remove(counter);
+        }
+    }
+
+    /**
+     * The monitored items with the largest counts, largest first.
+     */
+    public synchronized List<Long> top(int count) {
+        List<Long> items = new ArrayList<>(Math.min(count, counters.size()));
+        Iterator<Counter> iterator = byCount.descendingIterator();
+        while (items.size() < count && iterator.hasNext()) {
+            items.add(iterator.next().item);
+        }
+        return items;
+    }
+
+    /**
+     * The monitored items with the largest counts and their counts, largest first, for merging the tops of
+     * sketches over disjoint sets of items.
+     */
+    public synchronized List<Estimate> topEstimates(int count) {
+        List<Estimate> estimates = new ArrayList<>(Math.min(count, counters.size()));
+        Iterator<Counter> iterator = byCount.descendingIterator();
+        while (estimates.size() < count && iterator.hasNext()) {
+            Counter counter = iterator.next();
+            estimates.add(new Estimate(counter.item, counter.count));
+        }
+        return estimates;
+    }
+
+    /**
+     * Upper bound of the item's weight.
+     */
+    public synchronized long estimate(long item) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            return counter.count;
+        }
+        return counters.size() < capacity || byCount.isEmpty() ? 0 : byCount.first().count;
+    }
+
+    public synchronized long maxError() {
+        return total / capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized long estimateHeapBytes() {
+        return counters.size() * COUNTER_BYTES;
+    }
+
+    public static final class Estimate {
+        // largest count first; ties: the lower item first, like in the exact index
+        public static final Comparator<Estimate> BY_RANK = Comparator.comparingLong(Estimate::getCount).reversed()
+                .thenComparingLong(Estimate::getItem);
+
+        private final long item;
+        private final long count;
+
+        private Estimate(long item, long count) {
+            this.item = item;
+            this.count = count;
+        }
+
+        public long getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static final class Counter implements Comparable<Counter> {
+        private final long item;
+        private long count;
+        private long error;
+
+        private Counter(long item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public int compareTo(Counter other) {
+            int comp = Long.compare(count, other.count);
+            // ties: the lower item ranks higher, like in the exact index
+            return comp != 0 ? comp : Long.compare(other.item, item);
+        }
+    }
+}
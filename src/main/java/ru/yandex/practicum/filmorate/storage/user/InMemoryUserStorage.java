@@ -1,54 +1,164 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.AlreadyExistsException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.HeapFootprint;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.LongSetView;
+import ru.yandex.practicum.filmorate.storage.graph.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
+@Profile("!db & !sharded")
 @Slf4j
-public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> usersById = new HashMap<>();
-    private static long counter = 0;
+public class InMemoryUserStorage implements UserStorage, HeapFootprint {
+    // map node, User, strings, LocalDate, friends row, version and email and login index entries of an average user
+    private static final long USER_BYTES = 464;
+    // a friendship is stored in both users' rows
+    private static final long FRIENDSHIP_BYTES = 2 * Long.BYTES;
+    // negative holders of the keys of new users that have no ID yet
+    private static final AtomicLong PROVISIONAL_HOLDERS = new AtomicLong();
+    private final MutationJournal journal;
+    private final FriendRecommender recommender;
+    private final ConcurrentNavigableMap<Long, User> usersById = new ConcurrentSkipListMap<>();
+    private final Map<Long, SortedLongSet> friendsByUser = new ConcurrentHashMap<>();
+    private final UniqueIndex emails;
+    private final UniqueIndex logins;
+    private final AtomicLong counter = new AtomicLong();
+    private final StripedLocks locks = new StripedLocks();
+    private final LongAdder userCount = new LongAdder();
+    private final LongAdder friendshipCount = new LongAdder();
+    private final EntityVersions versions;
+
+    @Autowired
+    public InMemoryUserStorage(MutationJournal journal, FriendRecommender recommender) {
+        this(journal, recommender, new UniqueIndex(), new UniqueIndex(), EntityVersions.newClock());
+    }
+
+    /**
+     * A partition of a sharded storage. The partitions share the email and login indexes, so both stay unique
+     * over all shards, and stamp versions on one clock.
+     */
+    InMemoryUserStorage(MutationJournal journal, FriendRecommender recommender,
+                        UniqueIndex emails, UniqueIndex logins, AtomicLong versionClock) {
+        this.journal = journal;
+        this.recommender = recommender;
+        this.emails = emails;
+        this.logins = logins;
+        this.versions = new EntityVersions(versionClock);
+    }
 
     @Override
     public User create(User user) {
-        user.setId(getUserId());
-        user.setFriends(new HashSet<>());
-        usersById.put(user.getId(), user);
+        assignId(user, emails, logins, counter);
+        return insert(user);
+    }
+
+    /**
+     * Reserves the email and login of a new user and only then takes its ID from the counter, so a conflict
+     * doesn't use up an ID. Until the ID is known the keys are held by a provisional negative holder.
+     */
+    static void assignId(User user, UniqueIndex emails, UniqueIndex logins, AtomicLong counter) {
+        long holder = -PROVISIONAL_HOLDERS.incrementAndGet();
+        user.setId(holder);
+        reserveKeys(emails, logins, user, null);
+
+        long userId = counter.incrementAndGet();
+        emails.transfer(UniqueIndex.normalize(user.getEmail()), holder, userId);
+        logins.transfer(UniqueIndex.normalize(user.getLogin()), holder, userId);
+        user.setId(userId);
+    }
 
-        log.info("A new user has been created: {}", user);
+    /**
+     * Adds a user whose keys have been reserved and whose ID has been assigned by {@link #assignId}.
+     */
+    User insert(User user) {
+        SortedLongSet friends = new SortedLongSet();
+        user.setFriends(new LongSetView(friends));
+
+        Lock lock = locks.get(user.getId());
+        lock.lock();
+        try {
+            appendOrRelease(JournalRecord.userCreated(user), user, null);
+            friendsByUser.put(user.getId(), friends);
+            usersById.put(user.getId(), user);
+            userCount.increment();
+            versions.stamp(user.getId());
+        } finally {
+            lock.unlock();
+        }
+
+        log.debug("A new user has been created: {}", user);
 
         return user;
     }
 
     @Override
     public User update(User user) {
+        return update(user, null);
+    }
+
+    @Override
+    public User updateIfVersion(User user, long expectedVersion) {
+        return update(user, expectedVersion);
+    }
+
+    private User update(User user, Long expectedVersion) {
         long userId = user.getId();
-        checkUserForExist(
-                List.of(userId),
-                "Updating is not possible. The user was not found: ID=" + userId
-        );
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            checkUserForExist(
+                    List.of(userId),
+                    "Updating is not possible. The user was not found: ID=" + userId
+            );
+            if (expectedVersion != null && versions.get(userId) != expectedVersion) {
+                printPreconditionMessage("The user has been changed since the version " + expectedVersion
+                        + ", ID=" + userId);
+            }
 
-        user.setFriends(usersById.get(userId).getFriends());
-        usersById.put(userId, user);
-        log.info("The user has been updated: {}", user);
+            User current = usersById.get(userId);
+            reserveKeys(user, current);
+            appendOrRelease(JournalRecord.userUpdated(user), user, current);
+            user.setFriends(new LongSetView(friendsByUser.get(userId)));
+            usersById.put(userId, user);
+            releaseKeys(current, user);
+            versions.stamp(userId);
+        } finally {
+            lock.unlock();
+        }
+        log.debug("The user has been updated: {}", user);
 
         return user;
     }
 
     @Override
     public User delete(User user) {
-        checkUserForExist(
-                List.of(user.getId()),
-                "Invalid incoming user's ID during request to get delete user by ID="
-        );
-
-        usersById.remove(user.getId());
-        log.info("The user ID={} has been deleted.", user.getId());
+        deleteWithFriends(user);
+        log.debug("The user ID={} has been deleted.", user.getId());
 
         return user;
     }
@@ -58,6 +168,24 @@ public class InMemoryUserStorage implements UserStorage {
         return usersById.values();
     }
 
+    @Override
+    public Collection<User> getUsersPage(long afterId, int limit) {
+        return usersById.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Friend counts are the sizes of the friend rows, so summaries cost no more than the users.
+     */
+    @Override
+    public List<UserSummary> getUserSummaries(long afterId, int limit) {
+        return usersById.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(UserSummary::of)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User getUserById(long id) {
         checkUserForExist(
@@ -68,27 +196,112 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public User addToFriend(long userId, long friendId) {
-        checkUserForExist(
-                List.of(userId, friendId),
-                "Adding a friend is not possible. User not found, ID="
-        );
+    public OptionalLong getUserVersion(long id) {
+        checkUserForExist(List.of(id), "Getting an existing user is not possible. User not found, ID=");
+        return OptionalLong.of(versions.get(id));
+    }
+
+    /**
+     * The friend list shows the friends with their own friends, so its version is the latest of the versions
+     * of the user and of every friend.
+     */
+    @Override
+    public OptionalLong getFriendsVersion(long userId) {
+        checkUserForExist(List.of(userId), "It's not possible to get all user's friends. User not found, ID=");
+
+        long version = versions.get(userId);
+        for (long friendId : friendsByUser.get(userId).snapshot()) {
+            version = Math.max(version, versions.get(friendId));
+        }
+        return OptionalLong.of(version);
+    }
 
-        makeFriends(userId, friendId);
+    @Override
+    public User getUserByEmail(String email) {
+        return findByKey(emails, email, User::getEmail, "The user with this email was not found: ");
+    }
+
+    @Override
+    public User getUserByLogin(String login) {
+        return findByKey(logins, login, User::getLogin, "The user with this login was not found: ");
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(usersById::containsKey)
+                .collect(Collectors.toSet());
+    }
 
-        return usersById.get(userId);
+    @Override
+    public User addToFriend(long userId, long friendId) {
+        locks.lockBoth(userId, friendId);
+        try {
+            checkUserForExist(
+                    List.of(userId, friendId),
+                    "Adding a friend is not possible. User not found, ID="
+            );
+
+            makeFriends(userId, friendId);
+
+            return usersById.get(userId);
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
     }
 
     @Override
     public User deleteFromFriends(long userId, long friendId) {
-        checkUserForExist(
-                List.of(userId, friendId),
-                "Deleting a friend is not possible. User not found, ID="
-        );
+        locks.lockBoth(userId, friendId);
+        try {
+            checkUserForExist(
+                    List.of(userId, friendId),
+                    "Deleting a friend is not possible. User not found, ID="
+            );
+
+            stopBeingFriends(userId, friendId);
+
+            return usersById.get(userId);
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
 
-        stopBeingFriends(userId, friendId);
+    /**
+     * Groups the friendships by the pair of lock stripes they touch and applies each group under one
+     * acquisition of that pair. The group is journaled with one durable write before any of it is applied.
+     */
+    @Override
+    public List<BatchItemResult> addFriends(List<Friendship> friendships) {
+        BatchItemResult[] results = new BatchItemResult[friendships.size()];
+        Map<Long, List<Integer>> itemsByStripes = new HashMap<>();
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            int first = locks.stripeOf(friendship.getUserId());
+            int second = locks.stripeOf(friendship.getFriendId());
+            long stripes = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+            itemsByStripes.computeIfAbsent(stripes, key -> new ArrayList<>()).add(i);
+        }
 
-        return usersById.get(userId);
+        for (List<Integer> items : itemsByStripes.values()) {
+            Friendship sample = friendships.get(items.get(0));
+            locks.lockBoth(sample.getUserId(), sample.getFriendId());
+            try {
+                Map<List<Long>, Friendship> accepted = new LinkedHashMap<>();
+                for (int item : items) {
+                    results[item] = checkFriendshipInBatch(friendships.get(item), accepted);
+                }
+                journal.appendAll(accepted.values().stream()
+                        .map(friendship -> JournalRecord.friendAdded(friendship.getUserId(), friendship.getFriendId()))
+                        .collect(Collectors.toList()));
+                accepted.values().forEach(this::linkFriends);
+            } finally {
+                locks.unlockBoth(sample.getUserId(), sample.getFriendId());
+            }
+        }
+        log.debug("A batch of {} friendships has been applied.", friendships.size());
+
+        return Arrays.asList(results);
     }
 
     @Override
@@ -98,12 +311,18 @@ public class InMemoryUserStorage implements UserStorage {
                 "It's not possible to get all user's friends. User not found, ID="
         );
 
-        Set<Long> friends = usersById.get(userId).getFriends();
-        return friends.stream()
-                .map(usersById::get)
+        long[] friends = friendsByUser.get(userId).snapshot();
+        return Arrays.stream(friends)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<UserSummary> getFriendSummaries(long userId) {
+        return getAllUserFriends(userId).stream().map(UserSummary::of).collect(Collectors.toList());
+    }
+
     @Override
     public Collection<User> getMutualFriends(long firstUserId, long secondUserId) {
         checkUserForExist(
@@ -111,34 +330,427 @@ public class InMemoryUserStorage implements UserStorage {
                 "It's not possible to get mutual friends. User not found, ID="
         );
 
-        Set<Long> firstUserFriends = usersById.get(firstUserId).getFriends();
-        Set<Long> secondUserFriends = usersById.get(secondUserId).getFriends();
-        return firstUserFriends.stream()
-                .filter(secondUserFriends::contains)
-                .map(usersById::get)
+        long[] mutualFriends = SortedLongSet.intersect(
+                friendsByUser.get(firstUserId).snapshot(),
+                friendsByUser.get(secondUserId).snapshot()
+        );
+        return Arrays.stream(mutualFriends)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public int getMutualFriendsCount(long firstUserId, long secondUserId) {
+        checkUserForExist(
+                List.of(firstUserId, secondUserId),
+                "It's not possible to count mutual friends. User not found, ID="
+        );
+
+        return SortedLongSet.intersectionSize(
+                friendsByUser.get(firstUserId).snapshot(),
+                friendsByUser.get(secondUserId).snapshot()
+        );
+    }
+
+    @Override
+    public List<FriendRecommendation> getFriendRecommendations(long userId, int limit) {
+        checkUserForExist(
+                List.of(userId),
+                "It's not possible to recommend friends. User not found, ID="
+        );
+
+        return recommender.recommend(userId, friendsByUser.get(userId).snapshot(), this::friendRow, limit).stream()
+                .map(candidate -> new FriendRecommendation(
+                        usersById.get(candidate.getUserId()), candidate.getMutualFriends()
+                ))
+                .filter(recommendation -> recommendation.getUser() != null)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long getUserCount() {
+        return userCount.sum();
+    }
+
+    @Override
+    public long getFriendshipCount() {
+        return friendshipCount.sum();
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        return userCount.sum() * USER_BYTES + friendshipCount.sum() * FRIENDSHIP_BYTES;
+    }
+
+    /*
+     * Used by ShardedUserStorage, which keeps friendships between users of different shards as one row entry
+     * on each shard. These entries are not journaled.
+     */
+
+    User findUser(long id) {
+        return usersById.get(id);
+    }
+
+    long[] friendsOf(long userId) {
+        return friendRow(userId);
+    }
+
+    /**
+     * The stripe lock of the user, which the router holds with the lock of a friend on another shard.
+     */
+    Lock lockOf(long userId) {
+        return locks.get(userId);
+    }
+
+    long versionOf(long userId) {
+        return versions.get(userId);
+    }
+
+    /**
+     * Deletes the user and takes it out of the rows of its friends on this shard, holding the locks of the user
+     * and of all those friends. A friend added after the locks were chosen is caught under them, and the locks
+     * are taken again.
+     *
+     * @return the friends the user had, on any shard
+     */
+    long[] deleteWithFriends(User user) {
+        long userId = user.getId();
+        while (true) {
+            int[] stripes = lockUserAndFriends(userId);
+            try {
+                checkUserForExist(
+                        List.of(userId),
+                        "Invalid incoming user's ID during request to get delete user by ID="
+                );
+                long[] friends = friendsByUser.get(userId).snapshot();
+                if (!locks.holdsAll(stripes, friends)) {
+                    continue;
+                }
+
+                journal.append(JournalRecord.userDeleted(userId));
+                releaseKeys(usersById.remove(userId), null);
+                removeFromFriends(userId);
+                versions.remove(userId);
+                return friends;
+            } finally {
+                locks.unlockAll(stripes);
+            }
+        }
+    }
+
+    /**
+     * Takes the user with its row out of this shard for a move to another one. Unlike a deletion, the rows of
+     * its friends keep the user.
+     */
+    void evict(long userId) {
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            releaseKeys(usersById.remove(userId), null);
+            SortedLongSet friends = friendsByUser.remove(userId);
+            if (friends != null) {
+                userCount.decrement();
+                friendshipCount.add(-friends.size());
+            }
+            versions.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the friend to the user's row only; {@code counted} says whether this half counts the friendship.
+     *
+     * @return false if the user already has that friend
+     */
+    boolean linkFriend(long userId, long friendId, boolean counted) {
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            checkUserForExist(List.of(userId), "Adding a friend is not possible. User not found, ID=");
+            if (!friendsByUser.get(userId).add(friendId)) {
+                return false;
+            }
+            if (counted) {
+                friendshipCount.increment();
+            }
+            versions.stamp(userId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean unlinkFriend(long userId, long friendId, boolean counted) {
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            SortedLongSet friends = friendsByUser.get(userId);
+            if (friends == null || !friends.remove(friendId)) {
+                return false;
+            }
+            if (counted) {
+                friendshipCount.decrement();
+            }
+            versions.stamp(userId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the action while no mutation is between its journal append and its apply: both happen under the
+     * locks of the users, and the action holds all of them.
+     */
+    public void runQuiescent(Runnable action) {
+        locks.runExclusively(action);
+    }
+
+    public long getLastUserId() {
+        return counter.get();
+    }
+
+    /*
+     * Journal replay. Unlike the API methods these are idempotent, tolerate missing entities
+     * and don't write to the journal again.
+     */
+
+    public void restoreUser(User user) {
+        long userId = user.getId();
+        Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            SortedLongSet friends = friendsByUser.get(userId);
+            if (friends == null) {
+                friends = new SortedLongSet();
+                friendsByUser.put(userId, friends);
+                userCount.increment();
+            }
+            user.setFriends(new LongSetView(friends));
+            emails.put(UniqueIndex.normalize(user.getEmail()), userId);
+            logins.put(UniqueIndex.normalize(user.getLogin()), userId);
+            releaseKeys(usersById.put(userId, user), user);
+            restoreLastUserId(userId);
+            versions.stamp(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void restoreUserDeletion(long userId) {
+        while (true) {
+            int[] stripes = lockUserAndFriends(userId);
+            try {
+                SortedLongSet friends = friendsByUser.get(userId);
+                if (friends != null && !locks.holdsAll(stripes, friends.snapshot())) {
+                    continue;
+                }
+                releaseKeys(usersById.remove(userId), null);
+                if (friends != null) {
+                    removeFromFriends(userId);
+                }
+                versions.remove(userId);
+                return;
+            } finally {
+                locks.unlockAll(stripes);
+            }
+        }
+    }
+
+    public void restoreFriendship(long userId, long friendId) {
+        locks.lockBoth(userId, friendId);
+        try {
+            SortedLongSet userFriends = friendsByUser.get(userId);
+            SortedLongSet friendFriends = friendsByUser.get(friendId);
+            if (userFriends != null && friendFriends != null && userFriends.add(friendId)) {
+                friendFriends.add(userId);
+                friendshipCount.increment();
+                versions.stamp(userId);
+                versions.stamp(friendId);
+            }
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
+
+    public void restoreFriendshipEnd(long userId, long friendId) {
+        locks.lockBoth(userId, friendId);
+        try {
+            SortedLongSet userFriends = friendsByUser.get(userId);
+            SortedLongSet friendFriends = friendsByUser.get(friendId);
+            boolean removed = userFriends != null && userFriends.remove(friendId);
+            if (friendFriends != null) {
+                removed |= friendFriends.remove(userId);
+            }
+            if (removed) {
+                friendshipCount.decrement();
+                versions.restamp(userId);
+                versions.restamp(friendId);
+            }
+        } finally {
+            locks.unlockBoth(userId, friendId);
+        }
+    }
+
+    public void restoreLastUserId(long userId) {
+        counter.accumulateAndGet(userId, Math::max);
+    }
+
     private void makeFriends(Long userId, Long friendId) {
-        if (usersById.get(userId).getFriends().contains(friendId)) {
-            printErrorMessage(String.format(
-                    "The user ID=%s already friends with the user ID=%s", userId, friendId
-            ));
+        if (friendsByUser.get(userId).contains(friendId)) {
+            printErrorMessage("The user ID=" + userId + " already friends with the user ID=" + friendId);
         }
 
-        usersById.get(userId).getFriends().add(friendId);
-        usersById.get(friendId).getFriends().add(userId);
+        journal.append(JournalRecord.friendAdded(userId, friendId));
+        friendsByUser.get(userId).add(friendId);
+        friendsByUser.get(friendId).add(userId);
+        friendshipCount.increment();
+        versions.stamp(userId);
+        versions.stamp(friendId);
+
+        if (log.isDebugEnabled()) {
+            log.debug("The users ID={} and ID={} have become friends", userId, friendId);
+        }
+    }
+
+    /**
+     * Checks a friendship of a batch against the rows and the friendships accepted before it, and accepts it
+     * if it is new. The accepted friendships are keyed by their lower and higher user ID.
+     */
+    private BatchItemResult checkFriendshipInBatch(Friendship friendship, Map<List<Long>, Friendship> accepted) {
+        long userId = friendship.getUserId();
+        long friendId = friendship.getFriendId();
+        SortedLongSet userFriends = friendsByUser.get(userId);
+        if (userFriends == null || !friendsByUser.containsKey(friendId)) {
+            return BatchItemResult.notFound("User not found, ID=" + (userFriends == null ? userId : friendId));
+        }
+        List<Long> pair = List.of(Math.min(userId, friendId), Math.max(userId, friendId));
+        if (userFriends.contains(friendId) || accepted.putIfAbsent(pair, friendship) != null) {
+            return BatchItemResult.alreadyExists(
+                    "The user ID=" + userId + " already friends with the user ID=" + friendId
+            );
+        }
+        return BatchItemResult.added();
+    }
 
-        log.info("The user ID={} has become a friend of the user ID={}", friendId, userId);
-        log.info("The user ID={} has become a friend of the user ID={}", userId, friendId);
+    private void linkFriends(Friendship friendship) {
+        long userId = friendship.getUserId();
+        long friendId = friendship.getFriendId();
+        friendsByUser.get(userId).add(friendId);
+        friendsByUser.get(friendId).add(userId);
+        friendshipCount.increment();
+        versions.stamp(userId);
+        versions.stamp(friendId);
     }
 
     private void stopBeingFriends(Long userId, Long friendId) {
-        usersById.get(userId).getFriends().remove(friendId);
-        usersById.get(friendId).getFriends().remove(userId);
+        journal.append(JournalRecord.friendRemoved(userId, friendId));
+        if (friendsByUser.get(userId).remove(friendId)) {
+            friendshipCount.decrement();
+        }
+        friendsByUser.get(friendId).remove(userId);
+        versions.stamp(userId);
+        versions.stamp(friendId);
+
+        if (log.isDebugEnabled()) {
+            log.debug("The users ID={} and ID={} are no longer friends", userId, friendId);
+        }
+    }
+
+    /**
+     * Locks the user and the friends in its row as read without a lock; the caller checks the row again.
+     */
+    private int[] lockUserAndFriends(long userId) {
+        long[] friends = friendRow(userId);
+        long[] ids = friends == null ? new long[1] : Arrays.copyOf(friends, friends.length + 1);
+        ids[ids.length - 1] = userId;
+        return locks.lockAll(ids);
+    }
+
+    /**
+     * Drops the row of the user, whose friendships all end, and the user from the rows of its friends here.
+     */
+    private void removeFromFriends(long userId) {
+        SortedLongSet friends = friendsByUser.remove(userId);
+        userCount.decrement();
+        friendshipCount.add(-friends.size());
+        friends.forEach(friendId -> {
+            SortedLongSet friendRow = friendsByUser.get(friendId);
+            if (friendRow != null && friendRow.remove(userId)) {
+                versions.stamp(friendId);
+            }
+        });
+    }
 
-        log.info("The user ID={} has been removed from friends of the user ID={}", friendId, userId);
-        log.info("The user ID={} has been removed from friends of the user ID={}", userId, friendId);
+    private long[] friendRow(long userId) {
+        SortedLongSet friends = friendsByUser.get(userId);
+        return friends == null ? null : friends.snapshot();
+    }
+
+    /**
+     * Reserves the email and login of a new or updated user, which must not be held by other users. When the
+     * login is taken, an email reserved by this call is released again.
+     */
+    private void reserveKeys(User user, User current) {
+        reserveKeys(emails, logins, user, current);
+    }
+
+    private static void reserveKeys(UniqueIndex emails, UniqueIndex logins, User user, User current) {
+        long userId = user.getId();
+        String email = UniqueIndex.normalize(user.getEmail());
+        if (!emails.reserve(email, userId)) {
+            printConflictMessage("The email is already used by another user: " + user.getEmail());
+        }
+        String login = UniqueIndex.normalize(user.getLogin());
+        if (!logins.reserve(login, userId)) {
+            if (current == null || !email.equals(UniqueIndex.normalize(current.getEmail()))) {
+                emails.release(email, userId);
+            }
+            printConflictMessage("The login is already used by another user: " + user.getLogin());
+        }
+    }
+
+    /**
+     * Journals the creation or update of a user whose keys have been reserved; if the journal fails, the keys
+     * the user doesn't hold in its {@code current} version are released again.
+     */
+    private void appendOrRelease(JournalRecord record, User user, User current) {
+        try {
+            journal.append(record);
+        } catch (RuntimeException e) {
+            releaseKeys(user, current);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the keys of a replaced or deleted version of the user that its new version doesn't use.
+     */
+    private void releaseKeys(User old, User current) {
+        if (old == null) {
+            return;
+        }
+        String email = UniqueIndex.normalize(old.getEmail());
+        if (current == null || !email.equals(UniqueIndex.normalize(current.getEmail()))) {
+            emails.release(email, old.getId());
+        }
+        String login = UniqueIndex.normalize(old.getLogin());
+        if (current == null || !login.equals(UniqueIndex.normalize(current.getLogin()))) {
+            logins.release(login, old.getId());
+        }
+    }
+
+    private User findByKey(UniqueIndex index, String value, Function<User, String> attribute, String message) {
+        String key = UniqueIndex.normalize(value);
+        Long userId = index.get(key);
+        User user = userId == null ? null : usersById.get(userId);
+        // the key may still point to a user that is moving to or away from it
+        if (user == null || !key.equals(UniqueIndex.normalize(attribute.apply(user)))) {
+            printErrorMessage(message + value);
+        }
+        return user;
     }
 
     private void checkUserForExist(List<Long> users, String message) {
@@ -150,11 +762,17 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     private void printErrorMessage(String message) {
-        log.error(message);
+        log.debug(message);
         throw new NotFoundException(message);
     }
 
-    private Long getUserId() {
-        return ++counter;
+    private static void printConflictMessage(String message) {
+        log.debug(message);
+        throw new AlreadyExistsException(message);
+    }
+
+    private void printPreconditionMessage(String message) {
+        log.debug(message);
+        throw new PreconditionFailedException(message);
     }
 }
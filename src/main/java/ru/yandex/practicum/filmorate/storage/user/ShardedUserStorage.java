@@ -0,0 +1,423 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.HeapFootprint;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.SortedLongSet;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.shard.ConsistentHashRing;
+import ru.yandex.practicum.filmorate.storage.shard.ShardCluster;
+import ru.yandex.practicum.filmorate.storage.shard.ShardMerge;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Users partitioned by ID over the shards of a {@link ShardCluster}, an {@link InMemoryUserStorage} per shard.
+ * The partitions share the email and login indexes, so both stay unique over all shards.
+ * <p>
+ * A friendship of users on one shard is written by that shard. Between shards it is written as one row entry
+ * on each while the stripe locks of both users are held, taken in the order of the shard names, so concurrent
+ * writes of the pair and deletions of either user can't leave one side behind; it counts on the side of the
+ * lower user ID. Rows are read through the router, so friend lists, mutual friends and
+ * recommendations see friends on every shard. The shards don't journal.
+ */
+@Slf4j
+public class ShardedUserStorage implements UserStorage, HeapFootprint, ShardCluster.Listener {
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+
+    private final ShardCluster cluster;
+    private final FriendRecommender recommender;
+    private final Map<String, InMemoryUserStorage> shards = new ConcurrentHashMap<>();
+    private final UniqueIndex emails = new UniqueIndex();
+    private final UniqueIndex logins = new UniqueIndex();
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong versionClock = EntityVersions.newClock();
+
+    public ShardedUserStorage(ShardCluster cluster, FriendRecommender recommender) {
+        this.cluster = cluster;
+        this.recommender = recommender;
+        for (String shard : cluster.getShards()) {
+            shards.put(shard, newShard());
+        }
+        cluster.addListener(this);
+    }
+
+    @Override
+    public User create(User user) {
+        return cluster.read(() -> {
+            InMemoryUserStorage.assignId(user, emails, logins, counter);
+            return shardOf(user.getId()).insert(user);
+        });
+    }
+
+    @Override
+    public User update(User user) {
+        return cluster.read(() -> shardOf(user.getId()).update(user));
+    }
+
+    @Override
+    public User updateIfVersion(User user, long expectedVersion) {
+        return cluster.read(() -> shardOf(user.getId()).updateIfVersion(user, expectedVersion));
+    }
+
+    /**
+     * The shard of the user takes it out of the rows of the friends it holds; friends on other shards lose it
+     * here, once the user is gone and no friendship with it can be added. The shard of the user takes every
+     * friendship out of its count, so the other side must not count it again.
+     */
+    @Override
+    public User delete(User user) {
+        return cluster.read(() -> {
+            InMemoryUserStorage userShard = shardOf(user.getId());
+            long[] friends = userShard.deleteWithFriends(user);
+            for (long friendId : friends) {
+                InMemoryUserStorage friendShard = shardOf(friendId);
+                if (friendShard != userShard) {
+                    friendShard.unlinkFriend(friendId, user.getId(), false);
+                }
+            }
+            log.debug("The user ID={} has been deleted.", user.getId());
+            return user;
+        });
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return cluster.read(() -> ShardMerge.merge(
+                gather(InMemoryUserStorage::getAllUsers), BY_ID, Integer.MAX_VALUE
+        ));
+    }
+
+    @Override
+    public Collection<User> getUsersPage(long afterId, int limit) {
+        return cluster.read(() -> ShardMerge.merge(
+                gather(shard -> shard.getUsersPage(afterId, limit)), BY_ID, limit
+        ));
+    }
+
+    @Override
+    public List<UserSummary> getUserSummaries(long afterId, int limit) {
+        return cluster.read(() -> ShardMerge.merge(
+                gather(shard -> shard.getUserSummaries(afterId, limit)),
+                Comparator.comparingLong(UserSummary::getId), limit
+        ));
+    }
+
+    @Override
+    public User getUserById(long id) {
+        return cluster.read(() -> shardOf(id).getUserById(id));
+    }
+
+    @Override
+    public OptionalLong getUserVersion(long id) {
+        return cluster.read(() -> shardOf(id).getUserVersion(id));
+    }
+
+    @Override
+    public OptionalLong getFriendsVersion(long userId) {
+        return cluster.read(() -> {
+            long[] friends = friendsOf(userId, "It's not possible to get all user's friends. User not found, ID=");
+            long version = shardOf(userId).versionOf(userId);
+            for (long friendId : friends) {
+                version = Math.max(version, shardOf(friendId).versionOf(friendId));
+            }
+            return OptionalLong.of(version);
+        });
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return cluster.read(() -> shardOfKey(emails, email, "The user with this email was not found: ")
+                .getUserByEmail(email));
+    }
+
+    @Override
+    public User getUserByLogin(String login) {
+        return cluster.read(() -> shardOfKey(logins, login, "The user with this login was not found: ")
+                .getUserByLogin(login));
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        return cluster.read(() -> ids.stream()
+                .filter(id -> shardOf(id).findUser(id) != null)
+                .collect(Collectors.toSet()));
+    }
+
+    @Override
+    public User addToFriend(long userId, long friendId) {
+        return cluster.read(() -> {
+            InMemoryUserStorage userShard = shardOf(userId);
+            InMemoryUserStorage friendShard = shardOf(friendId);
+            if (userShard == friendShard) {
+                return userShard.addToFriend(userId, friendId);
+            }
+            return lockingBoth(userId, friendId, () -> {
+                checkUsersExist(List.of(userId, friendId), "Adding a friend is not possible. User not found, ID=");
+
+                if (!userShard.linkFriend(userId, friendId, userId < friendId)) {
+                    printErrorMessage("The user ID=" + userId + " already friends with the user ID=" + friendId);
+                }
+                friendShard.linkFriend(friendId, userId, friendId < userId);
+                if (log.isDebugEnabled()) {
+                    log.debug("The users ID={} and ID={} on different shards have become friends", userId, friendId);
+                }
+
+                return userShard.findUser(userId);
+            });
+        });
+    }
+
+    @Override
+    public User deleteFromFriends(long userId, long friendId) {
+        return cluster.read(() -> {
+            InMemoryUserStorage userShard = shardOf(userId);
+            InMemoryUserStorage friendShard = shardOf(friendId);
+            if (userShard == friendShard) {
+                return userShard.deleteFromFriends(userId, friendId);
+            }
+            return lockingBoth(userId, friendId, () -> {
+                checkUsersExist(List.of(userId, friendId), "Deleting a friend is not possible. User not found, ID=");
+
+                userShard.unlinkFriend(userId, friendId, userId < friendId);
+                friendShard.unlinkFriend(friendId, userId, friendId < userId);
+                if (log.isDebugEnabled()) {
+                    log.debug("The users ID={} and ID={} on different shards are no longer friends", userId, friendId);
+                }
+
+                return userShard.findUser(userId);
+            });
+        });
+    }
+
+    /**
+     * Friendships within a shard are applied by that shard as one batch, friendships between shards one by one.
+     */
+    @Override
+    public List<BatchItemResult> addFriends(List<Friendship> friendships) {
+        return cluster.read(() -> {
+            BatchItemResult[] results = new BatchItemResult[friendships.size()];
+            Map<InMemoryUserStorage, List<Integer>> itemsByShard = new HashMap<>();
+            for (int i = 0; i < friendships.size(); i++) {
+                Friendship friendship = friendships.get(i);
+                InMemoryUserStorage userShard = shardOf(friendship.getUserId());
+                InMemoryUserStorage friendShard = shardOf(friendship.getFriendId());
+                if (userShard == friendShard) {
+                    itemsByShard.computeIfAbsent(userShard, shard -> new ArrayList<>()).add(i);
+                } else {
+                    results[i] = linkInBatch(friendship, userShard, friendShard);
+                }
+            }
+
+            itemsByShard.forEach((shard, items) -> {
+                List<BatchItemResult> shardResults = shard.addFriends(
+                        items.stream().map(friendships::get).collect(Collectors.toList())
+                );
+                for (int i = 0; i < items.size(); i++) {
+                    results[items.get(i)] = shardResults.get(i);
+                }
+            });
+            return Arrays.asList(results);
+        });
+    }
+
+    @Override
+    public Collection<User> getAllUserFriends(long userId) {
+        return cluster.read(() -> findUsers(
+                friendsOf(userId, "It's not possible to get all user's friends. User not found, ID=")
+        ));
+    }
+
+    @Override
+    public List<UserSummary> getFriendSummaries(long userId) {
+        return getAllUserFriends(userId).stream().map(UserSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<User> getMutualFriends(long firstUserId, long secondUserId) {
+        String message = "It's not possible to get mutual friends. User not found, ID=";
+        return cluster.read(() -> findUsers(SortedLongSet.intersect(
+                friendsOf(firstUserId, message), friendsOf(secondUserId, message)
+        )));
+    }
+
+    @Override
+    public int getMutualFriendsCount(long firstUserId, long secondUserId) {
+        String message = "It's not possible to count mutual friends. User not found, ID=";
+        return cluster.read(() -> SortedLongSet.intersectionSize(
+                friendsOf(firstUserId, message), friendsOf(secondUserId, message)
+        ));
+    }
+
+    @Override
+    public List<FriendRecommendation> getFriendRecommendations(long userId, int limit) {
+        return cluster.read(() -> {
+            long[] friends = friendsOf(userId, "It's not possible to recommend friends. User not found, ID=");
+            return recommender.recommend(userId, friends, id -> shardOf(id).friendsOf(id), limit).stream()
+                    .map(candidate -> new FriendRecommendation(
+                            shardOf(candidate.getUserId()).findUser(candidate.getUserId()),
+                            candidate.getMutualFriends()
+                    ))
+                    .filter(recommendation -> recommendation.getUser() != null)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public long getUserCount() {
+        return shards.values().stream().mapToLong(InMemoryUserStorage::getUserCount).sum();
+    }
+
+    @Override
+    public long getFriendshipCount() {
+        return shards.values().stream().mapToLong(InMemoryUserStorage::getFriendshipCount).sum();
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        return shards.values().stream().mapToLong(InMemoryUserStorage::estimateHeapBytes).sum();
+    }
+
+    public Map<String, Long> getUserCountsByShard() {
+        return shards.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getUserCount(),
+                        (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * Moves the users the new ring routes to the new shard with their rows of friends. The whole row is taken
+     * out of the friendship count of the old shard and put into the count of the new one.
+     */
+    @Override
+    public void shardAdded(String shard, ConsistentHashRing newRing) {
+        InMemoryUserStorage target = newShard();
+        long moved = 0;
+        for (InMemoryUserStorage source : shards.values()) {
+            for (User user : new ArrayList<>(source.getAllUsers())) {
+                if (shard.equals(newRing.shardOf(user.getId()))) {
+                    move(user, source, target);
+                    moved++;
+                }
+            }
+        }
+        shards.put(shard, target);
+        log.info("{} users have been moved to the shard {}", moved, shard);
+    }
+
+    private static void move(User user, InMemoryUserStorage source, InMemoryUserStorage target) {
+        long userId = user.getId();
+        long[] friends = source.friendsOf(userId);
+        // releases the shared email and login keys, which the target takes again
+        source.evict(userId);
+        target.restoreUser(user);
+        for (long friendId : friends) {
+            target.linkFriend(userId, friendId, true);
+        }
+    }
+
+    private BatchItemResult linkInBatch(Friendship friendship, InMemoryUserStorage userShard,
+                                        InMemoryUserStorage friendShard) {
+        long userId = friendship.getUserId();
+        long friendId = friendship.getFriendId();
+        return lockingBoth(userId, friendId, () -> {
+            if (userShard.findUser(userId) == null || friendShard.findUser(friendId) == null) {
+                return BatchItemResult.notFound(
+                        "User not found, ID=" + (userShard.findUser(userId) == null ? userId : friendId)
+                );
+            }
+            if (!userShard.linkFriend(userId, friendId, userId < friendId)) {
+                return BatchItemResult.alreadyExists(
+                        "The user ID=" + userId + " already friends with the user ID=" + friendId
+                );
+            }
+            friendShard.linkFriend(friendId, userId, friendId < userId);
+            return BatchItemResult.added();
+        });
+    }
+
+    /**
+     * Runs the action holding the stripe locks of two users on different shards. Each shard has its own
+     * stripes, so the locks are taken in the order of the shard names: every cross-shard write locks the same
+     * two shards in the same order, and writes within a shard hold no lock of another one.
+     */
+    private <T> T lockingBoth(long userId, long friendId, Supplier<T> action) {
+        String userShard = cluster.getRing().shardOf(userId);
+        String friendShard = cluster.getRing().shardOf(friendId);
+        Lock userLock = shards.get(userShard).lockOf(userId);
+        Lock friendLock = shards.get(friendShard).lockOf(friendId);
+        Lock first = userShard.compareTo(friendShard) < 0 ? userLock : friendLock;
+        Lock second = first == userLock ? friendLock : userLock;
+        first.lock();
+        try {
+            second.lock();
+            try {
+                return action.get();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private InMemoryUserStorage newShard() {
+        return new InMemoryUserStorage(MutationJournal.NONE, recommender, emails, logins, versionClock);
+    }
+
+    private InMemoryUserStorage shardOf(long userId) {
+        return shards.get(cluster.getRing().shardOf(userId));
+    }
+
+    private InMemoryUserStorage shardOfKey(UniqueIndex index, String value, String message) {
+        Long userId = index.get(UniqueIndex.normalize(value));
+        if (userId == null) {
+            printErrorMessage(message + value);
+        }
+        return shardOf(userId);
+    }
+
+    private <T> List<Collection<T>> gather(Function<InMemoryUserStorage, Collection<T>> query) {
+        return shards.values().stream().map(query).collect(Collectors.toList());
+    }
+
+    private long[] friendsOf(long userId, String message) {
+        long[] friends = shardOf(userId).friendsOf(userId);
+        if (friends == null) {
+            printErrorMessage(message + userId);
+        }
+        return friends;
+    }
+
+    private List<User> findUsers(long[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(id -> shardOf(id).findUser(id))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private void checkUsersExist(List<Long> ids, String message) {
+        for (long id : ids) {
+            if (shardOf(id).findUser(id) == null) {
+                printErrorMessage(message + id);
+            }
+        }
+    }
+
+    private void printErrorMessage(String message) {
+        log.debug(message);
+        throw new NotFoundException(message);
+    }
+}
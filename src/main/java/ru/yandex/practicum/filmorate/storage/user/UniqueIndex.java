@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash index of a unique user attribute, keyed by its normalized value. A key is reserved for a user with one
+ * atomic {@code putIfAbsent}, so two users racing for the same value can't both get it, without a global lock.
+ * <p>
+ * A key is reserved before the user is stored and released after the user has moved away from it, so for a
+ * moment a key may point to a user that doesn't have that value (yet or any more). Lookups check the value.
+ */
+class UniqueIndex {
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns true when the key is now held by the user, false when another user holds it.
+     */
+    boolean reserve(String key, long userId) {
+        Long holder = userIds.putIfAbsent(key, userId);
+        return holder == null || holder == userId;
+    }
+
+    /**
+     * Moves a key from its provisional holder to the user's ID.
+     */
+    void transfer(String key, long holder, long userId) {
+        userIds.replace(key, holder, userId);
+    }
+
+    void release(String key, long userId) {
+        userIds.remove(key, userId);
+    }
+
+    /**
+     * Journal replay trusts the journal: the key moves to the user.
+     */
+    void put(String key, long userId) {
+        userIds.put(key, userId);
+    }
+
+    Long get(String key) {
+        return userIds.get(key);
+    }
+}
@@ -0,0 +1,454 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.AlreadyExistsException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
+import ru.yandex.practicum.filmorate.storage.graph.LongSetView;
+import ru.yandex.practicum.filmorate.storage.graph.SortedLongSet;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Component
+@Profile("db")
+@Slf4j
+public class UserDbStorage implements UserStorage {
+    private static final String SELECT_USERS =
+            "SELECT u.id, u.email, u.login, u.name, u.birthday FROM users u ";
+    // counted on the friendships primary key (user_id, friend_id), no friend row is read
+    private static final String SELECT_USER_SUMMARIES = "SELECT u.id, u.email, u.login, u.name, u.birthday, "
+            + "(SELECT COUNT(*) FROM friendships c WHERE c.user_id = u.id) AS friend_count FROM users u ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SimpleJdbcInsert userInsert;
+
+    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.userInsert = new SimpleJdbcInsert(jdbcTemplate)
+                .withTableName("users")
+                .usingColumns("email", "login", "name", "birthday")
+                .usingGeneratedKeyColumns("id");
+    }
+
+    @Override
+    public User create(User user) {
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("email", user.getEmail());
+        columns.put("login", user.getLogin());
+        columns.put("name", user.getName());
+        columns.put("birthday", user.getBirthday());
+        try {
+            user.setId(userInsert.executeAndReturnKey(columns).longValue());
+        } catch (DuplicateKeyException e) {
+            rejectDuplicate(user);
+        }
+        user.setFriends(new LongSetView(new SortedLongSet()));
+
+        log.debug("A new user has been created: {}", user);
+
+        return user;
+    }
+
+    @Override
+    public User update(User user) {
+        int updated = 0;
+        try {
+            updated = jdbcTemplate.update(
+                    "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?",
+                    user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(), user.getId()
+            );
+        } catch (DuplicateKeyException e) {
+            rejectDuplicate(user);
+        }
+        if (updated == 0) {
+            printErrorMessage("Updating is not possible. The user was not found: ID=" + user.getId());
+        }
+
+        user.setFriends(new LongSetView(SortedLongSet.ofSorted(findFriendIds(user.getId()))));
+        log.debug("The user has been updated: {}", user);
+
+        return user;
+    }
+
+    /**
+     * The tables keep no versions, so there is no version an update could be checked against.
+     */
+    @Override
+    public User updateIfVersion(User user, long expectedVersion) {
+        log.debug("Conditional updates are not supported, ID={}", user.getId());
+        throw new PreconditionFailedException("Conditional updates are not supported by this storage");
+    }
+
+    @Override
+    public User delete(User user) {
+        int deleted = jdbcTemplate.update("DELETE FROM users WHERE id = ?", user.getId());
+        if (deleted == 0) {
+            printErrorMessage("Invalid incoming user's ID during request to get delete user by ID=" + user.getId());
+        }
+        log.debug("The user ID={} has been deleted.", user.getId());
+
+        return user;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return withFriends(jdbcTemplate.query(SELECT_USERS + "ORDER BY u.id", this::mapUser));
+    }
+
+    @Override
+    public Collection<User> getUsersPage(long afterId, int limit) {
+        return withFriends(jdbcTemplate.query(
+                SELECT_USERS + "WHERE u.id > ? ORDER BY u.id LIMIT ?",
+                this::mapUser, afterId, limit
+        ));
+    }
+
+    @Override
+    public List<UserSummary> getUserSummaries(long afterId, int limit) {
+        return jdbcTemplate.query(
+                SELECT_USER_SUMMARIES + "WHERE u.id > ? ORDER BY u.id LIMIT ?",
+                this::mapUserSummary, afterId, limit
+        );
+    }
+
+    @Override
+    public User getUserById(long id) {
+        List<User> users = jdbcTemplate.query(SELECT_USERS + "WHERE u.id = ?", this::mapUser, id);
+        if (users.isEmpty()) {
+            printErrorMessage("Getting an existing user is not possible. User not found, ID=" + id);
+        }
+        return withFriends(users).get(0);
+    }
+
+    @Override
+    public OptionalLong getUserVersion(long id) {
+        return OptionalLong.empty();
+    }
+
+    @Override
+    public OptionalLong getFriendsVersion(long userId) {
+        return OptionalLong.empty();
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return findByKey("email_key", email, "The user with this email was not found: ");
+    }
+
+    @Override
+    public User getUserByLogin(String login) {
+        return findByKey("login_key", login, "The user with this login was not found: ");
+    }
+
+    @Override
+    public Set<Long> getExistingUserIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedJdbcTemplate.queryForList(
+                "SELECT id FROM users WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids), Long.class
+        ));
+    }
+
+    @Override
+    @Transactional
+    public User addToFriend(long userId, long friendId) {
+        checkUserForExist(List.of(userId, friendId), "Adding a friend is not possible. User not found, ID=");
+
+        try {
+            // both directions of the friendship go to the database in one batch
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)",
+                    List.of(new Object[]{userId, friendId}, new Object[]{friendId, userId})
+            );
+        } catch (DuplicateKeyException e) {
+            printErrorMessage("The user ID=" + userId + " already friends with the user ID=" + friendId);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("The users ID={} and ID={} have become friends", userId, friendId);
+        }
+
+        return getUserById(userId);
+    }
+
+    @Override
+    @Transactional
+    public User deleteFromFriends(long userId, long friendId) {
+        checkUserForExist(List.of(userId, friendId), "Deleting a friend is not possible. User not found, ID=");
+
+        jdbcTemplate.batchUpdate(
+                "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?",
+                List.of(new Object[]{userId, friendId}, new Object[]{friendId, userId})
+        );
+        if (log.isDebugEnabled()) {
+            log.debug("The users ID={} and ID={} are no longer friends", userId, friendId);
+        }
+
+        return getUserById(userId);
+    }
+
+    /**
+     * Checks users and existing friendships with one query each, then writes both directions of every new
+     * friendship as one JDBC batch.
+     */
+    @Override
+    @Transactional
+    public List<BatchItemResult> addFriends(List<Friendship> friendships) {
+        if (friendships.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> userIds = new HashSet<>();
+        friendships.forEach(friendship -> {
+            userIds.add(friendship.getUserId());
+            userIds.add(friendship.getFriendId());
+        });
+        Set<Long> existingUsers = getExistingUserIds(userIds);
+        Map<Long, Set<Long>> friendsByUser = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids) AND friend_id IN (:ids)",
+                new MapSqlParameterSource("ids", userIds),
+                rs -> {
+                    friendsByUser.computeIfAbsent(rs.getLong("user_id"), id -> new HashSet<>())
+                            .add(rs.getLong("friend_id"));
+                }
+        );
+
+        List<BatchItemResult> results = new ArrayList<>(friendships.size());
+        List<Object[]> inserts = new ArrayList<>();
+        for (Friendship friendship : friendships) {
+            long userId = friendship.getUserId();
+            long friendId = friendship.getFriendId();
+            if (!existingUsers.contains(userId) || !existingUsers.contains(friendId)) {
+                results.add(BatchItemResult.notFound(
+                        "User not found, ID=" + (existingUsers.contains(userId) ? friendId : userId)
+                ));
+            } else if (!friendsByUser.computeIfAbsent(userId, id -> new HashSet<>()).add(friendId)) {
+                results.add(BatchItemResult.alreadyExists(
+                        "The user ID=" + userId + " already friends with the user ID=" + friendId
+                ));
+            } else {
+                friendsByUser.computeIfAbsent(friendId, id -> new HashSet<>()).add(userId);
+                inserts.add(new Object[]{userId, friendId});
+                if (userId != friendId) {
+                    inserts.add(new Object[]{friendId, userId});
+                }
+                results.add(BatchItemResult.added());
+            }
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)", inserts);
+        log.debug("A batch of {} friendships has been applied.", friendships.size());
+
+        return results;
+    }
+
+    @Override
+    public Collection<User> getAllUserFriends(long userId) {
+        checkUserForExist(List.of(userId), "It's not possible to get all user's friends. User not found, ID=");
+
+        return withFriends(jdbcTemplate.query(
+                SELECT_USERS + "JOIN friendships f ON u.id = f.friend_id WHERE f.user_id = ? ORDER BY u.id",
+                this::mapUser, userId
+        ));
+    }
+
+    @Override
+    public List<UserSummary> getFriendSummaries(long userId) {
+        checkUserForExist(List.of(userId), "It's not possible to get all user's friends. User not found, ID=");
+
+        return jdbcTemplate.query(
+                SELECT_USER_SUMMARIES + "JOIN friendships f ON u.id = f.friend_id WHERE f.user_id = ? ORDER BY u.id",
+                this::mapUserSummary, userId
+        );
+    }
+
+    @Override
+    public Collection<User> getMutualFriends(long firstUserId, long secondUserId) {
+        checkUserForExist(
+                List.of(firstUserId, secondUserId),
+                "It's not possible to get mutual friends. User not found, ID="
+        );
+
+        return withFriends(jdbcTemplate.query(
+                SELECT_USERS
+                        + "JOIN friendships f1 ON u.id = f1.friend_id AND f1.user_id = ? "
+                        + "JOIN friendships f2 ON u.id = f2.friend_id AND f2.user_id = ? "
+                        + "ORDER BY u.id",
+                this::mapUser, firstUserId, secondUserId
+        ));
+    }
+
+    @Override
+    public int getMutualFriendsCount(long firstUserId, long secondUserId) {
+        checkUserForExist(
+                List.of(firstUserId, secondUserId),
+                "It's not possible to count mutual friends. User not found, ID="
+        );
+
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM friendships f1 "
+                        + "JOIN friendships f2 ON f1.friend_id = f2.friend_id AND f2.user_id = ? "
+                        + "WHERE f1.user_id = ?",
+                Integer.class, secondUserId, firstUserId
+        );
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public List<FriendRecommendation> getFriendRecommendations(long userId, int limit) {
+        checkUserForExist(List.of(userId), "It's not possible to recommend friends. User not found, ID=");
+
+        Map<Long, Integer> mutualFriends = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT f2.friend_id, COUNT(*) AS mutual FROM friendships f1 "
+                        + "JOIN friendships f2 ON f2.user_id = f1.friend_id "
+                        + "WHERE f1.user_id = ? AND f2.friend_id <> ? "
+                        + "AND f2.friend_id NOT IN (SELECT friend_id FROM friendships WHERE user_id = ?) "
+                        + "GROUP BY f2.friend_id ORDER BY mutual DESC, f2.friend_id LIMIT ?",
+                rs -> {
+                    mutualFriends.put(rs.getLong("friend_id"), rs.getInt("mutual"));
+                },
+                userId, userId, userId, limit
+        );
+        if (mutualFriends.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, User> users = withFriends(namedJdbcTemplate.query(
+                SELECT_USERS + "WHERE u.id IN (:ids)",
+                new MapSqlParameterSource("ids", mutualFriends.keySet()),
+                this::mapUser
+        )).stream().collect(Collectors.toMap(User::getId, user -> user));
+        return mutualFriends.entrySet().stream()
+                .filter(candidate -> users.containsKey(candidate.getKey()))
+                .map(candidate -> new FriendRecommendation(users.get(candidate.getKey()), candidate.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long getUserCount() {
+        return count("SELECT COUNT(*) FROM users");
+    }
+
+    @Override
+    public long getFriendshipCount() {
+        // every friendship is stored as two directed rows
+        return count("SELECT COUNT(*) FROM friendships") / 2;
+    }
+
+    private long count(String sql, Object... args) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return count == null ? 0 : count;
+    }
+
+    private User mapUser(ResultSet rs, int rowNum) throws SQLException {
+        return User.builder()
+                .id(rs.getLong("id"))
+                .email(rs.getString("email"))
+                .login(rs.getString("login"))
+                .name(rs.getString("name"))
+                .birthday(rs.getDate("birthday").toLocalDate())
+                .build();
+    }
+
+    private UserSummary mapUserSummary(ResultSet rs, int rowNum) throws SQLException {
+        return new UserSummary(
+                rs.getLong("id"),
+                rs.getString("email"),
+                rs.getString("login"),
+                rs.getString("name"),
+                rs.getDate("birthday").toLocalDate(),
+                rs.getInt("friend_count")
+        );
+    }
+
+    private long[] findFriendIds(long userId) {
+        return jdbcTemplate.queryForList(
+                "SELECT friend_id FROM friendships WHERE user_id = ? ORDER BY friend_id", Long.class, userId
+        ).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Loads the friends of all given users with one query instead of one query per user.
+     */
+    private List<User> withFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Long, List<Long>> friendsByUser = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT user_id, friend_id FROM friendships WHERE user_id IN (:ids) ORDER BY user_id, friend_id",
+                new MapSqlParameterSource("ids", users.stream().map(User::getId).collect(Collectors.toList())),
+                rs -> {
+                    friendsByUser.computeIfAbsent(rs.getLong("user_id"), id -> new ArrayList<>())
+                            .add(rs.getLong("friend_id"));
+                }
+        );
+        for (User user : users) {
+            long[] friends = friendsByUser.getOrDefault(user.getId(), List.of()).stream()
+                    .mapToLong(Long::longValue)
+                    .toArray();
+            user.setFriends(new LongSetView(SortedLongSet.ofSorted(friends)));
+        }
+        return users;
+    }
+
+    private void checkUserForExist(List<Long> users, String message) {
+        for (Long id : users) {
+            Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id);
+            if (count == null || count == 0) {
+                printErrorMessage(message + id);
+            }
+        }
+    }
+
+    // served by the unique users_email_idx and users_login_idx
+    private User findByKey(String column, String value, String message) {
+        List<User> users = jdbcTemplate.query(
+                SELECT_USERS + "WHERE u." + column + " = ?", this::mapUser, UniqueIndex.normalize(value)
+        );
+        if (users.isEmpty()) {
+            printErrorMessage(message + value);
+        }
+        return withFriends(users).get(0);
+    }
+
+    /**
+     * Translates a unique index violation into the attribute that is taken.
+     */
+    private void rejectDuplicate(User user) {
+        long userId = user.getId() == null ? 0 : user.getId();
+        boolean emailTaken = count(
+                "SELECT COUNT(*) FROM users WHERE email_key = ? AND id <> ?",
+                UniqueIndex.normalize(user.getEmail()), userId
+        ) > 0;
+        String message = emailTaken
+                ? "The email is already used by another user: " + user.getEmail()
+                : "The login is already used by another user: " + user.getLogin();
+        log.error(message);
+        throw new AlreadyExistsException(message);
+    }
+
+    private void printErrorMessage(String message) {
+        log.debug(message);
+        throw new NotFoundException(message);
+    }
+}
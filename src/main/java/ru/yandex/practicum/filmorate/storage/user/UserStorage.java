@@ -1,25 +1,79 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendRecommendation;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
 
 public interface UserStorage {
     User create(User user);
 
     User update(User user);
 
+    /**
+     * Updates the user only if its version is still {@code expectedVersion}.
+     *
+     * @throws ru.yandex.practicum.filmorate.exception.PreconditionFailedException if the user has changed since
+     */
+    User updateIfVersion(User user, long expectedVersion);
+
     User delete(User user);
 
     Collection<User> getAllUsers();
 
+    Collection<User> getUsersPage(long afterId, int limit);
+
+    /**
+     * The users of {@link #getUsersPage} with friend counts, read without loading the friends.
+     */
+    List<UserSummary> getUserSummaries(long afterId, int limit);
+
     User getUserById(long id);
 
+    /**
+     * A version that changes with every change of the user, its friends included, or empty if the storage
+     * doesn't version users.
+     */
+    OptionalLong getUserVersion(long id);
+
+    /**
+     * A version that changes with every change of the user's friend list and of the friends in it, or empty if
+     * the storage doesn't version users.
+     */
+    OptionalLong getFriendsVersion(long userId);
+
+    /**
+     * Emails and logins are unique per user, compared trimmed and case-insensitively.
+     */
+    User getUserByEmail(String email);
+
+    User getUserByLogin(String login);
+
+    Set<Long> getExistingUserIds(Collection<Long> ids);
+
     User addToFriend(long userId, long friendId);
 
     User deleteFromFriends(long userId, long friendId);
 
+    List<BatchItemResult> addFriends(List<Friendship> friendships);
+
     Collection<User> getAllUserFriends(long userId);
 
+    List<UserSummary> getFriendSummaries(long userId);
+
     Collection<User> getMutualFriends(long firstUserId, long secondUserId);
+
+    int getMutualFriendsCount(long firstUserId, long secondUserId);
+
+    List<FriendRecommendation> getFriendRecommendations(long userId, int limit);
+
+    long getUserCount();
+
+    long getFriendshipCount();
 }
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.web;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile}) request and response bodies
+ * next to JSON, chosen by {@code Content-Type} and {@code Accept}. Both are binary encodings of the JSON data
+ * model, so they share the models, the custom serializers and Boot's {@code spring.jackson.*} settings: dates
+ * stay ISO strings, and ID sets are written straight from their {@code long[]} as in JSON.
+ * <p>
+ * Spring MVC would register both formats on its own once they are on the classpath, but with mappers that
+ * ignore Boot's Jackson settings; these beans replace them.
+ */
+@Configuration
+public class BinaryFormatsConfiguration {
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
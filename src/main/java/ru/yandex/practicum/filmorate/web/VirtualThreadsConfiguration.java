@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in mode that runs every request on its own virtual thread instead of Tomcat's bounded worker pool, so a
+ * request waiting for a slow client or a journal fsync parks cheaply instead of holding one of the pool's
+ * platform threads. Async MVC work (the NDJSON streams) runs on virtual threads as well.
+ * <p>
+ * Needs a JDK with virtual threads, see the {@code loom} build profile. The executor is looked up reflectively,
+ * so the default build still compiles for Java 11 and fails fast at startup if the mode is enabled on an
+ * older JDK.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadsConfiguration {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+        log.info("Requests are executed on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(executor);
+    }
+
+    /**
+     * Runs once Tomcat has stopped taking requests: the requests and streams still running get until the
+     * timeout to finish, then they are interrupted.
+     */
+    @PreDestroy
+    public void shutdownExecutor() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Virtual threads still running after {} s are interrupted", SHUTDOWN_TIMEOUT_SECONDS);
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(
+                    "filmorate.virtual-threads.enabled needs Java 21 or newer, running on " + Runtime.version(), e
+            );
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads could not be created", e);
+        }
+    }
+}
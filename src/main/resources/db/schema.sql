@@ -0,0 +1,47 @@
+CREATE TABLE IF NOT EXISTS films
+(
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         VARCHAR(255) NOT NULL,
+    description  VARCHAR(200) NOT NULL,
+    release_date DATE         NOT NULL,
+    duration     INTEGER      NOT NULL,
+    like_count   INTEGER      NOT NULL DEFAULT 0,
+    name_key     VARCHAR(255) GENERATED ALWAYS AS (LOWER(name))
+);
+
+CREATE INDEX IF NOT EXISTS films_popularity_idx ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_release_date_idx ON films (release_date, id);
+CREATE INDEX IF NOT EXISTS films_duration_idx ON films (duration, id);
+CREATE INDEX IF NOT EXISTS films_name_idx ON films (name_key, id);
+
+CREATE TABLE IF NOT EXISTS users
+(
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email    VARCHAR(255) NOT NULL,
+    login    VARCHAR(255) NOT NULL,
+    name     VARCHAR(255),
+    birthday DATE         NOT NULL,
+    email_key VARCHAR(255) GENERATED ALWAYS AS (LOWER(TRIM(email))),
+    login_key VARCHAR(255) GENERATED ALWAYS AS (LOWER(TRIM(login)))
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS users_email_idx ON users (email_key);
+CREATE UNIQUE INDEX IF NOT EXISTS users_login_idx ON users (login_key);
+
+CREATE TABLE IF NOT EXISTS likes
+(
+    film_id    BIGINT    NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    user_id    BIGINT    NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id);
+CREATE INDEX IF NOT EXISTS likes_created_idx ON likes (created_at);
+
+CREATE TABLE IF NOT EXISTS friendships
+(
+    user_id   BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    friend_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, friend_id)
+);
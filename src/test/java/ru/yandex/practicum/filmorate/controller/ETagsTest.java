@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.yandex.practicum.filmorate.exception.PreconditionFailedException;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ETagsTest {
+
+    @Test
+    void matchingTagIsNotModified() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/12");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"f12.42\"");
+
+        assertTrue(ETags.notModified(new ServletWebRequest(request, response), "f12", OptionalLong.of(42)));
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void changedVersionIsServedWithTheNewTag() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/12");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"f12.42\"");
+
+        assertFalse(ETags.notModified(new ServletWebRequest(request, response), "f12", OptionalLong.of(43)));
+        assertEquals("\"f12.43\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void binaryRepresentationsHaveTheirOwnTag() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/popular");
+        request.addHeader(HttpHeaders.ACCEPT, "application/cbor");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"top10.abc\"");
+
+        assertFalse(ETags.notModified(new ServletWebRequest(request, response), "top10", "abc"));
+        assertEquals("\"top10.abc.cbor\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void everyFormatAndFieldSetHasItsOwnTag() {
+        assertEquals("\"top10.abc\"", tagFor(null, null));
+        assertEquals("\"top10.abc.smile\"", tagFor("application/x-jackson-smile", null));
+        assertEquals("\"top10.abc.fields=id+name\"", tagFor("application/json", "name, id,name"));
+        assertEquals("\"top10.abc.cbor.fields=id\"", tagFor("application/cbor", "id"));
+    }
+
+    @Test
+    void responsesVaryByAcceptEvenWhenNotModified() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/3/friends");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"fr3.42.fields=id+name\"");
+
+        assertTrue(ETags.notModified(new ServletWebRequest(request, response), "fr3", OptionalLong.of(42), "name,id"));
+        assertEquals(304, response.getStatus());
+        assertEquals(List.of(HttpHeaders.ACCEPT), response.getHeaders(HttpHeaders.VARY));
+
+        MockHttpServletResponse untagged = new MockHttpServletResponse();
+        ETags.notModified(new ServletWebRequest(request, untagged), "f12", OptionalLong.empty());
+        assertEquals(List.of(HttpHeaders.ACCEPT), untagged.getHeaders(HttpHeaders.VARY));
+    }
+
+    @Test
+    void noVersionSendsNoTag() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/12");
+
+        assertFalse(ETags.notModified(new ServletWebRequest(request, response), "f12", OptionalLong.empty()));
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void expectedVersionIsReadFromTheTagOfTheResource() {
+        assertEquals(OptionalLong.empty(), ETags.expectedVersion(null, "f12"));
+        assertEquals(OptionalLong.empty(), ETags.expectedVersion("*", "f12"));
+        assertEquals(OptionalLong.of(42), ETags.expectedVersion("\"f12.42\"", "f12"));
+        assertEquals(OptionalLong.of(42), ETags.expectedVersion("\"u3.7\", \"f12.42.cbor\"", "f12"));
+    }
+
+    @Test
+    void tagOfAnotherResourceFailsThePrecondition() {
+        assertThrows(PreconditionFailedException.class, () -> ETags.expectedVersion("\"f13.42\"", "f12"));
+        assertThrows(PreconditionFailedException.class, () -> ETags.expectedVersion("\"f12.abc\"", "f12"));
+    }
+
+    private static String tagFor(String accept, String fields) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/popular");
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        ETags.notModified(new ServletWebRequest(request, response), "top10", "abc", fields);
+        return response.getHeader(HttpHeaders.ETAG);
+    }
+}
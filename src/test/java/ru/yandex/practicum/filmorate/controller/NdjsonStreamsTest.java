@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonStreamsTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ParameterNamesModule())
+            .build();
+
+    @Test
+    void everyEntityIsOneLineAndTheStreamStaysOpen() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            films.add(Film.builder()
+                    .id(id)
+                    .name("Film " + id)
+                    .description("Line one\nline two")
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .build());
+        }
+        ClosingAwareStream out = new ClosingAwareStream();
+
+        NdjsonStreams.write(objectMapper, films).writeTo(out);
+
+        assertFalse(out.closed);
+        String body = out.toString(StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            Film film = objectMapper.readValue(lines[i], Film.class);
+            assertEquals(i + 1, film.getId());
+            assertEquals("Line one\nline two", film.getDescription());
+        }
+    }
+
+    @Test
+    void noEntitiesWriteNothing() throws Exception {
+        ClosingAwareStream out = new ClosingAwareStream();
+
+        NdjsonStreams.write(objectMapper, List.of()).writeTo(out);
+
+        assertEquals(0, out.size());
+    }
+
+    private static final class ClosingAwareStream extends ByteArrayOutputStream {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
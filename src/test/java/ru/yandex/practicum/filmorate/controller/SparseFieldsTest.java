@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.UserSummary;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseFieldsTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void onlyTheRequestedFieldsAreWritten() throws Exception {
+        List<FilmSummary> films = List.of(
+                new FilmSummary(1, "Film", "About film", LocalDate.of(2000, 1, 1), 90, 7)
+        );
+
+        JsonNode film = write(SparseFields.select(films, " id , likeCount,", FilmSummary.FIELDS)).get(0);
+
+        assertEquals(Set.of("id", "likeCount"), fieldNames(film));
+        assertEquals(1, film.get("id").asLong());
+        assertEquals(7, film.get("likeCount").asInt());
+    }
+
+    @Test
+    void userSummariesShareTheFilter() throws Exception {
+        List<UserSummary> users = List.of(
+                new UserSummary(3, "user@mail.ru", "user", "User", LocalDate.of(1990, 1, 1), 4)
+        );
+
+        JsonNode user = write(SparseFields.select(users, "login,friendCount", UserSummary.FIELDS)).get(0);
+
+        assertEquals(Set.of("login", "friendCount"), fieldNames(user));
+    }
+
+    @Test
+    void unknownOrNoFieldsAreRejected() {
+        List<FilmSummary> films = List.of();
+
+        assertThrows(ValidationException.class, () -> SparseFields.select(films, "id,likes", FilmSummary.FIELDS));
+        assertThrows(ValidationException.class, () -> SparseFields.select(films, "friendCount", FilmSummary.FIELDS));
+        assertThrows(ValidationException.class, () -> SparseFields.select(films, " , ", FilmSummary.FIELDS));
+        assertThrows(ValidationException.class, () -> SparseFields.select(films, "", FilmSummary.FIELDS));
+    }
+
+    private JsonNode write(MappingJacksonValue value) throws Exception {
+        return objectMapper.readTree(objectMapper.writer(value.getFilters()).writeValueAsBytes(value.getValue()));
+    }
+
+    private static Set<String> fieldNames(JsonNode node) {
+        Set<String> names = new TreeSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.DomainEventListener;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmPage;
+import ru.yandex.practicum.filmorate.model.FilmSearch;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularityRanking;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmServiceTest {
+    private final DomainEventBus eventBus = new DomainEventBus(
+            new StaticListableBeanFactory().getBeanProvider(DomainEventListener.class), 1, 1024, 256
+    );
+    private final FilmStorage storage = new InMemoryFilmStorage(
+            MutationJournal.NONE, new FilmRecommender(5000, 50), PopularityRanking.exact()
+    );
+    private final FilmService service = new FilmService(
+            storage,
+            new UserService(new InMemoryUserStorage(MutationJournal.NONE, new FriendRecommender(5000, 1_000_000)),
+                    eventBus),
+            new PopularFilmsCache(new ObjectMapper().registerModule(new JavaTimeModule()), 64),
+            eventBus
+    );
+
+    @Test
+    void pagesOfEveryOrderCoverTheResultOnceWithTiedKeys() {
+        createFilms(23);
+
+        for (FilmSearch.Sort sort : FilmSearch.Sort.values()) {
+            List<Long> paged = new ArrayList<>();
+            String after = null;
+            int pages = 0;
+            do {
+                FilmPage page = service.searchFilms(search(5), sort.getParameter(), after);
+                page.getFilms().forEach(film -> paged.add(film.getId()));
+                after = page.getNext();
+                pages++;
+            } while (after != null);
+
+            assertEquals(expected(sort), paged, "order " + sort.getParameter());
+            assertEquals(5, pages);
+        }
+    }
+
+    @Test
+    void fullLastPageIsFollowedByAnEmptyOne() {
+        createFilms(10);
+
+        FilmPage first = service.searchFilms(search(5), "duration", null);
+        FilmPage second = service.searchFilms(search(5), "duration", first.getNext());
+        assertNotNull(second.getNext());
+        FilmPage third = service.searchFilms(search(5), "duration", second.getNext());
+
+        assertTrue(third.getFilms().isEmpty());
+        assertNull(third.getNext());
+    }
+
+    @Test
+    void positionOfAnotherOrderOrGarbageIsRejected() {
+        createFilms(10);
+        String next = service.searchFilms(search(3), "name", null).getNext();
+
+        assertThrows(ValidationException.class, () -> service.searchFilms(search(3), "duration", next));
+        assertThrows(ValidationException.class, () -> service.searchFilms(search(3), "name", "not a position"));
+        assertThrows(ValidationException.class, () -> service.searchFilms(search(3), "name", ""));
+        assertThrows(ValidationException.class, () -> service.searchFilms(search(3), "rating", null));
+        assertThrows(ValidationException.class, () -> service.searchFilms(search(0), "name", null));
+    }
+
+    @Test
+    void emptyRangeIsRejected() {
+        FilmSearch search = search(5);
+        search.setMinDuration(100);
+        search.setMaxDuration(90);
+
+        assertThrows(ValidationException.class, () -> service.searchFilms(search, "id", null));
+    }
+
+    private void createFilms(int count) {
+        for (int i = 0; i < count; i++) {
+            // three durations, four release dates and names that differ in case only, so every order has ties;
+            // one name holds the separator of the page position
+            service.create(Film.builder()
+                    .name(i % 2 == 0 ? "Film\n" + i % 4 : "FILM\n" + i % 4)
+                    .description("About film " + i)
+                    .releaseDate(LocalDate.of(2000 + i % 4, 1, 1))
+                    .duration(90 + 10 * (i % 3))
+                    .build());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Long> expected(FilmSearch.Sort sort) {
+        Comparator<Film> byKey = (first, second) -> ((Comparable) sort.keyOf(first)).compareTo(sort.keyOf(second));
+        return storage.getAllFilms().stream()
+                .sorted(byKey.thenComparing(Film::getId))
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static FilmSearch search(int limit) {
+        return FilmSearch.builder().limit(limit).build();
+    }
+}
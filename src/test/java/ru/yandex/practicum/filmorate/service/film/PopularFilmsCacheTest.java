@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularFilmsCacheTest {
+    private final PopularFilmsCache cache = new PopularFilmsCache(
+            new ObjectMapper().registerModule(new JavaTimeModule()), 64
+    );
+    private final Map<Long, Film> films = new TreeMap<>();
+
+    @Test
+    void tagStaysWhenAFilmOutsideTheListChanges() {
+        for (long id = 1; id <= 5; id++) {
+            films.put(id, film(id, (int) (10 - id)));
+        }
+        String tag = top(2).getTag();
+
+        // film 5 stays below the list; the entry is dropped but rebuilt to the same JSON
+        films.get(5L).getLikes().add(100L);
+        cache.onLikesChanged(5, films.get(5L).getLikes().size());
+        films.get(4L).setName("Renamed");
+        cache.onFilmUpdated(4);
+
+        assertEquals(tag, top(2).getTag());
+    }
+
+    @Test
+    void tagChangesWithALikeOfAListedFilm() {
+        for (long id = 1; id <= 5; id++) {
+            films.put(id, film(id, (int) (10 - id)));
+        }
+        PopularFilmsCache.RenderedList before = top(2);
+
+        films.get(2L).getLikes().add(100L);
+        cache.onLikesChanged(2, films.get(2L).getLikes().size());
+
+        PopularFilmsCache.RenderedList after = top(2);
+        assertNotEquals(before.getTag(), after.getTag());
+        assertSame(after, top(2));
+    }
+
+    @Test
+    void rebuildOverlappingAnUnrelatedMutationIsStored() {
+        for (long id = 1; id <= 5; id++) {
+            films.put(id, film(id, (int) (10 - id)));
+        }
+
+        PopularFilmsCache.RenderedList rebuilt = cache.get(2, limit -> {
+            Collection<Film> list = load(limit);
+            // a like of a film far below the list and a change of an unlisted one, while the list is rebuilt
+            cache.onLikesChanged(5, 6);
+            cache.onFilmUpdated(4);
+            return list;
+        });
+
+        assertSame(rebuilt, top(2));
+        assertEquals(1, cache.getRebuilds());
+    }
+
+    @Test
+    void rebuildOverlappingAMutationOfItsListIsNotStored() {
+        for (long id = 1; id <= 5; id++) {
+            films.put(id, film(id, (int) (10 - id)));
+        }
+
+        PopularFilmsCache.RenderedList rebuilt = cache.get(2, limit -> {
+            Collection<Film> list = load(limit);
+            cache.onLikesChanged(2, 20);
+            return list;
+        });
+        cache.get(3, limit -> {
+            Collection<Film> list = load(limit);
+            // a like that lifts film 5 to the threshold of this list
+            cache.onLikesChanged(5, 7);
+            return list;
+        });
+
+        assertNotSame(rebuilt, top(2));
+        top(3);
+        assertEquals(4, cache.getRebuilds());
+    }
+
+    @Test
+    void concurrentMissesOfACountShareOneRebuild() throws Exception {
+        for (long id = 1; id <= 5; id++) {
+            films.put(id, film(id, (int) (10 - id)));
+        }
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        IntFunction<Collection<Film>> slowLoader = limit -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return load(limit);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PopularFilmsCache.RenderedList>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> cache.get(2, slowLoader)));
+            }
+            while (cache.getMisses() < 4) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            PopularFilmsCache.RenderedList first = futures.get(0).get();
+            for (Future<PopularFilmsCache.RenderedList> future : futures) {
+                assertSame(first, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getRebuilds());
+    }
+
+    private PopularFilmsCache.RenderedList top(int count) {
+        return cache.get(count, this::load);
+    }
+
+    private Collection<Film> load(int limit) {
+        return films.values().stream()
+                .sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+                        .thenComparing(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static Film film(long id, int likes) {
+        Film film = Film.builder()
+                .id(id)
+                .name("Film " + id)
+                .description("About film " + id)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .build();
+        film.setLikes(new HashSet<>());
+        for (long userId = 1; userId <= likes; userId++) {
+            film.getLikes().add(userId);
+        }
+        return film;
+    }
+}
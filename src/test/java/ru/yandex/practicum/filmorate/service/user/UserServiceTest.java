@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.service.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.yandex.practicum.filmorate.event.DomainEvent;
+import ru.yandex.practicum.filmorate.event.DomainEventBus;
+import ru.yandex.practicum.filmorate.event.DomainEventListener;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserServiceTest {
+    private final List<DomainEvent> delivered = new ArrayList<>();
+    private final DomainEventBus eventBus = newBus(events -> {
+        synchronized (delivered) {
+            delivered.addAll(events);
+        }
+    });
+    private final UserService service = new UserService(
+            new InMemoryUserStorage(MutationJournal.NONE, new FriendRecommender(5000, 1_000_000)), eventBus
+    );
+
+    @Test
+    void bothDirectionsOfAFriendshipAreDeliveredInOneOrder() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ids.add(service.create(user("user" + i)).getId());
+        }
+        eventBus.afterSingletonsInstantiated();
+
+        List<DomainEvent> published = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            long userId = ids.get(random.nextInt(ids.size()));
+            long friendId = ids.get(random.nextInt(ids.size()));
+            boolean friends = service.getAllUserFriends(userId).stream().anyMatch(user -> user.getId() == friendId);
+            if (friends) {
+                service.deleteFromFriends(friendId, userId);
+                published.add(DomainEvent.friendRemoved(friendId, userId));
+            } else {
+                service.addToFriend(userId, friendId);
+                published.add(DomainEvent.friendAdded(userId, friendId));
+            }
+        }
+        eventBus.destroy();
+
+        Map<Long, List<String>> expected = byKey(published);
+        Map<Long, List<String>> actual;
+        synchronized (delivered) {
+            actual = byKey(delivered.stream()
+                    .filter(event -> event.getType() != DomainEvent.Type.USER_CREATED)
+                    .collect(Collectors.toList()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void friendshipEventsAreKeyedByTheLowerUserId() {
+        assertEquals(3, DomainEvent.friendAdded(3, 9).getKey());
+        assertEquals(3, DomainEvent.friendAdded(9, 3).getKey());
+        assertEquals(3, DomainEvent.friendRemoved(9, 3).getKey());
+        assertEquals(9, DomainEvent.likeAdded(9, 3).getKey());
+    }
+
+    @Test
+    void batchPublishesOneEventPerFriendshipAdded() throws Exception {
+        long first = service.create(user("first")).getId();
+        long second = service.create(user("second")).getId();
+        service.addToFriend(first, second);
+        long third = service.create(user("third")).getId();
+        eventBus.afterSingletonsInstantiated();
+
+        List<BatchItemResult> results = service.addFriends(List.of(
+                new Friendship(second, third),
+                new Friendship(second, first),
+                new Friendship(first, 404),
+                new Friendship(third, second)
+        ));
+        eventBus.destroy();
+
+        assertEquals(List.of(BatchItemResult.Status.ADDED, BatchItemResult.Status.ALREADY_EXISTS,
+                        BatchItemResult.Status.NOT_FOUND, BatchItemResult.Status.ALREADY_EXISTS),
+                results.stream().map(BatchItemResult::getStatus).collect(Collectors.toList()));
+        synchronized (delivered) {
+            assertEquals(List.of("FRIEND_ADDED(" + second + ", " + third + ")"), delivered.stream()
+                    .filter(event -> event.getType() == DomainEvent.Type.FRIEND_ADDED)
+                    .filter(event -> event.getFirstId() != first)
+                    .map(UserServiceTest::describe)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private static Map<Long, List<String>> byKey(List<DomainEvent> events) {
+        Map<Long, List<String>> byKey = new HashMap<>();
+        for (DomainEvent event : events) {
+            byKey.computeIfAbsent(event.getKey(), key -> new ArrayList<>()).add(describe(event));
+        }
+        return byKey;
+    }
+
+    private static String describe(DomainEvent event) {
+        return event.getType() + "(" + event.getFirstId() + ", " + event.getSecondId() + ")";
+    }
+
+    private static DomainEventBus newBus(DomainEventListener listener) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("listener", listener);
+        return new DomainEventBus(beans.getBeanProvider(DomainEventListener.class), 4, 64, 16);
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@ActiveProfiles("db")
+@Import({FilmDbStorage.class, UserDbStorage.class})
+class FilmDbStorageTest {
+    @Autowired
+    private FilmDbStorage filmStorage;
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Test
+    void likeCountFollowsTheLikes() {
+        long filmId = filmStorage.create(film("Alien")).getId();
+        long first = userStorage.create(user("first")).getId();
+        long second = userStorage.create(user("second")).getId();
+        long third = userStorage.create(user("third")).getId();
+
+        filmStorage.addLike(filmId, first);
+        filmStorage.addLikes(List.of(new FilmLike(filmId, second), new FilmLike(filmId, third)));
+        filmStorage.deleteLike(filmId, first);
+
+        assertEquals(2, likeCountOf(filmId));
+        assertEquals(filmStorage.getFilmById(filmId).getLikes().size(), likeCountOf(filmId));
+        assertEquals(2, filmStorage.getLikeCount());
+    }
+
+    @Test
+    void duplicateLikeIsNotFoundAndNotCounted() {
+        long filmId = filmStorage.create(film("Alien")).getId();
+        long userId = userStorage.create(user("first")).getId();
+        filmStorage.addLike(filmId, userId);
+
+        assertThrows(NotFoundException.class, () -> filmStorage.addLike(filmId, userId));
+        List<BatchItemResult> results = filmStorage.addLikes(List.of(
+                new FilmLike(filmId, userId), new FilmLike(1_000, userId)
+        ));
+        assertEquals(BatchItemResult.Status.ALREADY_EXISTS, results.get(0).getStatus());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, results.get(1).getStatus());
+        assertEquals(1, likeCountOf(filmId));
+
+        filmStorage.deleteLike(filmId, userId);
+        assertThrows(NotFoundException.class, () -> filmStorage.deleteLike(filmId, userId));
+        assertEquals(0, likeCountOf(filmId));
+    }
+
+    @Test
+    void topFilmsAreOrderedByLikesThenId() {
+        long first = filmStorage.create(film("First")).getId();
+        long second = filmStorage.create(film("Second")).getId();
+        long third = filmStorage.create(film("Third")).getId();
+        long fourth = filmStorage.create(film("Fourth")).getId();
+        long alice = userStorage.create(user("alice")).getId();
+        long bob = userStorage.create(user("bob")).getId();
+        long carol = userStorage.create(user("carol")).getId();
+        filmStorage.addLike(first, alice);
+        for (long userId : List.of(alice, bob, carol)) {
+            filmStorage.addLike(third, userId);
+            filmStorage.addLike(second, userId);
+        }
+
+        assertEquals(List.of(second, third, first, fourth), filmStorage.getTopFilms(10).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(second, third), filmStorage.getTopFilmSummaries(2).stream()
+                .map(FilmSummary::getId)
+                .collect(Collectors.toList()));
+    }
+
+    private int likeCountOf(long filmId) {
+        return filmStorage.getFilmSummaries(filmId - 1, 1).get(0).getLikeCount();
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("About " + name)
+                .releaseDate(LocalDate.of(1979, 5, 25))
+                .duration(117)
+                .build();
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
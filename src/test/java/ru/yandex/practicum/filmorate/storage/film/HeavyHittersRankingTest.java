@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersRankingTest {
+
+    @Test
+    void mergedTopMatchesTheExactIndexForHeavyFilms() {
+        PopularityRanking exact = PopularityRanking.exact();
+        HeavyHittersRanking approximate = new HeavyHittersRanking(0.001, 8);
+        int[] likes = new int[5_000];
+        for (int filmId = 0; filmId < likes.length; filmId++) {
+            exact.add(filmId, 0);
+            approximate.add(filmId, 0);
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            // a skewed stream: film f gets a share of about 1/f of the likes
+            int filmId = (int) Math.min(likes.length - 1, Math.exp(random.nextDouble() * Math.log(likes.length)));
+            like(exact, approximate, likes, filmId);
+            if (i % 10 == 0) {
+                int unliked = random.nextInt(likes.length);
+                if (likes[unliked] > 0) {
+                    exact.change(unliked, likes[unliked], likes[unliked] - 1);
+                    approximate.change(unliked, likes[unliked], likes[unliked] - 1);
+                    likes[unliked]--;
+                }
+            }
+        }
+
+        assertEquals(exact.top(10), approximate.top(10));
+    }
+
+    @Test
+    void tiesRankTheLowerIdFirstOverAllStripes() {
+        HeavyHittersRanking ranking = new HeavyHittersRanking(0.01, 4);
+        for (long filmId = 20; filmId >= 1; filmId--) {
+            ranking.add(filmId, 5);
+        }
+        ranking.change(17, 5, 9);
+
+        assertEquals(List.of(17L, 1L, 2L, 3L), ranking.top(4));
+    }
+
+    @Test
+    void concurrentLikesOfDifferentFilmsAreAllCounted() throws Exception {
+        HeavyHittersRanking ranking = new HeavyHittersRanking(0.001, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                long firstFilm = thread * 100L;
+                futures.add(executor.submit(() -> {
+                    for (long filmId = firstFilm; filmId < firstFilm + 100; filmId++) {
+                        // film f ends up with f + 1 likes
+                        for (int like = 0; like <= filmId; like++) {
+                            ranking.change(filmId, like, like + 1);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(List.of(799L, 798L, 797L, 796L, 795L), ranking.top(5));
+    }
+
+    private static void like(PopularityRanking exact, PopularityRanking approximate, int[] likes, int filmId) {
+        exact.change(filmId, likes[filmId], likes[filmId] + 1);
+        approximate.change(filmId, likes[filmId], likes[filmId] + 1);
+        likes[filmId]++;
+    }
+}
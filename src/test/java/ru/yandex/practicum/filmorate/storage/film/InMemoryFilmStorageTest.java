@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.AlreadyExistsException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryFilmStorageTest {
+    private final InMemoryFilmStorage storage = new InMemoryFilmStorage(
+            MutationJournal.NONE, new FilmRecommender(5000, 50), PopularityRanking.exact()
+    );
+
+    @Test
+    void concurrentLikesUnlikesAndUpdatesKeepLikesAndRankingInStep() throws Exception {
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            filmIds.add(storage.create(film("Film " + i)).getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                Random random = new Random(thread);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        long filmId = filmIds.get(random.nextInt(filmIds.size()));
+                        long userId = 1 + random.nextInt(50);
+                        try {
+                            switch (random.nextInt(5)) {
+                                case 0:
+                                    Film update = film("Renamed " + i);
+                                    update.setId(filmId);
+                                    storage.update(update);
+                                    break;
+                                case 1:
+                                case 2:
+                                    storage.deleteLike(filmId, userId);
+                                    break;
+                                default:
+                                    storage.addLike(filmId, userId);
+                            }
+                        } catch (NotFoundException | AlreadyExistsException e) {
+                            // the like is already in the requested state
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long likes = 0;
+        for (long filmId : filmIds) {
+            likes += storage.getFilmById(filmId).getLikes().size();
+        }
+        assertEquals(likes, storage.getLikeCount());
+
+        List<Long> expectedTop = filmIds.stream()
+                .map(storage::getFilmById)
+                .sorted(Comparator.comparingInt((Film film) -> film.getLikes().size()).reversed()
+                        .thenComparing(Film::getId))
+                .limit(10)
+                .map(Film::getId)
+                .collect(Collectors.toList());
+        assertEquals(expectedTop, storage.getTopFilms(10).stream().map(Film::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void batchReportsEveryLike() {
+        long first = storage.create(film("First")).getId();
+        long second = storage.create(film("Second")).getId();
+        storage.addLike(first, 1);
+
+        List<BatchItemResult> results = storage.addLikes(List.of(
+                new FilmLike(first, 1),
+                new FilmLike(first, 2),
+                new FilmLike(first, 2),
+                new FilmLike(1_000, 1),
+                new FilmLike(second, 1)
+        ));
+
+        assertEquals(List.of(
+                BatchItemResult.Status.ALREADY_EXISTS,
+                BatchItemResult.Status.ADDED,
+                BatchItemResult.Status.ALREADY_EXISTS,
+                BatchItemResult.Status.NOT_FOUND,
+                BatchItemResult.Status.ADDED
+        ), results.stream().map(BatchItemResult::getStatus).collect(Collectors.toList()));
+        assertEquals(Set.of(1L, 2L), storage.getFilmById(first).getLikes());
+        assertEquals(Set.of(1L), storage.getFilmById(second).getLikes());
+        assertEquals(3, storage.getLikeCount());
+        assertEquals(List.of(first, second),
+                storage.getTopFilms(2).stream().map(Film::getId).collect(Collectors.toList()));
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("About " + name)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularityIndexTest {
+    private final PopularityIndex index = new PopularityIndex();
+
+    @Test
+    void equalLikeCountsAreOrderedById() {
+        index.add(3, 5);
+        index.add(1, 5);
+        index.add(4, 0);
+        index.add(2, 7);
+        index.add(5, 5);
+
+        assertEquals(List.of(2L, 1L, 3L, 5L, 4L), index.top(10));
+        assertEquals(List.of(2L, 1L), index.top(2));
+    }
+
+    @Test
+    void changeMovesTheFilmBetweenTies() {
+        for (long filmId = 1; filmId <= 4; filmId++) {
+            index.add(filmId, 3);
+        }
+
+        index.change(4, 3, 4);
+        index.change(1, 3, 2);
+        index.change(2, 3, 3);
+
+        assertEquals(List.of(4L, 2L, 3L, 1L), index.top(10));
+        index.change(4, 4, 3);
+        assertEquals(List.of(2L, 3L, 4L, 1L), index.top(10));
+        assertEquals(4 * 64L, index.estimateHeapBytes());
+    }
+
+    @Test
+    void filmSeenAtBothPlacesIsListedOnce() {
+        index.add(1, 5);
+        index.add(2, 4);
+        index.add(3, 1);
+        // the first half of change(1, 5, 0): the new entry is in, the old one not yet out
+        index.add(1, 0);
+
+        assertEquals(List.of(1L, 2L, 3L), index.top(3));
+        assertEquals(List.of(1L, 2L), index.top(2));
+
+        index.remove(1, 5);
+        assertEquals(List.of(2L, 3L, 1L), index.top(3));
+    }
+
+    @Test
+    void concurrentLikesAndUnlikesKeepOneEntryPerFilm() throws Exception {
+        int films = 8;
+        int[] likes = new int[films];
+        for (int filmId = 0; filmId < films; filmId++) {
+            index.add(filmId, 0);
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(films + 2);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int film = 0; film < films; film++) {
+                int filmId = film;
+                Random random = new Random(filmId);
+                // one writer per film, as the storage serializes the changes of a film
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        int before = likes[filmId];
+                        likes[filmId] = before == 0 || random.nextInt(3) > 0 ? before + 1 : before - 1;
+                        index.change(filmId, before, likes[filmId]);
+                    }
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 2; reader++) {
+                readers.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        List<Long> top = index.top(films);
+                        assertEquals(top.size(), new HashSet<>(top).size(), "a film listed twice: " + top);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Long> expected = LongStream.range(0, films).boxed()
+                .sorted(Comparator.comparingInt((Long filmId) -> likes[filmId.intValue()]).reversed()
+                        .thenComparing(filmId -> filmId))
+                .collect(Collectors.toList());
+        assertEquals(expected, index.top(films));
+        assertEquals(films * 64L, index.estimateHeapBytes());
+    }
+
+    @Test
+    void filmMovingDownIsNeverMissed() throws Exception {
+        int films = 8;
+        for (int filmId = 0; filmId < films; filmId++) {
+            index.add(filmId, 20_000);
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(films + 2);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int film = 0; film < films; film++) {
+                int filmId = film;
+                writers.add(executor.submit(() -> {
+                    for (int likes = 20_000; likes > 0; likes--) {
+                        index.change(filmId, likes, likes - 1);
+                    }
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 2; reader++) {
+                readers.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        assertEquals(films, index.top(films).size());
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(LongStream.range(0, films).boxed().collect(Collectors.toList()), index.top(films));
+    }
+}
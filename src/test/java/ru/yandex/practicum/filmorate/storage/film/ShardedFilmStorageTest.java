@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.shard.ShardCluster;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedFilmStorageTest {
+    private final ShardCluster cluster = new ShardCluster(List.of("shard-0", "shard-1", "shard-2"), 16);
+    private final ShardedFilmStorage storage = new ShardedFilmStorage(
+            cluster, new FilmRecommender(5000, 50), () -> PopularityConfiguration.create("exact", 0.0001)
+    );
+
+    @Test
+    void newShardTakesOverFilmsWithTheirLikes() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            films.add(storage.create(Film.builder()
+                    .name("Film " + i)
+                    .description("About film " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(90)
+                    .build()));
+        }
+        Random random = new Random(5);
+        for (Film film : films) {
+            for (long userId = 1; userId <= random.nextInt(20); userId++) {
+                storage.addLike(film.getId(), userId);
+            }
+        }
+        Map<Long, Set<Long>> likesByFilm = new HashMap<>();
+        films.forEach(film -> likesByFilm.put(film.getId(), new HashSet<>(film.getLikes())));
+        List<Long> topBefore = ids(storage.getTopFilms(10));
+        long likesBefore = storage.getLikeCount();
+
+        cluster.addShard("shard-3");
+
+        assertTrue(storage.getFilmCountsByShard().get("shard-3") > 0);
+        assertEquals(100, storage.getFilmCount());
+        assertEquals(likesBefore, storage.getLikeCount());
+        assertEquals(topBefore, ids(storage.getTopFilms(10)));
+        for (Film film : films) {
+            assertEquals(film.getName(), storage.getFilmById(film.getId()).getName());
+            assertEquals(likesByFilm.get(film.getId()), new HashSet<>(storage.getFilmById(film.getId()).getLikes()));
+        }
+    }
+
+    private static List<Long> ids(Collection<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingIndexTest {
+    // the start of an hour, so that every window's buckets start together
+    private static final long START = Duration.ofDays(20_000).toMillis();
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final TrendingIndex index = new TrendingIndex(clock::get);
+
+    @Test
+    void likeLeavesEachWindowWhenItsBucketExpires() {
+        index.onLike(1, 10, clock.get());
+
+        elapse(Duration.ofMinutes(59));
+        assertLikes(1, 1, 1);
+
+        elapse(Duration.ofMinutes(1));
+        assertLikes(0, 1, 1);
+        assertEquals(List.of(), index.top(TrendingWindow.HOUR, 10));
+        assertEquals(List.of(1L), index.top(TrendingWindow.DAY, 10));
+
+        elapse(Duration.ofHours(23));
+        assertLikes(0, 0, 1);
+        assertEquals(START, index.likedAt(1, 10));
+
+        elapse(Duration.ofDays(6));
+        assertLikes(0, 0, 0);
+        assertEquals(List.of(), index.top(TrendingWindow.WEEK, 10));
+        assertEquals(0, index.likedAt(1, 10));
+        assertEquals(0, index.estimateHeapBytes());
+    }
+
+    @Test
+    void windowSlidesByWholeBuckets() {
+        elapse(Duration.ofSeconds(30));
+        index.onLike(1, 10, clock.get());
+
+        // the like's minute leaves the hour 30 seconds short of an hour after it
+        elapse(Duration.ofMinutes(59));
+        assertEquals(1, index.likes(TrendingWindow.HOUR, 1));
+        elapse(Duration.ofSeconds(30));
+        assertEquals(0, index.likes(TrendingWindow.HOUR, 1));
+    }
+
+    @Test
+    void unlikeIsTakenBackFromTheBucketOfItsLike() {
+        index.onLike(1, 10, clock.get());
+        elapse(Duration.ofMinutes(59));
+        index.onLike(1, 20, clock.get());
+        elapse(Duration.ofMinutes(1));
+        assertLikes(1, 2, 2);
+
+        // the first like has already left the hour
+        index.onUnlike(1, 10);
+
+        assertLikes(1, 1, 1);
+    }
+
+    @Test
+    void rankingOrdersByLikesWithinTheWindowThenById() {
+        index.onLike(3, 10, clock.get());
+        index.onLike(3, 20, clock.get());
+        index.onLike(3, 30, clock.get());
+        elapse(Duration.ofHours(2));
+        index.onLike(2, 10, clock.get());
+        index.onLike(1, 10, clock.get());
+
+        assertEquals(List.of(1L, 2L), index.top(TrendingWindow.HOUR, 10));
+        assertEquals(List.of(3L, 1L, 2L), index.top(TrendingWindow.DAY, 10));
+        assertEquals(List.of(3L, 1L), index.top(TrendingWindow.DAY, 2));
+    }
+
+    @Test
+    void replayedLikeAndUnknownUnlikeChangeNothing() {
+        index.onLike(1, 10, clock.get());
+        index.onLike(1, 10, clock.get());
+        index.onUnlike(1, 20);
+        index.onUnlike(2, 10);
+
+        assertLikes(1, 1, 1);
+    }
+
+    @Test
+    void likesBeyondTheKeptTimesAreStillCountedAndTakenBack() {
+        TrendingIndex bounded = new TrendingIndex(clock::get, 2);
+        for (long userId = 1; userId <= 3; userId++) {
+            bounded.onLike(1, userId, clock.get());
+            elapse(Duration.ofMinutes(20));
+        }
+        assertEquals(0, bounded.likedAt(1, 1));
+        assertEquals(2, bounded.likes(TrendingWindow.HOUR, 1));
+        assertEquals(3, bounded.likes(TrendingWindow.DAY, 1));
+
+        // user 1 liked in a bucket that has left the hour, so only the longer windows give the like back
+        bounded.onUnlike(1, 1);
+
+        assertEquals(2, bounded.likes(TrendingWindow.HOUR, 1));
+        assertEquals(2, bounded.likes(TrendingWindow.DAY, 1));
+        assertEquals(2, bounded.likes(TrendingWindow.WEEK, 1));
+        bounded.onUnlike(1, 2);
+        bounded.onUnlike(1, 3);
+        assertEquals(List.of(), bounded.top(TrendingWindow.WEEK, 10));
+        assertEquals(0, bounded.estimateHeapBytes());
+    }
+
+    @Test
+    void concurrentLikesAndUnlikesOfManyFilmsAddUp() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                long userId = thread;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(userId);
+                    for (int i = 0; i < 10_000; i++) {
+                        long filmId = random.nextInt(16);
+                        index.onLike(filmId, userId, clock.get());
+                        if (filmId % 2 == 0) {
+                            index.onUnlike(filmId, userId);
+                        }
+                    }
+                    // the clock moves while other threads like
+                    clock.addAndGet(Duration.ofSeconds(10).toMillis());
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (long filmId = 0; filmId < 16; filmId++) {
+            assertEquals(filmId % 2 == 0 ? 0 : threads, index.likes(TrendingWindow.DAY, filmId), "film " + filmId);
+        }
+        List<Long> top = index.top(TrendingWindow.DAY, 16);
+        assertEquals(List.of(1L, 3L, 5L, 7L, 9L, 11L, 13L, 15L), top);
+    }
+
+    private void elapse(Duration duration) {
+        clock.addAndGet(duration.toMillis());
+    }
+
+    private void assertLikes(int hour, int day, int week) {
+        assertEquals(hour, index.likes(TrendingWindow.HOUR, 1), "hour");
+        assertEquals(day, index.likes(TrendingWindow.DAY, 1), "day");
+        assertEquals(week, index.likes(TrendingWindow.WEEK, 1), "week");
+    }
+}
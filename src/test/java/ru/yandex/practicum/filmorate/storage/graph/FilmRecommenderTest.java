@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmRecommenderTest {
+    // user ID to the films the user liked
+    private final Map<Long, TreeSet<Long>> likes = new TreeMap<>();
+
+    @Test
+    void filmsAreScoredBySummedSimilarityOfTheNeighbours() {
+        like(1, 10, 11);
+        // similarity 2/3
+        like(2, 10, 11, 12);
+        // similarity 1/3
+        like(3, 10, 13);
+        // similarity 1/5
+        like(4, 11, 12, 13, 14);
+
+        FilmRecommender recommender = new FilmRecommender(5000, 50);
+
+        assertArrayEquals(new long[]{12, 13, 14}, recommend(recommender, 10));
+        assertArrayEquals(new long[]{12, 13}, recommend(recommender, 2));
+    }
+
+    @Test
+    void onlyTheNearestNeighboursScore() {
+        like(1, 10, 11);
+        like(2, 10, 11, 12);
+        like(3, 10, 13);
+
+        assertArrayEquals(new long[]{12}, recommend(new FilmRecommender(5000, 1), 10));
+    }
+
+    @Test
+    void equalScoresAreOrderedByFilmId() {
+        like(1, 10);
+        like(2, 10, 15, 12);
+
+        assertArrayEquals(new long[]{12, 15}, recommend(new FilmRecommender(5000, 50), 10));
+    }
+
+    @Test
+    void filmsLikedByMoreThanTheFanoutAreNotCounted() {
+        like(1, 10, 11);
+        like(2, 10, 12);
+        like(3, 10, 13);
+        like(4, 11, 14);
+
+        // film 10 has three likers, over the fanout of two, so only user 4 overlaps through film 11
+        assertArrayEquals(new long[]{14}, recommend(new FilmRecommender(2, 50), 10));
+    }
+
+    @Test
+    void userWithoutLikesGetsNothing() {
+        like(2, 10, 12);
+
+        assertArrayEquals(new long[0], recommend(new FilmRecommender(5000, 50), 10));
+    }
+
+    @Test
+    void largeInputsSplitIntoTasksGiveTheSameRanking() {
+        long[] liked = new long[600];
+        for (int film = 0; film < liked.length; film++) {
+            liked[film] = film;
+        }
+        like(1, liked);
+        // every other user shares one film and has one of their own, so all are equally similar
+        for (long userId = 2; userId <= 5_001; userId++) {
+            like(userId, userId % liked.length, 1_000 + userId);
+        }
+
+        // the 50 neighbours with the lowest IDs win the tie, and their films tie again
+        assertArrayEquals(new long[]{1_002, 1_003, 1_004}, recommend(new FilmRecommender(5000, 50), 3));
+    }
+
+    private void like(long userId, long... filmIds) {
+        TreeSet<Long> films = likes.computeIfAbsent(userId, id -> new TreeSet<>());
+        Arrays.stream(filmIds).forEach(films::add);
+    }
+
+    private long[] recommend(FilmRecommender recommender, int limit) {
+        Map<Long, TreeSet<Long>> likers = new HashMap<>();
+        likes.forEach((userId, films) -> films.forEach(
+                filmId -> likers.computeIfAbsent(filmId, id -> new TreeSet<>()).add(userId)
+        ));
+        return recommender.recommend(
+                1,
+                toRow(likes.get(1L)),
+                filmId -> likers.containsKey(filmId) ? toRow(likers.get(filmId)) : null,
+                userId -> likes.containsKey(userId) ? toRow(likes.get(userId)) : null,
+                limit
+        );
+    }
+
+    private static long[] toRow(TreeSet<Long> ids) {
+        return ids == null ? new long[0] : ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
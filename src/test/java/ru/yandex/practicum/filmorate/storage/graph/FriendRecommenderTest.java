@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendRecommenderTest {
+    private final Map<Long, long[]> rows = new HashMap<>();
+
+    @Test
+    void candidatesAreRankedByMutualFriendsThenId() {
+        rows.put(1L, new long[]{2, 3, 4});
+        rows.put(2L, new long[]{1, 3, 5, 8});
+        rows.put(3L, new long[]{1, 2, 5, 7, 8});
+        rows.put(4L, new long[]{1, 5, 6});
+
+        FriendRecommender recommender = new FriendRecommender(5000, 1_000_000);
+
+        // 5 shares three friends, 8 two, 6 and 7 one; friends 2 and 3 are not recommended to the user
+        assertEquals(List.of("5:3", "8:2", "6:1", "7:1"), recommend(recommender, 10));
+        assertEquals(List.of("5:3", "8:2"), recommend(recommender, 2));
+    }
+
+    @Test
+    void celebrityFriendIsNotExpanded() {
+        rows.put(1L, new long[]{2, 3});
+        rows.put(2L, new long[]{1, 4, 5, 6, 7});
+        rows.put(3L, new long[]{1, 5});
+
+        // friend 2 has five friends, over the fanout of four, so only friend 3 is read
+        assertEquals(List.of("5:1"), recommend(new FriendRecommender(4, 1_000_000), 10));
+        assertEquals(List.of("5:2", "4:1", "6:1", "7:1"), recommend(new FriendRecommender(5, 1_000_000), 10));
+    }
+
+    @Test
+    void smallestRowsAreReadFirstWithinTheEdgeBudget() {
+        rows.put(1L, new long[]{2, 3});
+        rows.put(2L, new long[]{1, 4, 5, 6});
+        rows.put(3L, new long[]{1, 7});
+
+        // the budget of three edges covers the row of friend 3 and the first edge of friend 2
+        assertEquals(List.of("7:1"), recommend(new FriendRecommender(5000, 3), 10));
+    }
+
+    @Test
+    void deletedFriendIsSkipped() {
+        rows.put(1L, new long[]{2, 3});
+        rows.put(3L, new long[]{1, 4});
+
+        assertEquals(List.of("4:1"), recommend(new FriendRecommender(5000, 1_000_000), 10));
+    }
+
+    private List<String> recommend(FriendRecommender recommender, int limit) {
+        return recommender.recommend(1, rows.get(1L), rows::get, limit).stream()
+                .map(candidate -> candidate.getUserId() + ":" + candidate.getMutualFriends())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.storage.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedLongSetTest {
+
+    @Test
+    void randomAddsAndRemovesMatchTreeSet() {
+        Random random = new Random(42);
+        SortedLongSet set = new SortedLongSet();
+        TreeSet<Long> expected = new TreeSet<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(3_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value), "remove " + value);
+            } else {
+                assertEquals(expected.add(value), set.add(value), "add " + value);
+            }
+            assertEquals(expected.size(), set.size());
+            if (i % 97 == 0) {
+                assertArrayEquals(toArray(expected), set.snapshot());
+            }
+        }
+        for (long value = 0; value < 3_000; value++) {
+            assertEquals(expected.contains(value), set.contains(value), "contains " + value);
+        }
+        assertArrayEquals(toArray(expected), set.snapshot());
+    }
+
+    @Test
+    void snapshotIsNotChangedByLaterWrites() {
+        SortedLongSet set = SortedLongSet.ofSorted(new long[]{1, 3, 5});
+        set.add(4);
+        long[] snapshot = set.snapshot();
+
+        set.add(2);
+        set.remove(5);
+        set.addAll(new long[]{6, 7});
+
+        assertArrayEquals(new long[]{1, 3, 4, 5}, snapshot);
+        assertArrayEquals(new long[]{1, 2, 3, 4, 6, 7}, set.snapshot());
+    }
+
+    @Test
+    void removedIdCanBeAddedAgain() {
+        SortedLongSet set = SortedLongSet.ofSorted(new long[]{1, 2, 3});
+
+        assertTrue(set.remove(2));
+        assertFalse(set.remove(2));
+        assertFalse(set.contains(2));
+        assertTrue(set.add(2));
+        assertFalse(set.add(2));
+
+        assertArrayEquals(new long[]{1, 2, 3}, set.snapshot());
+    }
+
+    @Test
+    void addAllMergesPendingWritesAndSkipsPresentIds() {
+        SortedLongSet set = SortedLongSet.ofSorted(new long[]{2, 4, 6});
+        set.add(5);
+        set.remove(4);
+
+        assertEquals(2, set.addAll(new long[]{1, 2, 4, 5}));
+        assertArrayEquals(new long[]{1, 2, 4, 5, 6}, set.snapshot());
+        assertEquals(0, set.addAll(new long[]{1, 6}));
+    }
+
+    @Test
+    void buildingLargeRowOneIdAtATimeStaysFast() {
+        SortedLongSet set = new SortedLongSet();
+        Random random = new Random(7);
+        long start = System.nanoTime();
+        for (int i = 0; i < 200_000; i++) {
+            set.add(random.nextLong());
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(200_000, set.size());
+        // copying the row on every add takes minutes at this size
+        assertTrue(millis < 10_000, "took " + millis + " ms");
+    }
+
+    @Test
+    void intersectionsOfSimilarAndSkewedRows() {
+        long[] evens = new long[1000];
+        for (int i = 0; i < evens.length; i++) {
+            evens[i] = 2L * i;
+        }
+        long[] few = {0, 3, 10, 1998, 5000};
+
+        assertArrayEquals(new long[]{0, 10, 1998}, SortedLongSet.intersect(evens, few));
+        assertEquals(3, SortedLongSet.intersectionSize(few, evens));
+        assertArrayEquals(new long[]{4, 6}, SortedLongSet.intersect(new long[]{1, 4, 6}, new long[]{4, 5, 6}));
+    }
+
+    private static long[] toArray(TreeSet<Long> values) {
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+}
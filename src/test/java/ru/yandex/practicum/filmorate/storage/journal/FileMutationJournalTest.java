@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMutationJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversAppendedRecordsUpToATornTail() throws IOException {
+        FileMutationJournal journal = new FileMutationJournal(directory);
+        journal.recover(record -> fail("The journal is empty"));
+        journal.append(JournalRecord.friendAdded(1, 2));
+        journal.appendAll(List.of(JournalRecord.likeAdded(3, 1, 1000), JournalRecord.likeRemoved(3, 1)));
+        journal.close();
+        Files.write(directory.resolve("journal-1.log"), new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        List<JournalRecord> records = new ArrayList<>();
+        FileMutationJournal reopened = new FileMutationJournal(directory);
+        reopened.recover(records::add);
+        reopened.close();
+
+        assertEquals(3, records.size());
+        assertEquals(JournalRecord.Type.FRIEND_ADDED, records.get(0).getType());
+        assertEquals(1000, records.get(1).getTime());
+        assertEquals(JournalRecord.Type.LIKE_REMOVED, records.get(2).getType());
+        assertEquals(3, reopened.getRecoveredRecords());
+    }
+
+    @Test
+    void failedWriteRejectsEveryLaterAppend() throws IOException {
+        FileMutationJournal journal = new FileMutationJournal(directory);
+        journal.recover(record -> {
+        });
+        journal.append(JournalRecord.friendAdded(1, 2));
+        ((FileChannel) ReflectionTestUtils.getField(journal, "channel")).close();
+
+        assertThrows(UncheckedIOException.class, () -> journal.append(JournalRecord.friendAdded(1, 3)));
+        assertNotNull(journal.getFailure());
+        assertThrows(UncheckedIOException.class, () -> journal.append(JournalRecord.friendAdded(1, 4)));
+        journal.close();
+    }
+}
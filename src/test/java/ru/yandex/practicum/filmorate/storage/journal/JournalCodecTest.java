@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalCodecTest {
+
+    @Test
+    void stringsLongerThan64KbRoundTrip() throws IOException {
+        Film film = Film.builder()
+                .id(7L)
+                .name("\u0416".repeat(40_000))
+                .description("d".repeat(70_000))
+                .releaseDate(LocalDate.of(1999, 3, 31))
+                .duration(136)
+                .build();
+
+        JournalRecord record = roundTrip(JournalRecord.filmUpdated(film));
+
+        assertEquals(JournalRecord.Type.FILM_UPDATED, record.getType());
+        assertEquals(film.getName(), record.getFilm().getName());
+        assertEquals(film.getDescription(), record.getFilm().getDescription());
+        assertEquals(film.getReleaseDate(), record.getFilm().getReleaseDate());
+        assertEquals(136, record.getFilm().getDuration());
+    }
+
+    @Test
+    void userWithoutNameRoundTrips() throws IOException {
+        User user = User.builder()
+                .id(3L)
+                .email("mail@mail.ru")
+                .login("dolore")
+                .birthday(LocalDate.of(1946, 8, 20))
+                .build();
+
+        JournalRecord record = roundTrip(JournalRecord.userCreated(user));
+
+        assertEquals("mail@mail.ru", record.getUser().getEmail());
+        assertEquals("dolore", record.getUser().getLogin());
+        assertNull(record.getUser().getName());
+        assertEquals(LocalDate.of(1946, 8, 20), record.getUser().getBirthday());
+    }
+
+    @Test
+    void likeRoundTripsWithItsTime() throws IOException {
+        JournalRecord record = roundTrip(JournalRecord.likeAdded(3, 5, 1_000_000L));
+
+        assertEquals(JournalRecord.Type.LIKE_ADDED, record.getType());
+        assertEquals(3, record.getFirstId());
+        assertEquals(5, record.getSecondId());
+        assertEquals(1_000_000L, record.getTime());
+    }
+
+    @Test
+    void rejectsRecordsLargerThanAFrame() {
+        Film film = Film.builder()
+                .id(1L)
+                .name("name")
+                .description("d".repeat(2 << 20))
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .build();
+
+        assertThrows(ValidationException.class, () -> JournalCodec.encode(JournalRecord.filmCreated(film)));
+    }
+
+    @Test
+    void tornFrameEndsTheStream() throws IOException {
+        ByteBuffer frame = JournalCodec.encode(JournalRecord.friendAdded(1, 2));
+        byte[] torn = new byte[frame.remaining() - 3];
+        frame.get(torn);
+
+        assertNull(read(torn));
+    }
+
+    private static JournalRecord roundTrip(JournalRecord record) throws IOException {
+        ByteBuffer frame = JournalCodec.encode(record);
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return read(bytes);
+    }
+
+    private static JournalRecord read(byte[] bytes) throws IOException {
+        return JournalCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularityConfiguration;
+import ru.yandex.practicum.filmorate.storage.graph.FilmRecommender;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageJournalManagerTest {
+    @TempDir
+    Path directory;
+    private final List<FileMutationJournal> journals = new ArrayList<>();
+    private final List<StorageJournalManager> managers = new ArrayList<>();
+
+    @AfterEach
+    void close() throws IOException {
+        for (StorageJournalManager manager : managers) {
+            manager.destroy();
+        }
+        for (FileMutationJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void replaysMutationsAfterRestart() {
+        Storages before = open();
+        Film first = before.films.create(film("Matrix"));
+        Film second = before.films.create(film("Alien"));
+        User alice = before.users.create(user("alice"));
+        User bob = before.users.create(user("bob"));
+        User carol = before.users.create(user("carol"));
+        before.films.addLike(first.getId(), alice.getId());
+        before.films.addLikes(List.of(
+                new FilmLike(first.getId(), bob.getId()), new FilmLike(second.getId(), carol.getId())
+        ));
+        before.films.deleteLike(second.getId(), carol.getId());
+        before.users.addToFriend(alice.getId(), bob.getId());
+        before.users.addToFriend(alice.getId(), carol.getId());
+        before.users.deleteFromFriends(alice.getId(), carol.getId());
+        before.films.delete(second);
+        before.users.update(User.builder().id(bob.getId()).email("bob@new.ru").login("bobby")
+                .birthday(LocalDate.of(1990, 1, 1)).build());
+
+        Storages after = open();
+
+        assertEquals(List.of(first.getId()), ids(after.films.getAllFilms()));
+        assertEquals(List.of(alice.getId(), bob.getId()), sorted(after.films.getFilmById(first.getId()).getLikes()));
+        assertEquals(List.of(bob.getId()), sorted(after.users.getUserById(alice.getId()).getFriends()));
+        assertEquals("bobby", after.users.getUserByEmail("bob@new.ru").getLogin());
+        assertThrows(NotFoundException.class, () -> after.users.getUserByEmail("bob@mail.ru"));
+        assertEquals(second.getId() + 1, after.films.create(film("Heat")).getId());
+    }
+
+    @Test
+    void replaysSnapshotAndTheSegmentsAfterIt() {
+        Storages before = open();
+        Film film = before.films.create(film("Matrix"));
+        User alice = before.users.create(user("alice"));
+        User bob = before.users.create(user("bob"));
+        before.users.delete(bob);
+        before.manager.snapshot();
+        before.films.addLike(film.getId(), alice.getId());
+
+        Storages after = open();
+
+        assertEquals(List.of(alice.getId()), sorted(after.films.getFilmById(film.getId()).getLikes()));
+        assertEquals(1, after.users.getUserCount());
+        assertEquals(bob.getId() + 1, after.users.create(user("carol")).getId());
+    }
+
+    @Test
+    void snapshotKeepsEveryFriendshipIncludingWithOneself() {
+        Storages before = open();
+        User alice = before.users.create(user("alice"));
+        User bob = before.users.create(user("bob"));
+        before.users.addToFriend(alice.getId(), bob.getId());
+        before.users.addToFriend(bob.getId(), bob.getId());
+        before.manager.snapshot();
+
+        Storages after = open();
+
+        assertEquals(List.of(bob.getId()), sorted(after.users.getUserById(alice.getId()).getFriends()));
+        assertEquals(List.of(alice.getId(), bob.getId()), sorted(after.users.getUserById(bob.getId()).getFriends()));
+    }
+
+    @Test
+    void snapshotsDuringConcurrentWritesLoseNothing() throws Exception {
+        Storages before = open();
+        List<Long> films = new ArrayList<>();
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            films.add(before.films.create(film("Film " + i)).getId());
+            users.add(before.users.create(user("user" + i)).getId());
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < 4; thread++) {
+                Random random = new Random(thread);
+                futures.add(executor.submit(() -> {
+                    while (!stop.get()) {
+                        long filmId = films.get(random.nextInt(films.size()));
+                        long userId = users.get(random.nextInt(users.size()));
+                        long friendId = users.get(random.nextInt(users.size()));
+                        try {
+                            if (random.nextBoolean()) {
+                                before.films.addLike(filmId, userId);
+                            } else {
+                                before.films.deleteLike(filmId, userId);
+                            }
+                            if (random.nextBoolean()) {
+                                before.users.addToFriend(userId, friendId);
+                            } else {
+                                before.users.deleteFromFriends(userId, friendId);
+                            }
+                        } catch (NotFoundException e) {
+                            // already in the requested state
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < 20; i++) {
+                before.manager.snapshot();
+            }
+        } finally {
+            stop.set(true);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+        }
+
+        Storages after = open();
+
+        for (long filmId : films) {
+            assertEquals(sorted(before.films.getFilmById(filmId).getLikes()),
+                    sorted(after.films.getFilmById(filmId).getLikes()), "likes of film " + filmId);
+        }
+        for (long userId : users) {
+            assertEquals(sorted(before.users.getUserById(userId).getFriends()),
+                    sorted(after.users.getUserById(userId).getFriends()), "friends of user " + userId);
+        }
+    }
+
+    @Test
+    void failedAppendLeavesTheStoragesUnchanged() {
+        InMemoryFilmStorage films = new InMemoryFilmStorage(FAILING, new FilmRecommender(5000, 50),
+                PopularityConfiguration.create("exact", 0.0001));
+        InMemoryUserStorage users = new InMemoryUserStorage(FAILING, new FriendRecommender(5000, 1_000_000));
+
+        assertThrows(UncheckedIOException.class, () -> films.create(film("Matrix")));
+        assertThrows(UncheckedIOException.class, () -> users.create(user("alice")));
+
+        assertEquals(0, films.getFilmCount());
+        assertTrue(films.getTopFilms(10).isEmpty());
+        assertEquals(0, users.getUserCount());
+        assertThrows(NotFoundException.class, () -> users.getUserByEmail("alice@mail.ru"));
+    }
+
+    private static final MutationJournal FAILING = record -> {
+        throw new UncheckedIOException("The journal has failed", new IOException("disk full"));
+    };
+
+    private Storages open() {
+        FileMutationJournal journal = new FileMutationJournal(directory);
+        journals.add(journal);
+        Storages storages = new Storages(journal);
+        ReflectionTestUtils.setField(storages.manager, "snapshotInterval", Duration.ofHours(1));
+        storages.manager.afterSingletonsInstantiated();
+        managers.add(storages.manager);
+        return storages;
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("About " + name)
+                .releaseDate(LocalDate.of(1999, 3, 31))
+                .duration(120)
+                .build();
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static List<Long> ids(Collection<Film> films) {
+        return films.stream().map(Film::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Long> sorted(Set<Long> ids) {
+        return ids.stream().sorted().collect(Collectors.toList());
+    }
+
+    private static final class Storages {
+        final InMemoryFilmStorage films;
+        final InMemoryUserStorage users;
+        final StorageJournalManager manager;
+
+        Storages(FileMutationJournal journal) {
+            films = new InMemoryFilmStorage(journal, new FilmRecommender(5000, 50),
+                    PopularityConfiguration.create("exact", 0.0001));
+            users = new InMemoryUserStorage(journal, new FriendRecommender(5000, 1_000_000));
+            manager = new StorageJournalManager(journal, films, users);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+    private static final int IDS = 100_000;
+
+    @Test
+    void idsSpreadEvenlyOverTheShards() {
+        ConsistentHashRing ring = ConsistentHashRing.of(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (long id = 1; id <= IDS; id++) {
+            counts.merge(ring.shardOf(id), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertEquals(IDS / 4.0, count, IDS / 4.0 * 0.25);
+        }
+    }
+
+    @Test
+    void newShardOnlyTakesIdsFromTheOldOnes() {
+        ConsistentHashRing ring = ConsistentHashRing.of(List.of("shard-0", "shard-1", "shard-2"), 128);
+        ConsistentHashRing grown = ring.withShard("shard-3");
+
+        int moved = 0;
+        for (long id = 1; id <= IDS; id++) {
+            String before = ring.shardOf(id);
+            String after = grown.shardOf(id);
+            if (!before.equals(after)) {
+                assertEquals("shard-3", after, "ID " + id + " moved between old shards");
+                moved++;
+            }
+        }
+
+        assertEquals(IDS / 4.0, moved, IDS / 4.0 * 0.25);
+        assertEquals(List.of("shard-0", "shard-1", "shard-2"), ring.getShards());
+        assertTrue(grown.getShards().contains("shard-3"));
+    }
+
+    @Test
+    void routingIsStableForTheSameShards() {
+        ConsistentHashRing ring = ConsistentHashRing.of(List.of("shard-0", "shard-1", "shard-2"), 64);
+        ConsistentHashRing same = ConsistentHashRing.of(List.of("shard-0", "shard-1", "shard-2"), 64);
+
+        for (long id = -1_000; id <= 1_000; id++) {
+            assertEquals(ring.shardOf(id), same.shardOf(id));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesWithinFourStandardErrors() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (long value = 0; value < 1_000_000; value++) {
+            sketch.add(value % 200_000);
+        }
+
+        assertEquals(200_000, sketch.estimate(), 200_000 * 4 * 0.0081);
+    }
+
+    @Test
+    void mergedSketchesEstimateTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (long value = 0; value < 50_000; value++) {
+            first.add(value);
+            second.add(value + 25_000);
+        }
+
+        first.merge(second);
+
+        assertEquals(75_000, first.estimate(), 75_000 * 4 * 0.0163);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    @Test
+    void spaceSavingOverestimatesByAtMostTheErrorBound() {
+        SpaceSaving sketch = new SpaceSaving(100);
+        Map<Long, Long> weights = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long item = random.nextInt(10) == 0 ? random.nextInt(10) : random.nextInt(10_000);
+            sketch.add(item, 1);
+            weights.merge(item, 1L, Long::sum);
+        }
+
+        long bound = sketch.maxError();
+        assertEquals(1_000, bound);
+        weights.forEach((item, weight) -> {
+            long estimate = sketch.estimate(item);
+            if (weight > bound) {
+                assertTrue(estimate >= weight, "a heavy item is monitored: " + item);
+            }
+            if (estimate > 0 && sketch.top(100).contains(item)) {
+                assertTrue(estimate - weight <= bound, "overestimate of " + item);
+            }
+        });
+    }
+
+    @Test
+    void topEstimatesAreOrderedByRank() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        sketch.add(5, 3);
+        sketch.add(2, 7);
+        sketch.add(9, 3);
+
+        assertEquals(2, sketch.topEstimates(3).get(0).getItem());
+        assertEquals(7, sketch.topEstimates(3).get(0).getCount());
+        assertEquals(5, sketch.topEstimates(3).get(1).getItem());
+        assertEquals(9, sketch.topEstimates(3).get(2).getItem());
+        assertEquals(2, sketch.topEstimates(2).size());
+    }
+}
@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.AlreadyExistsException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSummary;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.journal.MutationJournal;
+import ru.yandex.practicum.filmorate.storage.shard.ShardCluster;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserStorageTest {
+    private final FriendRecommender recommender = new FriendRecommender(5000, 1_000_000);
+
+    @Test
+    void conflictDoesNotUseUpAnId() {
+        InMemoryUserStorage storage = new InMemoryUserStorage(MutationJournal.NONE, recommender);
+
+        assertEquals(1L, storage.create(user("alice@mail.ru", "alice")).getId());
+        assertThrows(AlreadyExistsException.class, () -> storage.create(user("ALICE@mail.ru", "other")));
+        assertThrows(AlreadyExistsException.class, () -> storage.create(user("other@mail.ru", "Alice")));
+
+        assertEquals(2L, storage.create(user("bob@mail.ru", "bob")).getId());
+        assertEquals(1L, storage.getUserByEmail("alice@mail.ru").getId());
+        assertEquals(2L, storage.getUserByLogin("bob").getId());
+    }
+
+    @Test
+    void emailOfAFailedCreateStaysFree() {
+        InMemoryUserStorage storage = new InMemoryUserStorage(MutationJournal.NONE, recommender);
+        storage.create(user("alice@mail.ru", "alice"));
+
+        assertThrows(AlreadyExistsException.class, () -> storage.create(user("carol@mail.ru", "alice")));
+
+        assertEquals(2L, storage.create(user("carol@mail.ru", "carol")).getId());
+    }
+
+    @Test
+    void shardedConflictDoesNotUseUpAnId() {
+        ShardedUserStorage storage = new ShardedUserStorage(
+                new ShardCluster(List.of("shard-0", "shard-1", "shard-2"), 16), recommender
+        );
+
+        assertEquals(1L, storage.create(user("alice@mail.ru", "alice")).getId());
+        assertThrows(AlreadyExistsException.class, () -> storage.create(user("alice@mail.ru", "other")));
+
+        assertEquals(2L, storage.create(user("bob@mail.ru", "bob")).getId());
+    }
+
+    @Test
+    void batchReportsEveryFriendship() {
+        InMemoryUserStorage storage = new InMemoryUserStorage(MutationJournal.NONE, recommender);
+        long alice = storage.create(user("alice@mail.ru", "alice")).getId();
+        long bob = storage.create(user("bob@mail.ru", "bob")).getId();
+        long carol = storage.create(user("carol@mail.ru", "carol")).getId();
+        storage.addToFriend(alice, bob);
+
+        List<BatchItemResult> results = storage.addFriends(List.of(
+                new Friendship(bob, alice),
+                new Friendship(alice, carol),
+                new Friendship(carol, alice),
+                new Friendship(alice, 1_000),
+                new Friendship(1_000, alice),
+                new Friendship(bob, carol)
+        ));
+
+        assertEquals(List.of(
+                BatchItemResult.Status.ALREADY_EXISTS,
+                BatchItemResult.Status.ADDED,
+                BatchItemResult.Status.ALREADY_EXISTS,
+                BatchItemResult.Status.NOT_FOUND,
+                BatchItemResult.Status.NOT_FOUND,
+                BatchItemResult.Status.ADDED
+        ), results.stream().map(BatchItemResult::getStatus).collect(Collectors.toList()));
+        assertEquals(Set.of(bob, carol), storage.getUserById(alice).getFriends());
+        assertEquals(Set.of(alice, bob), storage.getUserById(carol).getFriends());
+        assertEquals(3, storage.getFriendshipCount());
+    }
+
+    @Test
+    void deletedUserLeavesTheRowsOfItsFriends() {
+        InMemoryUserStorage storage = new InMemoryUserStorage(MutationJournal.NONE, recommender);
+        long alice = storage.create(user("alice@mail.ru", "alice")).getId();
+        long bob = storage.create(user("bob@mail.ru", "bob")).getId();
+        User carol = storage.create(user("carol@mail.ru", "carol"));
+        storage.addToFriend(alice, carol.getId());
+        storage.addToFriend(bob, carol.getId());
+        storage.addToFriend(alice, bob);
+
+        storage.delete(carol);
+
+        assertEquals(0, storage.getMutualFriendsCount(alice, bob));
+        assertEquals(storage.getMutualFriends(alice, bob).size(), storage.getMutualFriendsCount(alice, bob));
+        List<UserSummary> friendsOfBob = storage.getFriendSummaries(bob);
+        assertEquals(1, friendsOfBob.size());
+        assertEquals(1, friendsOfBob.get(0).getFriendCount());
+        assertEquals(1, storage.getFriendshipCount());
+
+        storage.delete(storage.getUserById(alice));
+
+        assertEquals(0, storage.getUserById(bob).getFriends().size());
+        assertEquals(0, storage.getFriendshipCount());
+    }
+
+    @Test
+    void concurrentDeletesAndFriendshipsKeepTheCount() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage(MutationJournal.NONE, recommender);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            users.add(storage.create(user("user" + i + "@mail.ru", "user" + i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                Random random = new Random(thread);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        User first = users.get(random.nextInt(users.size()));
+                        User second = users.get(random.nextInt(users.size()));
+                        try {
+                            if (random.nextInt(100) == 0) {
+                                storage.delete(first);
+                            } else {
+                                storage.addToFriend(first.getId(), second.getId());
+                            }
+                        } catch (NotFoundException e) {
+                            // already deleted or already friends
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long friendships = 0;
+        for (User user : storage.getAllUsers()) {
+            for (long friendId : user.getFriends()) {
+                User friend = storage.getUserById(friendId);
+                assertTrue(friend.getFriends().contains(user.getId()), "one-sided friendship " + user.getId()
+                        + " and " + friendId);
+                friendships += user.getId() <= friendId ? 1 : 0;
+            }
+        }
+        assertTrue(storage.getUserCount() < users.size());
+        assertEquals(friendships, storage.getFriendshipCount());
+    }
+
+    private static User user(String email, String login) {
+        return User.builder()
+                .email(email)
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
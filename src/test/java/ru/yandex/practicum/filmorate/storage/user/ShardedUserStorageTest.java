@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.graph.FriendRecommender;
+import ru.yandex.practicum.filmorate.storage.shard.ShardCluster;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedUserStorageTest {
+    private final ShardCluster cluster = new ShardCluster(List.of("shard-0", "shard-1", "shard-2"), 16);
+    private final ShardedUserStorage storage = new ShardedUserStorage(
+            cluster, new FriendRecommender(5000, 1_000_000)
+    );
+
+    @Test
+    void friendshipBetweenShardsIsWrittenToBothSides() {
+        List<User> users = createUsers(20);
+        User user = users.get(0);
+        User friend = onOtherShard(user, users);
+
+        storage.addToFriend(user.getId(), friend.getId());
+
+        assertEquals(List.of(friend.getId()), friendIds(user.getId()));
+        assertEquals(List.of(user.getId()), friendIds(friend.getId()));
+        assertEquals(1, storage.getFriendshipCount());
+        assertThrows(NotFoundException.class, () -> storage.addToFriend(friend.getId(), user.getId()));
+
+        storage.deleteFromFriends(friend.getId(), user.getId());
+
+        assertTrue(friendIds(user.getId()).isEmpty());
+        assertTrue(friendIds(friend.getId()).isEmpty());
+        assertEquals(0, storage.getFriendshipCount());
+    }
+
+    @Test
+    void concurrentAddsAndDeletesBetweenShardsLeaveNoOneSidedFriendship() throws Exception {
+        List<User> users = createUsers(30);
+        List<long[]> pairs = new ArrayList<>();
+        for (User user : users.subList(0, 6)) {
+            for (User friend : users.subList(6, users.size())) {
+                String shard = cluster.getRing().shardOf(user.getId());
+                if (pairs.size() < 3 && !shard.equals(cluster.getRing().shardOf(friend.getId()))) {
+                    pairs.add(new long[]{user.getId(), friend.getId()});
+                    break;
+                }
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                Random random = new Random(thread);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        long[] pair = pairs.get(random.nextInt(pairs.size()));
+                        boolean reversed = random.nextBoolean();
+                        long userId = reversed ? pair[1] : pair[0];
+                        long friendId = reversed ? pair[0] : pair[1];
+                        try {
+                            switch (random.nextInt(3)) {
+                                case 0:
+                                    storage.addToFriend(userId, friendId);
+                                    break;
+                                case 1:
+                                    storage.deleteFromFriends(userId, friendId);
+                                    break;
+                                default:
+                                    storage.addFriends(List.of(new Friendship(userId, friendId)));
+                            }
+                        } catch (NotFoundException e) {
+                            // already friends
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long friendships = 0;
+        for (long[] pair : pairs) {
+            boolean userSide = friendIds(pair[0]).contains(pair[1]);
+            assertEquals(userSide, friendIds(pair[1]).contains(pair[0]), "one-sided friendship " + pair[0]
+                    + " and " + pair[1]);
+            friendships += userSide ? 1 : 0;
+        }
+        assertEquals(friendships, storage.getFriendshipCount());
+    }
+
+    @Test
+    void deletedUserLeavesTheRowsOfItsFriendsOnEveryShard() {
+        List<User> users = createUsers(20);
+        User user = users.get(0);
+        User friend = onOtherShard(user, users);
+        User other = users.stream()
+                .filter(candidate -> candidate != user && candidate != friend)
+                .findFirst()
+                .orElseThrow();
+        storage.addToFriend(user.getId(), friend.getId());
+        storage.addToFriend(other.getId(), user.getId());
+        storage.addToFriend(other.getId(), friend.getId());
+
+        storage.delete(user);
+
+        assertEquals(1, storage.getUserById(friend.getId()).getFriends().size());
+        assertEquals(1, storage.getUserById(other.getId()).getFriends().size());
+        assertEquals(0, storage.getMutualFriendsCount(friend.getId(), other.getId()));
+        assertEquals(1, storage.getFriendshipCount());
+    }
+
+    @Test
+    void batchLinksFriendsBetweenShards() {
+        List<User> users = createUsers(20);
+        User user = users.get(0);
+        User friend = onOtherShard(user, users);
+
+        List<BatchItemResult> results = storage.addFriends(List.of(
+                new Friendship(user.getId(), friend.getId()),
+                new Friendship(friend.getId(), user.getId()),
+                new Friendship(user.getId(), 1_000)
+        ));
+
+        assertEquals(BatchItemResult.Status.ADDED, results.get(0).getStatus());
+        assertEquals(BatchItemResult.Status.ALREADY_EXISTS, results.get(1).getStatus());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, results.get(2).getStatus());
+        assertEquals(List.of(user.getId()), friendIds(friend.getId()));
+    }
+
+    @Test
+    void newShardTakesOverUsersWithTheirFriends() {
+        List<User> users = createUsers(200);
+        Random random = new Random(11);
+        for (int i = 0; i < 400; i++) {
+            long userId = users.get(random.nextInt(users.size())).getId();
+            long friendId = users.get(random.nextInt(users.size())).getId();
+            if (userId != friendId) {
+                try {
+                    storage.addToFriend(userId, friendId);
+                } catch (NotFoundException e) {
+                    // already friends
+                }
+            }
+        }
+        Map<Long, List<Long>> friendsBefore = new HashMap<>();
+        users.forEach(user -> friendsBefore.put(user.getId(), friendIds(user.getId())));
+        long friendshipsBefore = storage.getFriendshipCount();
+
+        cluster.addShard("shard-3");
+
+        assertTrue(storage.getUserCountsByShard().get("shard-3") > 0);
+        assertEquals(200, storage.getUserCount());
+        assertEquals(friendshipsBefore, storage.getFriendshipCount());
+        for (User user : users) {
+            assertEquals(user.getLogin(), storage.getUserById(user.getId()).getLogin());
+            assertEquals(user.getId(), storage.getUserByEmail(user.getEmail()).getId());
+            assertEquals(friendsBefore.get(user.getId()), friendIds(user.getId()));
+        }
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(storage.create(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .name("User " + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()));
+        }
+        return users;
+    }
+
+    private User onOtherShard(User user, List<User> users) {
+        String shard = cluster.getRing().shardOf(user.getId());
+        return users.stream()
+                .filter(other -> !shard.equals(cluster.getRing().shardOf(other.getId())))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private List<Long> friendIds(long userId) {
+        return storage.getAllUserFriends(userId).stream()
+                .map(User::getId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
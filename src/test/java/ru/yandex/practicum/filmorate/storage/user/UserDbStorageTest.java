@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@ActiveProfiles("db")
+@Import(UserDbStorage.class)
+class UserDbStorageTest {
+    @Autowired
+    private UserDbStorage storage;
+
+    @Test
+    void duplicateFriendshipIsNotFoundInEitherDirection() {
+        long alice = storage.create(user("alice")).getId();
+        long bob = storage.create(user("bob")).getId();
+        storage.addToFriend(alice, bob);
+
+        assertThrows(NotFoundException.class, () -> storage.addToFriend(alice, bob));
+        assertThrows(NotFoundException.class, () -> storage.addToFriend(bob, alice));
+        List<BatchItemResult> results = storage.addFriends(List.of(
+                new Friendship(bob, alice), new Friendship(alice, 1_000)
+        ));
+        assertEquals(BatchItemResult.Status.ALREADY_EXISTS, results.get(0).getStatus());
+        assertEquals(BatchItemResult.Status.NOT_FOUND, results.get(1).getStatus());
+
+        assertEquals(1, storage.getFriendshipCount());
+        assertEquals(Set.of(bob), storage.getUserById(alice).getFriends());
+        assertEquals(1, storage.getFriendSummaries(bob).get(0).getFriendCount());
+    }
+
+    private static User user(String login) {
+        return User.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
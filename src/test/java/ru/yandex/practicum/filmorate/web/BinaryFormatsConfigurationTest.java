@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFormatsConfigurationTest {
+    private final BinaryFormatsConfiguration configuration = new BinaryFormatsConfiguration();
+
+    @Test
+    void cborRoundTripKeepsTheFilmAndWritesDatesAsText() throws Exception {
+        assertRoundTrip(configuration.cborHttpMessageConverter(bootBuilder()).getObjectMapper());
+    }
+
+    @Test
+    void smileRoundTripKeepsTheFilmAndWritesDatesAsText() throws Exception {
+        assertRoundTrip(configuration.smileHttpMessageConverter(bootBuilder()).getObjectMapper());
+    }
+
+    @Test
+    void binaryBodiesAreSmallerThanJson() throws Exception {
+        Film film = film();
+        byte[] json = bootBuilder().build().writeValueAsBytes(film);
+
+        assertTrue(configuration.cborHttpMessageConverter(bootBuilder()).getObjectMapper()
+                .writeValueAsBytes(film).length < json.length);
+        assertTrue(configuration.smileHttpMessageConverter(bootBuilder()).getObjectMapper()
+                .writeValueAsBytes(film).length < json.length);
+    }
+
+    private static void assertRoundTrip(ObjectMapper mapper) throws Exception {
+        Film film = film();
+        byte[] body = mapper.writeValueAsBytes(film);
+
+        Film read = mapper.readValue(body, Film.class);
+        assertEquals(film.getId(), read.getId());
+        assertEquals(film.getName(), read.getName());
+        assertEquals(film.getReleaseDate(), read.getReleaseDate());
+        assertEquals(film.getLikes(), read.getLikes());
+
+        JsonNode tree = mapper.readTree(body);
+        assertTrue(tree.get("releaseDate").isTextual());
+        assertEquals("2000-01-01", tree.get("releaseDate").asText());
+    }
+
+    // configured like Boot's JacksonAutoConfiguration, which the converters get their builder from
+    private static Jackson2ObjectMapperBuilder bootBuilder() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(new ParameterNamesModule());
+    }
+
+    private static Film film() {
+        Film film = Film.builder()
+                .id(12L)
+                .name("Film")
+                .description("About the film")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .build();
+        film.setLikes(Set.of(3L, 5L, 8L, 13L, 21L, 34L, 55L, 89L));
+        return film;
+    }
+}